@@ -0,0 +1,37 @@
+package com.dynamicperception.nmx;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Runs the JMH benchmarks with the GC profiler, so every result comes with its allocation
+ * rate as well as its time. Performance changes to the library should come with the numbers
+ * from before and after.
+ * <p>
+ * The benchmarks live in the library's package so that they can reach the package-private
+ * encoder and decoder. They are kept out of <code>src</code>, use the simulator in
+ * <code>testsupport/src</code> and need the JMH jars, which are not part of the project. Build
+ * and run them from the project root:
+ * <pre>
+ * JMH=jmh-core-1.37.jar:jmh-generator-annprocess-1.37.jar:jopt-simple-5.0.4.jar:commons-math3-3.6.1.jar
+ * javac -cp libraries/jssc.jar:$JMH -d benchmarks/bin $(find src testsupport/src benchmarks/src -name '*.java')
+ * java -cp benchmarks/bin:libraries/jssc.jar:$JMH com.dynamicperception.nmx.Benchmarks
+ * </pre>
+ * Any arguments are passed on to JMH, e.g. a pattern such as <code>RoundTrip</code> to run
+ * only the matching benchmarks, or <code>-f 3</code> for more forks.
+ */
+public final class Benchmarks {
+
+	private Benchmarks(){
+	}
+
+	public static void main(String[] args) throws Exception {
+		List<String> options = new ArrayList<String>(Arrays.asList(args));
+		if(!options.contains("-prof")){
+			options.add("-prof");
+			options.add("gc");
+		}
+		org.openjdk.jmh.Main.main(options.toArray(new String[options.size()]));
+	}
+}
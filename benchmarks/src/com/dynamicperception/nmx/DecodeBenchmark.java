@@ -0,0 +1,80 @@
+package com.dynamicperception.nmx;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Response handling: framing received bytes with the {@link FrameDecoder} and reading the
+ * value, which together replace the old <code>parseResponse</code> over a hex string.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class DecodeBenchmark {
+
+	private static final byte[] OK = NMXComs.hexStringToByteArray("0000000000ff00000100");
+	private static final byte[] POSITION = NMXComs.hexStringToByteArray("0000000000ff000001050300001234");
+	private static final byte[] NOISY_POSITION = NMXComs.hexStringToByteArray("17ff000000ff0000000000ff000001050300001234");
+
+	private Frame last;
+	private final FrameDecoder decoder = new FrameDecoder(new FrameDecoder.Listener() {
+		@Override
+		public void frameReceived(Frame frame, long firstByteNanos) {
+			last = frame;
+		}
+	});
+	private final Frame speed = new Frame(NMXComs.hexStringToByteArray("0000000000ff0000010503000004e2"));
+
+	@Benchmark
+	public Frame decodeOk(){
+		decoder.received(OK, 0, OK.length);
+		return last;
+	}
+
+	@Benchmark
+	public Frame decodeValue(){
+		decoder.received(POSITION, 0, POSITION.length);
+		return last;
+	}
+
+	/**
+	 * A frame arriving in two reads, as it often does from the serial port
+	 */
+	@Benchmark
+	public Frame decodeSplit(){
+		decoder.received(POSITION, 0, 7);
+		decoder.received(POSITION, 7, POSITION.length - 7);
+		return last;
+	}
+
+	/**
+	 * A frame behind line noise that the decoder has to skip
+	 */
+	@Benchmark
+	public Frame decodeAfterNoise(){
+		decoder.received(NOISY_POSITION, 0, NOISY_POSITION.length);
+		return last;
+	}
+
+	@Benchmark
+	public long longValue(){
+		return speed.longValue();
+	}
+
+	@Benchmark
+	public float floatValue(){
+		return speed.floatValue(Command.FLOAT_CONVERSION);
+	}
+}
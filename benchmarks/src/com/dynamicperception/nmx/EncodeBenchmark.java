@@ -0,0 +1,69 @@
+package com.dynamicperception.nmx;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Packet assembly as done for <code>NMXComs.cmd</code>: building the request and encoding
+ * it into the command thread's gather buffer, plus the hex conversions used for manual data
+ * and console output.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class EncodeBenchmark {
+
+	private final PacketEncoder encoder = new PacketEncoder();
+	private final Request request = new Request(3, 1, 13, 4, 1250, null, true, 0);
+	private final byte[] packet = request.encode();
+	private final String hex = PacketEncoder.toHex(packet);
+
+	/**
+	 * A new request for <code>m.setSpeed</code>, encoded into a reused buffer
+	 */
+	@Benchmark
+	public int requestAndEncode(){
+		Request next = NMXComs.newRequest(3, 1, 13, 4, 1250, true);
+		encoder.clear();
+		return encoder.append(next);
+	}
+
+	/**
+	 * Encoding alone, into a reused buffer
+	 */
+	@Benchmark
+	public int encode(){
+		encoder.clear();
+		return encoder.append(request);
+	}
+
+	/**
+	 * Encoding into a new array
+	 */
+	@Benchmark
+	public byte[] encodeToArray(){
+		return request.encode();
+	}
+
+	@Benchmark
+	public byte[] hexStringToByteArray(){
+		return NMXComs.hexStringToByteArray(hex);
+	}
+
+	@Benchmark
+	public String toHex(){
+		return PacketEncoder.toHex(packet);
+	}
+}
@@ -0,0 +1,62 @@
+package com.dynamicperception.nmx;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Command registry lookups by name and by number
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RegistryBenchmark {
+
+	@Param({"g.getFirmware", "m.getPos", "k.getKfVel"})
+	public String name;
+
+	private int subAddr;
+	private int number;
+
+	@Setup
+	public void setup(){
+		Command command = Command.get(name);
+		number = command.getCommandNum();
+		switch(command.getType()){
+		case MOTOR:
+			subAddr = 1;
+			break;
+		case CAMERA:
+			subAddr = 4;
+			break;
+		case KEYFRAME:
+			subAddr = 5;
+			break;
+		default:
+			subAddr = 0;
+		}
+	}
+
+	@Benchmark
+	public Command getByName(){
+		return Command.get(name);
+	}
+
+	@Benchmark
+	public String getCommandName(){
+		return Command.getCommandName(subAddr, number);
+	}
+}
@@ -0,0 +1,78 @@
+package com.dynamicperception.nmx;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Whole commands through the default session against an {@link NMXSimulator} that answers
+ * straight away: queueing, the command thread, encoding, the simulated controller, decoding
+ * and handing the value back. The time is the library's own overhead per command; on a real
+ * link the serial transfer adds a few milliseconds.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RoundTripBenchmark {
+
+	/**
+	 * Whether the simulator delivers responses from its own thread, like {@link Serial}, or
+	 * from the command thread, like {@link LinuxTtyTransport}
+	 */
+	@Param({"false", "true"})
+	public boolean polled;
+
+	private NMXSimulator simulator;
+	private MotorCommands motor;
+
+	@Setup
+	public void setup(){
+		simulator = new NMXSimulator(1, polled);
+		NMXSession.getDefault().setTransport(simulator);
+		motor = NMXSession.getDefault().controller(NMXSession.getDefault().getAddr()).motor(0);
+		Command.execute(Command.Names.Motor.SEND_TO, 0, 1234);
+	}
+
+	@TearDown
+	public void tearDown(){
+		NMXSession.getDefault().close();
+		simulator.close();
+	}
+
+	/**
+	 * The original API, with a boxed return value
+	 */
+	@Benchmark
+	public Integer execute(){
+		return Command.execute(Command.Names.Motor.GET_POS, 0);
+	}
+
+	@Benchmark
+	public int executeInt(){
+		return Command.executeInt(Command.Names.Motor.GET_POS, 0);
+	}
+
+	@Benchmark
+	public int typedCommand(){
+		return motor.getPos();
+	}
+
+	@Benchmark
+	public void executeVoid(){
+		Command.executeVoid(Command.Names.Motor.SET_SPEED, 0, 12.5f);
+	}
+}
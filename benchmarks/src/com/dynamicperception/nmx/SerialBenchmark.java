@@ -0,0 +1,128 @@
+package com.dynamicperception.nmx;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import jssc.SerialPort;
+import jssc.SerialPortEvent;
+
+/**
+ * The receive side of {@link Serial}: <code>serialEvent</code> taking bytes from jssc into
+ * the read buffer or a receiver, and <code>read</code>/<code>readBytes</code> taking them out
+ * again. jssc is replaced by a port that always has one response frame waiting.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SerialBenchmark {
+
+	private static final byte[] POSITION = NMXComs.hexStringToByteArray("0000000000ff000001050300001234");
+
+	/**
+	 * A port whose input buffer holds one frame each time it is refilled
+	 */
+	private static final class LoopbackPort extends SerialPort {
+		private int available;
+
+		LoopbackPort(){
+			super("loopback");
+		}
+
+		void refill(){
+			available = POSITION.length;
+		}
+
+		@Override
+		public int getInputBufferBytesCount(){
+			return available;
+		}
+
+		@Override
+		public byte[] readBytes(int byteCount){
+			// jssc returns a new array for every read
+			byte[] read = new byte[byteCount];
+			System.arraycopy(POSITION, POSITION.length - available, read, 0, byteCount);
+			available -= byteCount;
+			return read;
+		}
+	}
+
+	private final SerialPortEvent event = new SerialPortEvent("loopback", SerialPortEvent.RXCHAR, POSITION.length);
+	private final byte[] dest = new byte[POSITION.length];
+	private LoopbackPort port;
+	private Serial buffered;
+	private Serial decoded;
+	private Frame last;
+
+	@Setup
+	public void setup(){
+		port = new LoopbackPort();
+		buffered = Serial.createDetached();
+		buffered.port = port;
+		decoded = Serial.createDetached();
+		decoded.port = port;
+		decoded.setReceiver(new FrameDecoder(new FrameDecoder.Listener() {
+			@Override
+			public void frameReceived(Frame frame, long firstByteNanos) {
+				last = frame;
+			}
+		}));
+	}
+
+	/**
+	 * A frame into the read buffer and back out into a reused array
+	 */
+	@Benchmark
+	public int serialEventAndReadBytesInto(){
+		port.refill();
+		buffered.serialEvent(event);
+		return buffered.readBytes(dest);
+	}
+
+	/**
+	 * A frame into the read buffer and back out into a new array
+	 */
+	@Benchmark
+	public byte[] serialEventAndReadBytes(){
+		port.refill();
+		buffered.serialEvent(event);
+		return buffered.readBytes();
+	}
+
+	/**
+	 * A frame into the read buffer and back out a byte at a time
+	 */
+	@Benchmark
+	public int serialEventAndRead(){
+		port.refill();
+		buffered.serialEvent(event);
+		int sum = 0;
+		for(int i = 0; i < POSITION.length; i++){
+			sum += buffered.read();
+		}
+		return sum;
+	}
+
+	/**
+	 * A frame straight to a session's decoder, as when a session owns the port
+	 */
+	@Benchmark
+	public Frame serialEventToDecoder(){
+		port.refill();
+		decoded.serialEvent(event);
+		return last;
+	}
+}
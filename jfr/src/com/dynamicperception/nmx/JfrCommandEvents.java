@@ -0,0 +1,180 @@
+package com.dynamicperception.nmx;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * The flight recorder events behind {@link CommandEvents}. Only loaded, by name, once it is
+ * known that the runtime has <code>jdk.jfr</code>.
+ */
+final class JfrCommandEvents
+implements CommandEvents.Sink{
+
+	JfrCommandEvents(){
+	}
+
+	@Category("NMX")
+	@StackTrace(false)
+	abstract static class CommandEvent extends Event {
+		@Label("Command")
+		String command;
+
+		@Label("Address")
+		@Description("Address of the controller")
+		int address;
+
+		@Label("Sub-address")
+		@Description("0 for general commands, 1 to 3 for the motors, 4 for the camera, 5 for key frames")
+		int subAddress;
+
+		@Label("Payload Size")
+		@Description("Data bytes in the command packet")
+		@DataAmount
+		int payloadSize;
+
+		void describe(Request request){
+			command = CommandEvents.name(request);
+			address = request.addr;
+			subAddress = request.subAddr;
+			payloadSize = request.packetLength() - PacketEncoder.DATA_OFFSET;
+		}
+	}
+
+	@Name("com.dynamicperception.nmx.CommandEnqueued")
+	@Label("Command Enqueued")
+	@Description("A command was submitted to a session")
+	static final class Enqueued extends CommandEvent {
+		@Label("Pending")
+		@Description("Commands submitted to the session and not completed yet, including this one")
+		int pending;
+	}
+
+	@Name("com.dynamicperception.nmx.SerialWrite")
+	@Label("Serial Write")
+	@Description("Command packets were written to the port")
+	static final class Write extends CommandEvent {
+		@Label("Port")
+		String port;
+
+		@Label("Commands")
+		@Description("Names of the commands written, oldest first")
+		String commands;
+
+		@Label("Packets")
+		int packets;
+
+		@Label("Bytes")
+		@DataAmount
+		int bytes;
+
+		@Label("Queue Wait")
+		@Description("Time the oldest command waited before it was gathered into the write")
+		@Timespan(Timespan.NANOSECONDS)
+		long queueWait;
+	}
+
+	@Name("com.dynamicperception.nmx.ResponseReceived")
+	@Label("Response Received")
+	@Description("The response to a command was decoded")
+	static final class Response extends CommandEvent {
+		@Label("Port")
+		String port;
+
+		@Label("Response Size")
+		@Description("Data bytes in the response frame")
+		@DataAmount
+		int responseSize;
+
+		@Label("First Byte")
+		@Description("Time from the write until the first byte of the response arrived")
+		@Timespan(Timespan.NANOSECONDS)
+		long firstByte;
+
+		@Label("Latency")
+		@Description("Time from the write until the whole response arrived")
+		@Timespan(Timespan.NANOSECONDS)
+		long latency;
+	}
+
+	@Name("com.dynamicperception.nmx.ResponseTimeout")
+	@Label("Response Timeout")
+	@Description("A command got no response in time")
+	static final class Timeout extends CommandEvent {
+		@Label("Port")
+		String port;
+
+		@Label("Waited")
+		@Timespan(Timespan.NANOSECONDS)
+		long waited;
+	}
+
+	@Override
+	public void enqueued(Request request, int pending){
+		Enqueued event = new Enqueued();
+		if(!event.isEnabled())
+			return;
+		event.describe(request);
+		event.pending = pending;
+		event.commit();
+	}
+
+	@Override
+	public Object beginWrite(){
+		Write event = new Write();
+		if(!event.isEnabled())
+			return null;
+		event.begin();
+		return event;
+	}
+
+	@Override
+	public void endWrite(Object started, String port, Request[] written, int packets, int bytes, long queueNanos){
+		Write event = (Write) started;
+		event.end();
+		if(!event.shouldCommit())
+			return;
+		// Only now that the event is known to be kept is it worth describing the requests
+		event.describe(written[0]);
+		StringBuilder commands = new StringBuilder(CommandEvents.name(written[0]));
+		for(int i = 1; i < packets; i++){
+			commands.append(", ").append(CommandEvents.name(written[i]));
+			event.payloadSize += written[i].packetLength() - PacketEncoder.DATA_OFFSET;
+		}
+		event.port = port;
+		event.commands = commands.toString();
+		event.packets = packets;
+		event.bytes = bytes;
+		event.queueWait = queueNanos;
+		event.commit();
+	}
+
+	@Override
+	public void responded(Request request, String port, int responseSize, long firstByteNanos, long latencyNanos){
+		Response event = new Response();
+		if(!event.isEnabled())
+			return;
+		event.describe(request);
+		event.port = port;
+		event.responseSize = responseSize;
+		event.firstByte = firstByteNanos;
+		event.latency = latencyNanos;
+		event.commit();
+	}
+
+	@Override
+	public void timedOut(Request request, String port, long waitedNanos){
+		Timeout event = new Timeout();
+		if(!event.isEnabled())
+			return;
+		event.describe(request);
+		event.port = port;
+		event.waited = waitedNanos;
+		event.commit();
+	}
+}
@@ -0,0 +1,188 @@
+package com.dynamicperception.nmx;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Queues the requests of a session by controller address and hands them to the command
+ * thread in weighted round-robin order. Each address with waiting requests gets a turn of
+ * up to its weight in requests before the next address is served, so polling one busy
+ * controller cannot starve the others on the same serial link.
+ * <p>
+ * {@link #peek()} always shows the request {@link #poll()} would return, which lets the
+ * command thread pipeline the requests of one turn. All methods are thread safe.
+ */
+final class BusScheduler {
+
+	/**
+	 * The queue and statistics of one controller address
+	 */
+	private static final class Lane {
+		final int addr;
+		final ArrayDeque<Request> queue = new ArrayDeque<Request>();
+		int weight = 1;
+		// Requests left in the lane's current turn
+		int credit;
+
+		long submitted;
+		long sent;
+		long completed;
+		long failed;
+		long timeouts;
+		long queueNanos;
+		int maxQueued;
+
+		Lane(int addr){
+			this.addr = addr;
+		}
+	}
+
+	private final Map<Integer, Lane> lanes = new HashMap<Integer, Lane>();
+	// Lanes with waiting requests; the first one is taking its turn
+	private final ArrayDeque<Lane> active = new ArrayDeque<Lane>();
+
+	/**
+	 * Queues a request behind the others for its address
+	 */
+	synchronized void add(Request request){
+		Lane lane = lane(request.addr);
+		request.queuedNanos = System.nanoTime();
+		lane.queue.addLast(request);
+		lane.submitted++;
+		if(lane.queue.size() > lane.maxQueued)
+			lane.maxQueued = lane.queue.size();
+		if(lane.queue.size() == 1){
+			lane.credit = lane.weight;
+			active.addLast(lane);
+		}
+		notifyAll();
+	}
+
+	/**
+	 * @return The request that {@link #poll()} would return, or null if none is waiting
+	 */
+	synchronized Request peek(){
+		Lane lane = active.peekFirst();
+		return lane == null ? null : lane.queue.peekFirst();
+	}
+
+	/**
+	 * @return The next request in round-robin order, or null if none is waiting
+	 */
+	synchronized Request poll(){
+		Lane lane = active.peekFirst();
+		if(lane == null)
+			return null;
+		Request request = lane.queue.pollFirst();
+		lane.sent++;
+		lane.queueNanos += System.nanoTime() - request.queuedNanos;
+		if(lane.queue.isEmpty()){
+			active.removeFirst();
+		}
+		else if(--lane.credit <= 0){
+			// Turn over, go to the back of the line
+			lane.credit = lane.weight;
+			active.addLast(active.removeFirst());
+		}
+		return request;
+	}
+
+	/**
+	 * Removes every waiting request without counting it as sent
+	 * @return The removed requests, in no particular order
+	 */
+	synchronized List<Request> clear(){
+		List<Request> removed = new ArrayList<Request>();
+		Lane lane;
+		while((lane = active.pollFirst()) != null){
+			removed.addAll(lane.queue);
+			lane.queue.clear();
+		}
+		return removed;
+	}
+
+	/**
+	 * Waits until a request is queued
+	 * @return The next request in round-robin order
+	 */
+	synchronized Request take() throws InterruptedException {
+		while(active.isEmpty()){
+			wait();
+		}
+		return poll();
+	}
+
+	/**
+	 * Waits until a request is queued or the timeout runs out
+	 * @return The request that {@link #poll()} would return, or null if none arrived in time
+	 */
+	synchronized Request await(long timeoutNanos) throws InterruptedException {
+		long deadline = System.nanoTime() + timeoutNanos;
+		long wait;
+		while(active.isEmpty() && (wait = deadline - System.nanoTime()) > 0){
+			TimeUnit.NANOSECONDS.timedWait(this, wait);
+		}
+		return peek();
+	}
+
+	/**
+	 * Records the outcome of a request taken from this scheduler
+	 * @param failure Why the request failed, or null if it succeeded
+	 */
+	synchronized void finished(Request request, NMXException failure){
+		Lane lane = lane(request.addr);
+		if(failure == null)
+			lane.completed++;
+		else if(failure instanceof NMXTimeoutException)
+			lane.timeouts++;
+		else
+			lane.failed++;
+	}
+
+	/**
+	 * Sets how many requests to an address are sent in a row before other addresses get a
+	 * turn
+	 */
+	synchronized void setWeight(int addr, int weight){
+		if(weight < 1)
+			throw new IllegalArgumentException("A controller's weight must be at least 1");
+		lane(addr).weight = weight;
+	}
+
+	/**
+	 * @return Statistics for an address, or null if nothing has been sent to it
+	 */
+	synchronized ControllerStats getStats(int addr){
+		Lane lane = lanes.get(addr);
+		return lane == null ? null : snapshot(lane);
+	}
+
+	/**
+	 * @return Statistics for every address that has been sent to
+	 */
+	synchronized List<ControllerStats> getStats(){
+		List<ControllerStats> stats = new ArrayList<ControllerStats>(lanes.size());
+		for(Lane lane : lanes.values()){
+			stats.add(snapshot(lane));
+		}
+		return stats;
+	}
+
+	private static ControllerStats snapshot(Lane lane){
+		return new ControllerStats(lane.addr, lane.weight, lane.queue.size(), lane.maxQueued, lane.submitted,
+				lane.sent, lane.completed, lane.failed, lane.timeouts, lane.queueNanos);
+	}
+
+	private Lane lane(int addr){
+		Lane lane = lanes.get(addr);
+		if(lane == null){
+			lane = new Lane(addr);
+			lanes.put(addr, lane);
+		}
+		return lane;
+	}
+}
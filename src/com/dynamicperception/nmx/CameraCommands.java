@@ -0,0 +1,175 @@
+// Generated by CommandStubGenerator from commands.csv. Do not edit.
+package com.dynamicperception.nmx;
+
+/**
+ * Typed methods for the camera commands of a controller, obtained from
+ * {@link NMXController}. Each method sends its command and waits for the response, and
+ * throws an {@link NMXException} if the command fails or times out.
+ */
+public final class CameraCommands extends CommandGroup {
+
+	CameraCommands(NMXSession session, int addr, int subAddr){
+		super(session, addr, subAddr);
+	}
+
+	/**
+	 * <code>c.setEnable</code>, command 2
+	 */
+	public void setEnable(int value){
+		voidCommand(2, 2, value);
+	}
+
+	/**
+	 * <code>c.expose</code>, command 3
+	 */
+	public void expose(int value){
+		voidCommand(3, 2, value);
+	}
+
+	/**
+	 * <code>c.setTrigger</code>, command 4
+	 */
+	public void setTrigger(long value){
+		voidCommand(4, 4, (int) value);
+	}
+
+	/**
+	 * <code>c.setFocus</code>, command 5
+	 */
+	public void setFocus(int value){
+		voidCommand(5, 2, value);
+	}
+
+	/**
+	 * <code>c.setMaxShots</code>, command 6
+	 */
+	public void setMaxShots(int value){
+		voidCommand(6, 2, value);
+	}
+
+	/**
+	 * <code>c.setDelay</code>, command 7
+	 */
+	public void setDelay(int value){
+		voidCommand(7, 2, value);
+	}
+
+	/**
+	 * <code>c.setFocusWithShutter</code>, command 8
+	 */
+	public void setFocusWithShutter(){
+		voidCommand(8, 0, 0);
+	}
+
+	/**
+	 * <code>c.setMUP</code>, command 9
+	 */
+	public void setMUP(int value){
+		voidCommand(9, 2, value);
+	}
+
+	/**
+	 * <code>c.setInterval</code>, command 10
+	 */
+	public void setInterval(long value){
+		voidCommand(10, 4, (int) value);
+	}
+
+	/**
+	 * <code>c.setTestMode</code>, command 11
+	 */
+	public void setTestMode(int value){
+		voidCommand(11, 2, value);
+	}
+
+	/**
+	 * <code>c.setKeepAlive</code>, command 12
+	 */
+	public void setKeepAlive(int value){
+		voidCommand(12, 2, value);
+	}
+
+	/**
+	 * <code>c.isEnabled</code>, command 100
+	 */
+	public int isEnabled(){
+		return intCommand(100, 0, 0);
+	}
+
+	/**
+	 * <code>c.isExposing</code>, command 101
+	 */
+	public int isExposing(){
+		return intCommand(101, 0, 0);
+	}
+
+	/**
+	 * <code>c.getTrigger</code>, command 102
+	 */
+	public int getTrigger(){
+		return intCommand(102, 0, 0);
+	}
+
+	/**
+	 * <code>c.getFocus</code>, command 103
+	 */
+	public int getFocus(){
+		return intCommand(103, 0, 0);
+	}
+
+	/**
+	 * <code>c.getMaxShots</code>, command 104
+	 */
+	public int getMaxShots(){
+		return intCommand(104, 0, 0);
+	}
+
+	/**
+	 * <code>c.getDelay</code>, command 105
+	 */
+	public int getDelay(){
+		return intCommand(105, 0, 0);
+	}
+
+	/**
+	 * <code>c.getFocusWithShutter</code>, command 106
+	 */
+	public int getFocusWithShutter(){
+		return intCommand(106, 0, 0);
+	}
+
+	/**
+	 * <code>c.getMUP</code>, command 107
+	 */
+	public int getMUP(){
+		return intCommand(107, 0, 0);
+	}
+
+	/**
+	 * <code>c.getInterval</code>, command 108
+	 */
+	public int getInterval(){
+		return intCommand(108, 0, 0);
+	}
+
+	/**
+	 * <code>c.getShots</code>, command 109
+	 */
+	public int getShots(){
+		return intCommand(109, 0, 0);
+	}
+
+	/**
+	 * <code>c.getTestMode</code>, command 110
+	 */
+	public int getTestMode(){
+		return intCommand(110, 0, 0);
+	}
+
+	/**
+	 * <code>c.getKeepAlive</code>, command 111
+	 */
+	public int getKeepAlive(){
+		return intCommand(111, 0, 0);
+	}
+}
@@ -1,21 +1,23 @@
 package com.dynamicperception.nmx;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
-import java.util.concurrent.TimeUnit;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.function.BiFunction;
+import java.util.function.Function;
 
 public class Command {
 	
-	private final static float FLOAT_CONVERSION = 100f;
-	private final static int MOTOR_COUNT = 3;
-	private static int addr = 3;
+	final static float FLOAT_CONVERSION = 100f;
+	private final static int ERROR = (int) -1e9;
+	final static int MOTOR_COUNT = 3;
 	private static int currentControllerNum = 0;
 	private static boolean debug = false;
-	private static List<Command> generalList = new ArrayList<Command>();
-	private static List<Command> motorList = new ArrayList<Command>();
-	private static List<Command> cameraList = new ArrayList<Command>();
-	private static List<Command> keyFrameList = new ArrayList<Command>();	
 	
-	private static boolean listsInitialized = false;
 	private String name;	
 	private Type type;	
 	private int subaddr;
@@ -23,10 +25,17 @@ public class Command {
 	private Class<?> dataType;
 	private int dataLength;
 	private Class<?> returnType;	
-	private HelpCommand helpCommand;
+	// Null until a command gets help of its own
+	private volatile HelpCommand helpCommand;
 	
 	public void help(){
-		helpCommand.helpCommand();
+		HelpCommand thisHelp = helpCommand;
+		if(thisHelp != null){
+			thisHelp.helpCommand();
+			return;
+		}
+		printInfo();
+		NMXLog.log("No additional help available for this command");
 	}
 	
 	public void setHelpCommand(HelpCommand helpCommand){
@@ -64,7 +73,7 @@ public class Command {
 			// Commands
 			public static final String START_PROGRAM						= "g.start";
 			public static final String PAUSE_PROGRAM						= "g.pause";			
-			public static final String STOP_PROGRAM			 				= "g.stop	";
+			public static final String STOP_PROGRAM			 				= "g.stop";
 			public static final String TOGGLE_LED	 						= "g.toggleLed";
 			public static final String SET_TIMING_MASTER 					= "g.setTimingMaster";
 			public static final String SET_NAME 							= "g.setName";			
@@ -331,7 +340,6 @@ public class Command {
 	}	
 	
 	private void init(Command.Type type, int command, Class<?> returnType, String name, Class<?> dataType){
-		this.helpCommand = null;
 		this.name = name;
 		this.type = type;
 		this.command = command;			
@@ -351,281 +359,153 @@ public class Command {
 		}
 		this.dataType = dataType;
 		this.dataLength = dataType == Byte.class ? 1 : dataType == Integer.class ? 2 : dataType == Long.class || dataType == Float.class ? 4 : 0;
-		class DefaultHelp implements HelpCommand{
-			Command command;			
-			public DefaultHelp(Command command){
-				this.command = command;
+	}
+	
+	/**
+	 * The command tables. They are built the first time a command is looked up: the JVM 
+	 * initializes the holder class exactly once, even when several threads get there at the 
+	 * same time, and publishes the finished tables to all of them. Nothing changes afterwards.
+	 */
+	private static final class Registry {
+		static final Registry INSTANCE = new Registry();
+		
+		final List<Command> generalList;
+		final List<Command> motorList;
+		final List<Command> cameraList;
+		final List<Command> keyFrameList;
+		// Commands by name and by type ordinal and number
+		final Map<String, Command> nameIndex;
+		final Command[][] numberIndex;
+		
+		private Registry(){
+			List<Command> general = new ArrayList<Command>();
+			List<Command> motor = new ArrayList<Command>();
+			List<Command> camera = new ArrayList<Command>();
+			List<Command> keyFrame = new ArrayList<Command>();
+			initCommands(general, motor, camera, keyFrame);
+			generalList = Collections.unmodifiableList(general);
+			motorList = Collections.unmodifiableList(motor);
+			cameraList = Collections.unmodifiableList(camera);
+			keyFrameList = Collections.unmodifiableList(keyFrame);
+			
+			// Where a name or number is listed twice the first entry wins
+			nameIndex = new HashMap<String, Command>();
+			numberIndex = new Command[Type.values().length][];
+			for(Type type : Type.values()){
+				if(type == Type.NOT_A_TYPE)
+					continue;
+				List<Command> thisList = list(type);
+				int max = -1;
+				for(Command thisCommand : thisList){
+					max = Math.max(max, thisCommand.getCommandNum());
+				}
+				Command[] byNumber = new Command[max + 1];
+				for(Command thisCommand : thisList){
+					if(!nameIndex.containsKey(thisCommand.getName()))
+						nameIndex.put(thisCommand.getName(), thisCommand);
+					if(byNumber[thisCommand.getCommandNum()] == null)
+						byNumber[thisCommand.getCommandNum()] = thisCommand;
+				}
+				numberIndex[type.ordinal()] = byNumber;
+			}
+		}
+		
+		List<Command> list(Type type){
+			switch(type){
+			case GENERAL:
+				return generalList;
+			case MOTOR:
+				return motorList;
+			case CAMERA:
+				return cameraList;
+			case KEYFRAME:
+				return keyFrameList;
+			default:
+				return null;
 			}
-			@Override
-			public void helpCommand() {
-				command.printInfo();
-				System.out.println("No additional help available for this command");				
-			}			
 		}
-		this.helpCommand = new DefaultHelp(this);
 	}
 	
 	
 	/* Static Methods */
 	
 	public static String getCommandName(int subAddr, int command){
-		Command.checkInitialization();
-		if(subAddr >= 1 && subAddr <= 3)
-			subAddr = 1;
-		
-		switch(subAddr){
-		case 0:
-			for(Command thisCommand : generalList){
-				if(thisCommand.getCommandNum() == command){
-					return thisCommand.getName();
-				}
-			}
-			break;
-		case 1:
-			for(Command thisCommand : motorList){
-				if(thisCommand.getCommandNum() == command){
-					return thisCommand.getName();
-				}
-			}
-			break;
-		case 4:
-			for(Command thisCommand : cameraList){
-				if(thisCommand.getCommandNum() == command){
-					return thisCommand.getName();
-				}
-			}
-			break;
-		case 5:
-			for(Command thisCommand : keyFrameList){
-				if(thisCommand.getCommandNum() == command){
-					return thisCommand.getName();
-				}
-			}
-			break;		
-		}	
-		return "No such command";		
+		Command thisCommand = lookup(subAddr, command);
+		return thisCommand == null ? "No such command" : thisCommand.getName();
+	}
+
+	/**
+	 * @return The command with the given number at a sub-address, or null if there is none
+	 */
+	static Command lookup(int subAddr, int command){
+		return lookup(getType(subAddr), command);
 	}
 	
+	/**
+	 * Builds the command tables now rather than on the first lookup, e.g. during start-up
+	 */
 	public static void checkInitialization(){
-		if(listsInitialized)
-			return;
-		
-		initCommands();
-		listsInitialized = true;
+		Registry.INSTANCE.getClass();
+	}
+	
+	/**
+	 * @return The command with the given number, or null if the type has no such command
+	 */
+	private static Command lookup(Type type, int command){
+		if(type == null || type == Type.NOT_A_TYPE)
+			return null;
+		Command[] byNumber = Registry.INSTANCE.numberIndex[type.ordinal()];
+		return command >= 0 && command < byNumber.length ? byNumber[command] : null;
 	}
 	
-	private static void initCommands(){
+	/**
+	 * Fills the command lists. Only called once, by {@link Registry}.
+	 */
+	private static void initCommands(List<Command> generalList, List<Command> motorList, List<Command> cameraList, List<Command> keyFrameList){
 		
 		//******** Help Commands ********//
 		class DebugHelp implements HelpCommand{
 			@Override
 			public void helpCommand() {				
-				System.out.println("\nSyntax: g.setDebug <DEBUG_CODE>");
-				System.out.println("Valid codes:");
-				System.out.println("1 - Raw command trace");			
-				System.out.println("2 - Motor steps");
-				System.out.println("4 - General motor info");
-				System.out.println("8 - Serial command detail (descriptive output)");
-				System.out.println("16 - Function detail");
-				System.out.println("32 - Command success / failure message");				
+				NMXLog.log("\nSyntax: g.setDebug <DEBUG_CODE>");
+				NMXLog.log("Valid codes:");
+				NMXLog.log("1 - Raw command trace");			
+				NMXLog.log("2 - Motor steps");
+				NMXLog.log("4 - General motor info");
+				NMXLog.log("8 - Serial command detail (descriptive output)");
+				NMXLog.log("16 - Function detail");
+				NMXLog.log("32 - Command success / failure message");				
 			}			
 		}
 		
-		//******** General Commands ********//
-		
-		// Create the general commands		
-		generalList.add(new Command(Command.Type.GENERAL, 2, Names.General.START_PROGRAM));
-		generalList.add(new Command(Command.Type.GENERAL, 3, Names.General.PAUSE_PROGRAM));
-		generalList.add(new Command(Command.Type.GENERAL, 4, Names.General.STOP_PROGRAM));
-		generalList.add(new Command(Command.Type.GENERAL, 5, Names.General.TOGGLE_LED));
-		generalList.add(new Command(Command.Type.GENERAL, 6, Names.General.SET_TIMING_MASTER));
-		generalList.add(new Command(Command.Type.GENERAL, 7, Names.General.SET_NAME));
-		generalList.add(new Command(Command.Type.GENERAL, 8, Names.General.SET_ADDRESS, Byte.class));
-		generalList.add(new Command(Command.Type.GENERAL, 9, Names.General.SET_COMMON_LINE, Byte.class));
-		generalList.add(new Command(Command.Type.GENERAL, 10, Names.General.SEND_ALL_MOTORS_HOME));
-		generalList.add(new Command(Command.Type.GENERAL, 11, Names.General.SET_MAX_STEP_RATE, Integer.class));
-		generalList.add(new Command(Command.Type.GENERAL, 12, Names.General.SET_INPUT_EDGE, Byte.class));
-		generalList.add(new Command(Command.Type.GENERAL, 13, Names.General.SET_ALT_IO_MODE, Integer.class));
-		generalList.add(new Command(Command.Type.GENERAL, 14, Names.General.SET_WATCHDOG, Byte.class));
-		generalList.add(new Command(Command.Type.GENERAL, 15, Names.General.SET_ALT_OUT_B4_SHOT_DELAY_TIME, Integer.class));
-		generalList.add(new Command(Command.Type.GENERAL, 16, Names.General.SET_ALT_OUT_AFTER_SHOT_DELAY_TIME, Integer.class));
-		generalList.add(new Command(Command.Type.GENERAL, 17, Names.General.SET_ALT_OUT_B4_SHOT_TIME, Integer.class));
-		generalList.add(new Command(Command.Type.GENERAL, 18, Names.General.SET_ALT_OUT_AFTER_SHOT_TIME, Integer.class));
-		generalList.add(new Command(Command.Type.GENERAL, 19, Names.General.SET_ALT_OUT_TRIGGER_LEVEL, Byte.class));
-		generalList.add(new Command(Command.Type.GENERAL, 20, Names.General.SET_MAX_PROGRAM_TIME, Long.class));
-		generalList.add(new Command(Command.Type.GENERAL, 21, Names.General.SET_PROGRAM_DELAY, Long.class));
-		generalList.add(new Command(Command.Type.GENERAL, 22, Names.General.SET_PROGRAM_MODE, Byte.class));
-		generalList.add(new Command(Command.Type.GENERAL, 23, Names.General.SET_JOYSTICK, Byte.class));
-		generalList.add(new Command(Command.Type.GENERAL, 24, Names.General.SET_PINGPONG, Byte.class));
-		generalList.add(new Command(Command.Type.GENERAL, 25, Names.General.SEND_ALL_MOTORS_START));
-		generalList.add(new Command(Command.Type.GENERAL, 26, Names.General.SET_START_HERE));
-		generalList.add(new Command(Command.Type.GENERAL, 27, Names.General.SET_STOP_HERE));
-		generalList.add(new Command(Command.Type.GENERAL, 28, Names.General.SET_FPS, Byte.class));
-		generalList.add(new Command(Command.Type.GENERAL, 29, Names.General.REVERSE_START_STOP));
-		generalList.add(new Command(Command.Type.GENERAL, 50, Names.General.SET_GRAFFIK, Byte.class));
-		generalList.add(new Command(Command.Type.GENERAL, 51, Names.General.SET_APP, Byte.class));
-		generalList.add(new Command(Command.Type.GENERAL, 52, Names.General.SET_PROGRAM_DELAY, Long.class));
-		
-		// Queries
-		generalList.add(new Command(Command.Type.GENERAL, 100, Integer.class, Names.General.GET_FIRMWARE));
-		generalList.add(new Command(Command.Type.GENERAL, 101, Integer.class, Names.General.GET_RUN_STATUS));
-		generalList.add(new Command(Command.Type.GENERAL, 102, Integer.class, Names.General.GET_RUN_TIME));
-		generalList.add(new Command(Command.Type.GENERAL, 103, Boolean.class, Names.General.IS_EXPOSING));
-		generalList.add(new Command(Command.Type.GENERAL, 104, Boolean.class, Names.General.IS_TIMING_MASTER));
-		generalList.add(new Command(Command.Type.GENERAL, 105, String.class, Names.General.GET_NAME));
-		generalList.add(new Command(Command.Type.GENERAL, 106, Integer.class, Names.General.GET_MAX_STEP_RATE));
-		generalList.add(new Command(Command.Type.GENERAL, 107, Float.class, Names.General.GET_VOLTAGE));
-		generalList.add(new Command(Command.Type.GENERAL, 108, Float.class, Names.General.GET_CURRENT));
-		generalList.add(new Command(Command.Type.GENERAL, 109, Integer.class, Names.General.GET_ALT_INPUT_EDGE));
-		generalList.add(new Command(Command.Type.GENERAL, 110, Integer.class, Names.General.GET_ALT_IO_MODE));
-		generalList.add(new Command(Command.Type.GENERAL, 111, Integer.class, Names.General.GET_LIMIT_SWITCH_STATE));
-		generalList.add(new Command(Command.Type.GENERAL, 112, Integer.class, Names.General.GET_ALT_OUT_B4_SHOT_DELAY_TIME));
-		generalList.add(new Command(Command.Type.GENERAL, 113, Integer.class, Names.General.GET_ALT_OUT_AFTER_SHOT_DELAY_TIME));
-		generalList.add(new Command(Command.Type.GENERAL, 114, Integer.class, Names.General.GET_ALT_OUT_B4_SHOT_TIME));
-		generalList.add(new Command(Command.Type.GENERAL, 115, Integer.class, Names.General.GET_ALT_OUT_AFTER_SHOT_TIME));
-		generalList.add(new Command(Command.Type.GENERAL, 116, Integer.class, Names.General.GET_ALT_OUT_TRIGGER_LEVEL));
-		generalList.add(new Command(Command.Type.GENERAL, 117, Integer.class, Names.General.GET_PROGRAM_DELAY));
-		generalList.add(new Command(Command.Type.GENERAL, 118, Integer.class, Names.General.GET_PROGRAM_MODE));
-		generalList.add(new Command(Command.Type.GENERAL, 119, Integer.class, Names.General.GET_POWER_CYCLED));
-		generalList.add(new Command(Command.Type.GENERAL, 120, Boolean.class, Names.General.GET_JOYSTICK));
-		generalList.add(new Command(Command.Type.GENERAL, 121, Boolean.class, Names.General.GET_PINGPONG));
-		generalList.add(new Command(Command.Type.GENERAL, 122, Boolean.class, Names.General.GET_WATCHDOG));
-		generalList.add(new Command(Command.Type.GENERAL, 123, Boolean.class, Names.General.GET_PCT_COMP));
-		generalList.add(new Command(Command.Type.GENERAL, 124, Integer.class, Names.General.GET_MOT_ATTCH));
-		generalList.add(new Command(Command.Type.GENERAL, 125, Integer.class, Names.General.GET_TOTAL_RUN_TIME));
-		generalList.add(new Command(Command.Type.GENERAL, 126, Boolean.class, Names.General.IS_PROGRAM_COMPLETE));
-		generalList.add(new Command(Command.Type.GENERAL, 127, Integer.class, Names.General.GET_FPS));
-		generalList.add(new Command(Command.Type.GENERAL, 128, Integer.class, Names.General.GET_MOTOR_RUNNING_STATES));
-		generalList.add(new Command(Command.Type.GENERAL, 129, Boolean.class, Names.General.IS_PROGRAM_VALID));
-		generalList.add(new Command(Command.Type.GENERAL, 130, Integer.class, Names.General.GET_MOTOR_SLEEP_STATES));
-		generalList.add(new Command(Command.Type.GENERAL, 150, Boolean.class, Names.General.IS_GRAFFIK));
-		
-		Command setDebug = new Command(Command.Type.GENERAL, 254, Names.General.SET_DEBUG, Byte.class);		
-		setDebug.setHelpCommand(new DebugHelp());
-		generalList.add(setDebug);
-	
-		
-		//******** Motor Commands ********//
-		
-		// Create the general commands		
-		motorList.add(new Command(Command.Type.MOTOR, 2, Names.Motor.SET_SLEEP, Byte.class));
-		motorList.add(new Command(Command.Type.MOTOR, 3, Names.Motor.SET_ENABLE, Byte.class));
-		motorList.add(new Command(Command.Type.MOTOR, 4, Names.Motor.STOP_MOTOR));
-		motorList.add(new Command(Command.Type.MOTOR, 5, Names.Motor.SET_BACKLASH, Integer.class));
-		motorList.add(new Command(Command.Type.MOTOR, 6, Names.Motor.SET_MICROSTEPS, Byte.class));
-		motorList.add(new Command(Command.Type.MOTOR, 7, Names.Motor.SET_MAX_SPEED, Integer.class));
-		motorList.add(new Command(Command.Type.MOTOR, 8, Names.Motor.SET_DIR, Byte.class));
-		motorList.add(new Command(Command.Type.MOTOR, 9, Names.Motor.SET_HOME));
-		motorList.add(new Command(Command.Type.MOTOR, 10, Names.Motor.SET_END_HERE));
-		motorList.add(new Command(Command.Type.MOTOR, 11, Names.Motor.SEND_HOME));
-		motorList.add(new Command(Command.Type.MOTOR, 12, Names.Motor.SEND_END));
-		motorList.add(new Command(Command.Type.MOTOR, 13, Names.Motor.SET_SPEED, Float.class));
-		motorList.add(new Command(Command.Type.MOTOR, 14, Names.Motor.SET_ACCEL, Float.class));
-		
-		motorList.add(new Command(Command.Type.MOTOR, 16, Names.Motor.SET_START, Long.class));
-		motorList.add(new Command(Command.Type.MOTOR, 17, Names.Motor.SET_STOP, Long.class));
-		motorList.add(new Command(Command.Type.MOTOR, 18, Names.Motor.SET_EASING, Byte.class));
-		motorList.add(new Command(Command.Type.MOTOR, 19, Names.Motor.SET_LEAD_IN, Long.class));
-		motorList.add(new Command(Command.Type.MOTOR, 20, Names.Motor.SET_TRAVEL, Long.class));
-		motorList.add(new Command(Command.Type.MOTOR, 21, Names.Motor.SET_PROG_ACCEL, Long.class));
-		motorList.add(new Command(Command.Type.MOTOR, 22, Names.Motor.SET_PROG_DECEL, Long.class));
-		motorList.add(new Command(Command.Type.MOTOR, 23, Names.Motor.SEND_START));
-		motorList.add(new Command(Command.Type.MOTOR, 24, Names.Motor.SEND_STOP));
-		motorList.add(new Command(Command.Type.MOTOR, 25, Names.Motor.SET_LEAD_OUT, Long.class));
-		
-		motorList.add(new Command(Command.Type.MOTOR, 27, Names.Motor.RESET_LIMITS));
-		motorList.add(new Command(Command.Type.MOTOR, 28, Integer.class, Names.Motor.AUTO_SET_MS));
-		motorList.add(new Command(Command.Type.MOTOR, 29, Names.Motor.SET_START_HERE));
-		motorList.add(new Command(Command.Type.MOTOR, 30, Names.Motor.SET_STOP_HERE, Byte.class));	
-		motorList.add(new Command(Command.Type.MOTOR, 31, Names.Motor.SEND_TO, Long.class));
-				
+		// The table itself is generated from commands.csv
+		CommandTable.register(new CommandTable.Registrar() {
+			@Override
+			public void add(Type type, int command, String name, Class<?> returnType, Class<?> dataType) {
+				Command thisCommand = new Command(type, command, returnType, name, dataType);
+				switch(type){
+				case GENERAL:
+					generalList.add(thisCommand);
+					break;
+				case MOTOR:
+					motorList.add(thisCommand);
+					break;
+				case CAMERA:
+					cameraList.add(thisCommand);
+					break;
+				case KEYFRAME:
+					keyFrameList.add(thisCommand);
+					break;
+				default:
+					throw new IllegalArgumentException("Not a command type: " + type);
+				}
+			}
+		});
 		
-		// Queries
-		motorList.add(new Command(Command.Type.MOTOR, 100, Boolean.class, Names.Motor.GET_ENABLE));
-		motorList.add(new Command(Command.Type.MOTOR, 101, Integer.class, Names.Motor.GET_BACKLASH));
-		motorList.add(new Command(Command.Type.MOTOR, 102, Integer.class, Names.Motor.GET_MS));
-		motorList.add(new Command(Command.Type.MOTOR, 103, Integer.class, Names.Motor.GET_DIR));
-		motorList.add(new Command(Command.Type.MOTOR, 104, Integer.class, Names.Motor.GET_MAX_STEP_RATE));
-		motorList.add(new Command(Command.Type.MOTOR, 105, Integer.class, Names.Motor.GET_END));	
-		motorList.add(new Command(Command.Type.MOTOR, 106, Integer.class, Names.Motor.GET_POS));		
-		motorList.add(new Command(Command.Type.MOTOR, 107, Boolean.class, Names.Motor.IS_RUNNING));
-		motorList.add(new Command(Command.Type.MOTOR, 108, Float.class, Names.Motor.GET_SPEED));
-		motorList.add(new Command(Command.Type.MOTOR, 109, Float.class, Names.Motor.GET_ACCEL));
-		motorList.add(new Command(Command.Type.MOTOR, 110, Integer.class, Names.Motor.GET_EASING));
-		motorList.add(new Command(Command.Type.MOTOR, 111, Integer.class, Names.Motor.GET_START));
-		motorList.add(new Command(Command.Type.MOTOR, 112, Integer.class, Names.Motor.GET_STOP));
-		motorList.add(new Command(Command.Type.MOTOR, 113, Integer.class, Names.Motor.GET_TRAVEL));
-		motorList.add(new Command(Command.Type.MOTOR, 114, Integer.class, Names.Motor.GET_LEAD_IN));
-		motorList.add(new Command(Command.Type.MOTOR, 115, Integer.class, Names.Motor.GET_PROG_ACCEL));
-		motorList.add(new Command(Command.Type.MOTOR, 116, Integer.class, Names.Motor.GET_PROG_DECEL));
-		motorList.add(new Command(Command.Type.MOTOR, 117, Boolean.class, Names.Motor.GET_SLEEP));
-		motorList.add(new Command(Command.Type.MOTOR, 118, Boolean.class, Names.Motor.IS_SPEED_VALID));
-		motorList.add(new Command(Command.Type.MOTOR, 119, Integer.class, Names.Motor.GET_LEAD_OUT));
-	
-		
-		//******** Camera Commands ********//
-		
-		// Commands		
-		cameraList.add(new Command(Command.Type.CAMERA, 2, Names.Camera.SET_ENABLE, Integer.class));
-		cameraList.add(new Command(Command.Type.CAMERA, 3, Names.Camera.EXPOSE_NOW, Integer.class));
-		cameraList.add(new Command(Command.Type.CAMERA, 4, Names.Camera.SET_TRIGGER, Long.class));
-		cameraList.add(new Command(Command.Type.CAMERA, 5, Names.Camera.SET_FOCUS, Integer.class));
-		cameraList.add(new Command(Command.Type.CAMERA, 6, Names.Camera.SET_MAX_SHOTS, Integer.class));
-		cameraList.add(new Command(Command.Type.CAMERA, 7, Names.Camera.SET_DELAY, Integer.class));
-		cameraList.add(new Command(Command.Type.CAMERA, 8, Names.Camera.SET_FOCUS_WITH_SHUTTER));
-		cameraList.add(new Command(Command.Type.CAMERA, 9, Names.Camera.SET_MUP, Integer.class));
-		cameraList.add(new Command(Command.Type.CAMERA, 10, Names.Camera.SET_INTERVAL, Long.class));
-		cameraList.add(new Command(Command.Type.CAMERA, 11, Names.Camera.SET_TEST_MODE, Integer.class));
-		cameraList.add(new Command(Command.Type.CAMERA, 12, Names.Camera.SET_KEEPALIVE, Integer.class));
-		
-		// Queries		
-		cameraList.add(new Command(Command.Type.CAMERA, 100, Integer.class, Names.Camera.IS_ENABLED));
-		cameraList.add(new Command(Command.Type.CAMERA, 101, Integer.class, Names.Camera.IS_EXPOSING));
-		cameraList.add(new Command(Command.Type.CAMERA, 102, Integer.class, Names.Camera.GET_TRIGGER));
-		cameraList.add(new Command(Command.Type.CAMERA, 103, Integer.class, Names.Camera.GET_FOCUS));
-		cameraList.add(new Command(Command.Type.CAMERA, 104, Integer.class, Names.Camera.GET_MAX_SHOTS));
-		cameraList.add(new Command(Command.Type.CAMERA, 105, Integer.class, Names.Camera.GET_DELAY));
-		cameraList.add(new Command(Command.Type.CAMERA, 106, Integer.class, Names.Camera.GET_FOCUS_WITH_SHUTTER));
-		cameraList.add(new Command(Command.Type.CAMERA, 107, Integer.class, Names.Camera.GET_MUP));		
-		cameraList.add(new Command(Command.Type.CAMERA, 108, Integer.class, Names.Camera.GET_INTERVAL));
-		cameraList.add(new Command(Command.Type.CAMERA, 109, Integer.class, Names.Camera.GET_SHOTS));
-		cameraList.add(new Command(Command.Type.CAMERA, 110, Integer.class, Names.Camera.GET_TEST_MODE));
-		cameraList.add(new Command(Command.Type.CAMERA, 111, Integer.class, Names.Camera.GET_KEEPALIVE));
-	
-		
-		//******** Key Frame Commands ********//
-		
-		// Commands		
-		keyFrameList.add(new Command(Command.Type.KEYFRAME, 10, Integer.class, Names.KeyFrame.SET_AXIS, Integer.class));		
-		keyFrameList.add(new Command(Command.Type.KEYFRAME, 11, Integer.class, Names.KeyFrame.SET_COUNT, Integer.class));
-		keyFrameList.add(new Command(Command.Type.KEYFRAME, 12, Float.class, Names.KeyFrame.SET_ABSCISSA, Float.class));
-		keyFrameList.add(new Command(Command.Type.KEYFRAME, 13, Float.class, Names.KeyFrame.SET_POS, Float.class));		
-		keyFrameList.add(new Command(Command.Type.KEYFRAME, 14, Float.class, Names.KeyFrame.SET_VEL, Float.class));
-		keyFrameList.add(new Command(Command.Type.KEYFRAME, 15, Integer.class, Names.KeyFrame.SET_UPDATE_RATE, Integer.class));
-		keyFrameList.add(new Command(Command.Type.KEYFRAME, 16, Names.KeyFrame.END_TRANSMISSION));
-		keyFrameList.add(new Command(Command.Type.KEYFRAME, 17, Integer.class, Names.KeyFrame.SET_CONT_VID_TIME, Long.class));
-		keyFrameList.add(new Command(Command.Type.KEYFRAME, 20, Names.KeyFrame.START_PROGRAM));
-		keyFrameList.add(new Command(Command.Type.KEYFRAME, 21, Names.KeyFrame.PAUSE_PROGRAM));
-		keyFrameList.add(new Command(Command.Type.KEYFRAME, 22, Names.KeyFrame.STOP_PROGRAM));
-		
-		// Queries		
-		keyFrameList.add(new Command(Command.Type.KEYFRAME, 99, Names.KeyFrame.PRINT_INFO));
-		keyFrameList.add(new Command(Command.Type.KEYFRAME, 100, Integer.class, Names.KeyFrame.GET_COUNT));
-		keyFrameList.add(new Command(Command.Type.KEYFRAME, 101, Integer.class, Names.KeyFrame.GET_UPDATE_RATE));
-		keyFrameList.add(new Command(Command.Type.KEYFRAME, 102, Float.class, Names.KeyFrame.GET_POS_AT, Float.class));		
-		keyFrameList.add(new Command(Command.Type.KEYFRAME, 103, Float.class, Names.KeyFrame.GET_VEL_AT, Float.class));
-		keyFrameList.add(new Command(Command.Type.KEYFRAME, 104, Float.class, Names.KeyFrame.GET_ACCEL_AT, Float.class));
-		keyFrameList.add(new Command(Command.Type.KEYFRAME, 105, Names.KeyFrame.IS_VEL_VALID));
-		keyFrameList.add(new Command(Command.Type.KEYFRAME, 106, Boolean.class, Names.KeyFrame.IS_ACCEL_VALID));
-		keyFrameList.add(new Command(Command.Type.KEYFRAME, 107, Integer.class, Names.KeyFrame.GET_CONT_VID_DUR));		
-
-		keyFrameList.add(new Command(Command.Type.KEYFRAME, 120, Integer.class, Names.KeyFrame.GET_RUN_STATE));
-		keyFrameList.add(new Command(Command.Type.KEYFRAME, 121, Long.class, Names.KeyFrame.GET_RUN_TIME));
-		keyFrameList.add(new Command(Command.Type.KEYFRAME, 122, Long.class, Names.KeyFrame.GET_MAX_RUN_TIME));
-		keyFrameList.add(new Command(Command.Type.KEYFRAME, 123, Integer.class, Names.KeyFrame.GET_PCT_DONE));
-		keyFrameList.add(new Command(Command.Type.KEYFRAME, 130, Integer.class, Names.KeyFrame.GET_KF_ABSCISSA, Integer.class));
-		keyFrameList.add(new Command(Command.Type.KEYFRAME, 131, Integer.class, Names.KeyFrame.GET_KF_POS, Integer.class));
-		keyFrameList.add(new Command(Command.Type.KEYFRAME, 132, Float.class, Names.KeyFrame.GET_KF_VEL, Integer.class));
+		for(Command thisCommand : generalList){
+			if(thisCommand.getName().equals(Names.General.SET_DEBUG))
+				thisCommand.setHelpCommand(new DebugHelp());
+		}
 	}
 	
 	/** 
@@ -633,76 +513,81 @@ public class Command {
 	 * @param type The type of commands wanted
 	 * @return The list of command objects associated with that type
 	 */
-	private static List<Command> getList(Type type){
-		
-		if(type == Type.GENERAL){
-			return generalList;
-		}
-		else if(type == Type.MOTOR){
-			return motorList;
-		}
-		else if(type == Type.CAMERA){
-			return cameraList;
-		}
-		else if(type == Type.KEYFRAME){
-			return keyFrameList;
-		}
-		else{
-			System.out.println("That is not a supported command type");
+	static List<Command> getList(Type type){
+		List<Command> thisList = Registry.INSTANCE.list(type);
+		if(thisList == null){
+			NMXLog.log("That is not a supported command type");
 			throw new UnsupportedOperationException();
 		}
+		return thisList;
 	}	
 	
 	public static Type getType(String name){		
-		if(name.substring(0,1).equals("g")){
+		switch(name.isEmpty() ? 0 : name.charAt(0)){
+		case 'g':
 			return Type.GENERAL;
-		}
-		else if(name.substring(0,1).equals("m")){			
+		case 'm':
 			return Type.MOTOR;
-		}
-		else if(name.substring(0,1).equals("c")){
+		case 'c':
 			return Type.CAMERA;
-		}
-		else if(name.substring(0,1).equals("k")){
+		case 'k':
 			return Type.KEYFRAME;
-		}
-		else{
+		default:
 			return Type.NOT_A_TYPE;
 		}
 	}
+	
+	/**
+	 * @return The type of the commands at a sub-address, or null if there are none. The three 
+	 * motors share the motor commands.
+	 */
+	private static Type getType(int subAddr){
+		switch(subAddr){
+		case 0:
+			return Type.GENERAL;
+		case 1:
+		case 2:
+		case 3:
+			return Type.MOTOR;
+		case 4:
+			return Type.CAMERA;
+		case 5:
+			return Type.KEYFRAME;
+		default:
+			return null;
+		}
+	}
 		
 	public static void printList(Type type){				
 		if(type == Type.NOT_A_TYPE){
-			System.out.println("Not a valid command type");
+			NMXLog.log("Not a valid command type");
 			return;
 		}
-		Command.checkInitialization();
 		List<Command> thisList = Command.getList(type);
-		System.out.println("\n******** " + type + " COMMAND LIST ********");
+		NMXLog.log("\n******** " + type + " COMMAND LIST ********");
 		for(int i = 0; i < thisList.size(); i++){
-			System.out.println(thisList.get(i).getName());
+			NMXLog.log(thisList.get(i).getName());
 		}
 	}
 	
 	public static void find(String term){
 		term = term.toLowerCase();
 		
-		Command.checkInitialization();
 		Type type = Command.getType(term);		
 		if(type == Type.NOT_A_TYPE){
-			System.out.println("Not a valid type");
-			System.out.println("Preface search term with <TYPE>.");
-			System.out.println("Valid types: g, m, c, k");
+			NMXLog.log("Not a valid type");
+			NMXLog.log("Preface search term with <TYPE>.");
+			NMXLog.log("Valid types: g, m, c, k");
 			return;
 		}
 		List<Command> thisList = Command.getList(type);
-		System.out.println("\n******** Matching commands ********");
+		NMXLog.log("\n******** Matching commands ********");
 		// Trim the type indicator
 		term = term.substring(2, term.length());
 		for(int i = 0; i < thisList.size(); i++){
 			Command thisCommand = thisList.get(i);
 			if(thisCommand.getName().toLowerCase().indexOf(term) >= 0){
-				System.out.println(thisCommand.getName());
+				NMXLog.log(thisCommand.getName());
 			}
 		}
 	}
@@ -714,15 +599,11 @@ public class Command {
 	 * @return
 	 */
 	public static Command get(String name) throws UnsupportedOperationException{
-		Command.checkInitialization();
-		Type type = Command.getType(name);		
-		List<Command> commandList = getList(type);
-		for(int i = 0; i < commandList.size(); i++){
-			Command thisCommand = commandList.get(i); 
-			if(type == thisCommand.getType() && name.equals(thisCommand.getName())){
-				return thisCommand;
-			}
-		}
+		Command thisCommand = Registry.INSTANCE.nameIndex.get(name);
+		if(thisCommand != null)
+			return thisCommand;
+		if(Command.getType(name) == Type.NOT_A_TYPE)
+			NMXLog.log("That is not a supported command type");
 		// If no command was found, it must have been invalid
 		throw new UnsupportedOperationException();		
 	}
@@ -734,14 +615,11 @@ public class Command {
 	 * @return
 	 */
 	public static Command get(Type type, int command){		
-		Command.checkInitialization();
-		List<Command> commandList = getList(type);
-		for(int i = 0; i < commandList.size(); i++){
-			Command thisCommand = commandList.get(i); 
-			if(type == thisCommand.getType() && command == thisCommand.getCommandNum()){
-				return thisCommand;
-			}
-		}
+		if(type == Type.NOT_A_TYPE)
+			NMXLog.log("That is not a supported command type");
+		Command thisCommand = lookup(type, command);
+		if(thisCommand != null)
+			return thisCommand;
 		// If no command was thrown, it must have been invalid
 		throw new UnsupportedOperationException();		
 	}
@@ -750,8 +628,26 @@ public class Command {
 		Command.debug = debug;
 	}
 	
+	/**
+	 * @return Whether commands run by name log their data and results, see 
+	 * {@link #setDebug(boolean)} and {@link NMXComs#setSerialDetail(boolean)}
+	 */
+	private static boolean isVerbose(){
+		return debug || NMXComs.isSerialDetail();
+	}
+	
 	public static void setAddr(int addr){
-		Command.addr = addr;
+		NMXSession.getDefault().setAddr(addr);
+	}
+	
+	/**
+	 * Sets how many commands may be sent to the controller before their responses have arrived. 
+	 * A larger window speeds up long runs of small setters, such as key frame uploads. The default
+	 * of 1 waits for each response before sending the next command.
+	 * @param size Maximum number of commands in flight
+	 */
+	public static void setPipelineWindow(int size){
+		NMXSession.getDefault().setPipelineWindow(size);
 	}
 	
 	public static int getControllerNum(){
@@ -759,41 +655,507 @@ public class Command {
 	}
 	
 	public static <T>T execute(String name){
-		return Command.get(name).executeThis();
+		return NMXSession.getDefault().execute(name);
 	}
 	
 	public static <T>T execute(String name, String dataOrMotor){
-		return Command.get(name).executeThis(dataOrMotor);
+		return NMXSession.getDefault().execute(name, dataOrMotor);
 	}
 	
 	public static <T>T execute(String name, String motor, String data){
-		return Command.get(name).executeThis(motor, data);
+		return NMXSession.getDefault().execute(name, motor, data);
 	}
 	
 	public static <T>T execute(String name, boolean dataOrMotor){
-		return Command.get(name).executeThis(dataOrMotor == true ? "1" : "0");
+		return NMXSession.getDefault().execute(name, dataOrMotor);
 	}
 	
 	public static <T>T execute(String name, int motor, boolean data){
-		return Command.get(name).executeThis(Integer.toString(motor), data == true ? "1" : "0");
+		return NMXSession.getDefault().execute(name, motor, data);
 	}
 	
 	public static <T>T execute(String name, int dataOrMotor){
-		return Command.get(name).executeThis(Integer.toString(dataOrMotor));
+		return NMXSession.getDefault().execute(name, dataOrMotor);
 	}
 	
 	public static <T>T execute(String name, int motor, int data){
-		return Command.get(name).executeThis(Integer.toString(motor), Integer.toString(data));
+		return NMXSession.getDefault().execute(name, motor, data);
 	}
 	
 	public static <T>T execute(String name, float dataOrMotor){
-		return Command.get(name).executeThis(Float.toString(dataOrMotor));
+		return NMXSession.getDefault().execute(name, dataOrMotor);
 	}
 	
 	public static <T>T execute(String name, int motor, float data){
-		return Command.get(name).executeThis(Integer.toString(motor), Float.toString(data));
+		return NMXSession.getDefault().execute(name, motor, data);
+	}
+	
+	/**
+	 * Executes a non-motor command whose data segment is built with a {@link Payload}
+	 */
+	public static <T>T execute(String name, Payload data){
+		return NMXSession.getDefault().execute(name, data);
+	}
+	
+	/**
+	 * Executes a motor command whose data segment is built with a {@link Payload}, e.g. a 
+	 * direction byte followed by a step count
+	 */
+	public static <T>T execute(String name, int motor, Payload data){
+		return NMXSession.getDefault().execute(name, motor, data);
+	}
+	
+	/* Primitive Execution */
+	
+	/**
+	 * Executes a command and returns its value as an int. Unlike {@link #execute(String, int, int)}
+	 * the data is passed on and the value returned without going through strings or boxes, and
+	 * nothing is printed. Use these for commands sent in tight loops.
+	 * @throws NMXException If the command fails or times out, or its response carries no value
+	 * @throws UnsupportedOperationException If the command does not exist or is given the
+	 * wrong arguments
+	 */
+	public static int executeInt(String name){
+		return NMXSession.getDefault().executeInt(name);
+	}
+	
+	public static int executeInt(String name, int dataOrMotor){
+		return NMXSession.getDefault().executeInt(name, dataOrMotor);
+	}
+	
+	public static int executeInt(String name, float data){
+		return NMXSession.getDefault().executeInt(name, data);
+	}
+	
+	public static int executeInt(String name, int motor, int data){
+		return NMXSession.getDefault().executeInt(name, motor, data);
+	}
+	
+	public static int executeInt(String name, int motor, float data){
+		return NMXSession.getDefault().executeInt(name, motor, data);
+	}
+	
+	/**
+	 * Executes a command and returns its value as a float, see {@link #executeInt(String)}
+	 */
+	public static float executeFloat(String name){
+		return NMXSession.getDefault().executeFloat(name);
+	}
+	
+	public static float executeFloat(String name, int dataOrMotor){
+		return NMXSession.getDefault().executeFloat(name, dataOrMotor);
+	}
+	
+	public static float executeFloat(String name, float data){
+		return NMXSession.getDefault().executeFloat(name, data);
+	}
+	
+	public static float executeFloat(String name, int motor, int data){
+		return NMXSession.getDefault().executeFloat(name, motor, data);
+	}
+	
+	public static float executeFloat(String name, int motor, float data){
+		return NMXSession.getDefault().executeFloat(name, motor, data);
+	}
+	
+	/**
+	 * Executes a command and returns whether its value is non-zero, see {@link #executeInt(String)}
+	 */
+	public static boolean executeBool(String name){
+		return NMXSession.getDefault().executeBool(name);
+	}
+	
+	public static boolean executeBool(String name, int dataOrMotor){
+		return NMXSession.getDefault().executeBool(name, dataOrMotor);
+	}
+	
+	public static boolean executeBool(String name, float data){
+		return NMXSession.getDefault().executeBool(name, data);
+	}
+	
+	public static boolean executeBool(String name, int motor, int data){
+		return NMXSession.getDefault().executeBool(name, motor, data);
+	}
+	
+	public static boolean executeBool(String name, int motor, float data){
+		return NMXSession.getDefault().executeBool(name, motor, data);
+	}
+	
+	/**
+	 * Executes a command and waits for the controller to confirm it, see {@link #executeInt(String)}
+	 */
+	public static void executeVoid(String name){
+		NMXSession.getDefault().executeVoid(name);
+	}
+	
+	public static void executeVoid(String name, int dataOrMotor){
+		NMXSession.getDefault().executeVoid(name, dataOrMotor);
+	}
+	
+	public static void executeVoid(String name, float data){
+		NMXSession.getDefault().executeVoid(name, data);
+	}
+	
+	public static void executeVoid(String name, int motor, int data){
+		NMXSession.getDefault().executeVoid(name, motor, data);
+	}
+	
+	public static void executeVoid(String name, int motor, float data){
+		NMXSession.getDefault().executeVoid(name, motor, data);
+	}
+	
+	/* Asynchronous Execution */
+	
+	/**
+	 * Sends a command without waiting for the controller to answer. The returned future is 
+	 * completed with the command's return value, or null for commands without one. It fails 
+	 * with an {@link NMXTimeoutException} if the controller does not answer in time and with
+	 * an {@link NMXResponseException} if the answer cannot be read.
+	 * <p>
+	 * Invalid names, motor numbers or data are reported by throwing from this method, just 
+	 * like {@link #execute(String)}.
+	 */
+	public static <T> CompletableFuture<T> executeAsync(String name){
+		return NMXSession.getDefault().executeAsync(name);
+	}
+	
+	/**
+	 * See {@link #executeAsync(String)}
+	 */
+	public static <T> CompletableFuture<T> executeAsync(String name, int dataOrMotor){
+		return NMXSession.getDefault().executeAsync(name, dataOrMotor);
+	}
+	
+	/**
+	 * See {@link #executeAsync(String)}
+	 */
+	public static <T> CompletableFuture<T> executeAsync(String name, int motor, int data){
+		return NMXSession.getDefault().executeAsync(name, motor, data);
+	}
+	
+	/**
+	 * See {@link #executeAsync(String)}
+	 */
+	public static <T> CompletableFuture<T> executeAsync(String name, float data){
+		return NMXSession.getDefault().executeAsync(name, data);
+	}
+	
+	/**
+	 * See {@link #executeAsync(String)}
+	 */
+	public static <T> CompletableFuture<T> executeAsync(String name, int motor, float data){
+		return NMXSession.getDefault().executeAsync(name, motor, data);
+	}
+	
+	/**
+	 * See {@link #executeAsync(String)}
+	 */
+	public static <T> CompletableFuture<T> executeAsync(String name, Payload data){
+		return NMXSession.getDefault().executeAsync(name, data);
+	}
+	
+	/**
+	 * See {@link #executeAsync(String)}
+	 */
+	public static <T> CompletableFuture<T> executeAsync(String name, int motor, Payload data){
+		return NMXSession.getDefault().executeAsync(name, motor, data);
+	}
+	
+	/* Batch Execution */
+	
+	/**
+	 * @return An empty batch of commands, see {@link Batch}
+	 */
+	public static Batch batch(){
+		return NMXSession.getDefault().batch();
+	}
+	
+	/**
+	 * A sequence of commands that is resolved once and sent in one go, e.g. all the setters
+	 * for a program:
+	 * <pre>
+	 * BatchResult[] results = Command.batch()
+	 *     .add(Names.Motor.SET_START, 1, 0)
+	 *     .add(Names.Motor.SET_STOP, 1, 20000)
+	 *     .add(Names.Camera.SET_INTERVAL, 2000)
+	 *     .execute();
+	 * </pre>
+	 * Each operation is looked up and its data converted to the wire format when it is added.
+	 * An operation that cannot be resolved does not stop the batch; it is reported in its 
+	 * result along with any communication errors. Nothing is printed to the console for 
+	 * successful operations. A batch may be executed more than once.
+	 */
+	public static class Batch {
+		
+		private final NMXSession session;
+		private final int addr;
+		private final List<BatchItem> items = new ArrayList<BatchItem>();
+		
+		Batch(NMXSession session, int addr){
+			this.session = session;
+			this.addr = addr;
+		}
+		
+		/**
+		 * Adds a command that takes no motor number or data
+		 * @return This batch
+		 */
+		public Batch add(String name){
+			BatchItem item = new BatchItem(name);
+			try {
+				item.command = Command.get(name);
+				if(item.command.type == Command.Type.MOTOR){
+					NMXLog.log("This is a motor command; the motor number must be specified to execute");
+					throw new UnsupportedOperationException();
+				}
+				item.subAddr = item.command.subaddr;
+			} catch (RuntimeException e) {
+				item.error = e;
+			}
+			items.add(item);
+			return this;
+		}
+		
+		/**
+		 * Adds a motor command without data, or a non-motor command with data
+		 * @return This batch
+		 */
+		public Batch add(String name, int dataOrMotor){
+			BatchItem item = new BatchItem(name);
+			try {
+				item.command = Command.get(name);
+				if(item.command.type == Command.Type.MOTOR){
+					item.subAddr = item.command.motorSubaddr(dataOrMotor);
+				}
+				else{
+					item.subAddr = item.command.subaddr;
+					item.setData(item.command.encodeData(dataOrMotor));
+				}
+			} catch (RuntimeException e) {
+				item.error = e;
+			}
+			items.add(item);
+			return this;
+		}
+		
+		/**
+		 * Adds a non-motor command with data
+		 * @return This batch
+		 */
+		public Batch add(String name, float data){
+			BatchItem item = new BatchItem(name);
+			try {
+				item.command = Command.get(name);
+				if(item.command.type == Command.Type.MOTOR){
+					NMXLog.log("This is a motor command; the motor number must be specified to execute");
+					throw new UnsupportedOperationException();
+				}
+				item.subAddr = item.command.subaddr;
+				item.setData(item.command.encodeData(data));
+			} catch (RuntimeException e) {
+				item.error = e;
+			}
+			items.add(item);
+			return this;
+		}
+		
+		/**
+		 * Adds a non-motor command with boolean data
+		 * @return This batch
+		 */
+		public Batch add(String name, boolean data){
+			return add(name, data ? 1 : 0);
+		}
+		
+		/**
+		 * Adds a motor command with data
+		 * @return This batch
+		 */
+		public Batch add(String name, int motor, int data){
+			BatchItem item = new BatchItem(name);
+			try {
+				item.command = Command.get(name);
+				item.subAddr = item.command.motorSubaddr(motor);
+				item.setData(item.command.encodeData(data));
+			} catch (RuntimeException e) {
+				item.error = e;
+			}
+			items.add(item);
+			return this;
+		}
+		
+		/**
+		 * Adds a motor command with data
+		 * @return This batch
+		 */
+		public Batch add(String name, int motor, float data){
+			BatchItem item = new BatchItem(name);
+			try {
+				item.command = Command.get(name);
+				item.subAddr = item.command.motorSubaddr(motor);
+				item.setData(item.command.encodeData(data));
+			} catch (RuntimeException e) {
+				item.error = e;
+			}
+			items.add(item);
+			return this;
+		}
+		
+		/**
+		 * Adds a motor command with boolean data
+		 * @return This batch
+		 */
+		public Batch add(String name, int motor, boolean data){
+			return add(name, motor, data ? 1 : 0);
+		}
+		
+		/**
+		 * @return Number of operations in the batch
+		 */
+		public int size(){
+			return items.size();
+		}
+		
+		/**
+		 * Sends every operation and waits for all of them to finish
+		 * @return One result per operation, in the order they were added
+		 */
+		public BatchResult[] execute(){
+			try {
+				return executeAsync().get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new NMXException("Interrupted while waiting for the batch to finish", e);
+			} catch (ExecutionException e) {
+				// Each operation's failure is kept in its own result, so this should not happen
+				throw new NMXException("Batch failed", e.getCause());
+			}
+		}
+		
+		/**
+		 * Sends every operation without waiting for the responses
+		 * @return A future completed with one result per operation, in the order they were 
+		 * added, once every operation has finished. It does not fail when operations do.
+		 */
+		public CompletableFuture<BatchResult[]> executeAsync(){
+			
+			final BatchResult[] results = new BatchResult[items.size()];
+			CompletableFuture<?>[] pending = new CompletableFuture<?>[items.size()];
+			
+			// Queue every packet before waiting on any of them so they can share the pipeline window
+			for(int i = 0; i < items.size(); i++){
+				final BatchItem item = items.get(i);
+				final int index = i;
+				if(item.error != null){
+					results[i] = new BatchResult(item.name, null, item.error);
+					pending[i] = CompletableFuture.completedFuture(null);
+					continue;
+				}
+				pending[i] = session.send(addr, item.subAddr, item.command.command, item.length, item.data)
+						.handle(new BiFunction<Frame, Throwable, Void>() {
+							@Override
+							public Void apply(Frame frame, Throwable failure) {
+								results[index] = item.result(frame, failure);
+								return null;
+							}
+						});
+			}
+			
+			return CompletableFuture.allOf(pending).thenApply(new Function<Void, BatchResult[]>() {
+				@Override
+				public BatchResult[] apply(Void done) {
+					return results;
+				}
+			});
+		}
 	}
 	
+	/**
+	 * One resolved operation of a {@link Batch}
+	 */
+	private static class BatchItem {
+		final String name;
+		Command command;
+		int subAddr;
+		int length = 0;
+		int data = 0;
+		RuntimeException error;
+		
+		BatchItem(String name){
+			this.name = name;
+		}
+		
+		void setData(int data){
+			if(command.dataLength == 0){
+				NMXLog.log("This command does not send additional data");
+				throw new UnsupportedOperationException();
+			}
+			this.length = command.dataLength;
+			this.data = data;
+		}
+		
+		BatchResult result(Frame frame, Throwable failure){
+			if(failure != null){
+				return new BatchResult(name, null, failure);
+			}
+			try {
+				return new BatchResult(name, command.convertResponse(frame), null);
+			} catch (NMXException e) {
+				return new BatchResult(name, null, e);
+			}
+		}
+	}
+	
+	/**
+	 * The outcome of one operation in a {@link Batch}
+	 */
+	public static class BatchResult {
+		private final String name;
+		private final Object value;
+		private final Throwable error;
+		
+		private BatchResult(String name, Object value, Throwable error){
+			this.name = name;
+			this.value = value;
+			this.error = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+		}
+		
+		/**
+		 * @return Name of the command
+		 */
+		public String getName(){
+			return name;
+		}
+		
+		/**
+		 * @return Whether the operation was resolved, sent and answered successfully
+		 */
+		public boolean isOk(){
+			return error == null;
+		}
+		
+		/**
+		 * @return The command's return value, or null if it has none or the operation failed
+		 */
+		@SuppressWarnings("unchecked")
+		public <T>T getValue(){
+			return (T) value;
+		}
+		
+		/**
+		 * @return Why the operation failed, or null if it succeeded. This is an 
+		 * {@link NMXException} for communication errors and an 
+		 * {@link UnsupportedOperationException} for invalid names, motors or data.
+		 */
+		public Throwable getError(){
+			return error;
+		}
+		
+		@Override
+		public String toString(){
+			return name + ": " + (isOk() ? (value == null ? "OK" : value) : "failed (" + error + ")");
+		}
+	}
 	
 	/* Non-Static Methods */
 	
@@ -817,64 +1179,162 @@ public class Command {
 		return this.command;
 	}
 	
+	/**
+	 * @return The sub-address the command is sent to, the first motor's for motor commands
+	 */
+	int getSubaddr(){
+		return this.subaddr;
+	}
+
+	Class<?> getReturnType(){
+		return this.returnType;
+	}
+
+	Class<?> getDataType(){
+		return this.dataType;
+	}
+
 	public void printInfo(){
-		System.out.println("Command type: " + this.type);
-		System.out.println("Number: " + this.command);
-		System.out.println("Name: " + this.name);
-		System.out.println("Return type: " + this.returnType.getName());		
+		NMXLog.log("Command type: " + this.type);
+		NMXLog.log("Number: " + this.command);
+		NMXLog.log("Name: " + this.name);
+		NMXLog.log("Return type: " + this.returnType.getName());		
+	}
+	
+	<T>T executeThis(NMXSession session, int addr){
+		return collectResponse(send(session, addr));
+	}
+	
+	<T>T executeThis(NMXSession session, int addr, String dataOrMotor){
+		return collectResponse(send(session, addr, dataOrMotor));
 	}
 	
-	private <T>T executeThis(){
+	<T>T executeThis(NMXSession session, int addr, String motor, String data){
+		return collectResponse(send(session, addr, motor, data));
+	}
+	
+	CompletableFuture<Frame> send(NMXSession session, int addr){
+		return send(session, addr, nonMotorSubaddr(), "0", false);			
+	}
+	
+	CompletableFuture<Frame> send(NMXSession session, int addr, String dataOrMotor){
 		if(this.type == Command.Type.MOTOR){
-			System.out.println("This is a motor command; the motor number must be specified to execute");			
-			this.printInfo();
-			throw new UnsupportedOperationException();
+			return send(session, addr, motorSubaddr(dataOrMotor), "0", false);
 		}
 		else{
-			return executeThis(this.subaddr, "0", false);			
+			return send(session, addr, this.subaddr, dataOrMotor, true);
 		}
 	}
 	
-	private <T>T executeThis(String dataOrMotor){
+	CompletableFuture<Frame> send(NMXSession session, int addr, String motor, String data){
+		return send(session, addr, motorSubaddr(motor), data, true);
+	}
+	
+	CompletableFuture<Frame> send(NMXSession session, int addr, Payload data){
+		return send(session, addr, nonMotorSubaddr(), data);
+	}
+	
+	CompletableFuture<Frame> send(NMXSession session, int addr, String motor, Payload data){
+		return send(session, addr, motorSubaddr(motor), data);
+	}
+	
+	CompletableFuture<Frame> send(NMXSession session, int addr, int dataOrMotor){
 		if(this.type == Command.Type.MOTOR){
-			int motor = Integer.parseInt(dataOrMotor);
-			if(motor < 0 || motor > MOTOR_COUNT){
-				System.out.println("Invalid motor number");
-				this.printInfo();
-				throw new UnsupportedOperationException();				
-			}
-			int tempSubaddr = motor + 1;
-			return executeThis(tempSubaddr, "0", false);
-		}
-		else{
-			return executeThis(this.subaddr, dataOrMotor, true);
+			return sendData(session, addr, motorSubaddr(dataOrMotor), false, 0);
 		}
+		return sendData(session, addr, this.subaddr, true, encodeData(dataOrMotor));
 	}
 	
-	private <T>T executeThis(String motor, String data){
+	CompletableFuture<Frame> send(NMXSession session, int addr, float data){
+		return sendData(session, addr, nonMotorSubaddr(), true, encodeData(data));
+	}
+	
+	CompletableFuture<Frame> send(NMXSession session, int addr, int motor, int data){
+		return sendData(session, addr, motorSubaddr(motor), true, encodeData(data));
+	}
+	
+	CompletableFuture<Frame> send(NMXSession session, int addr, int motor, float data){
+		return sendData(session, addr, motorSubaddr(motor), true, encodeData(data));
+	}
+	
+	/**
+	 * @return The sub-address of this command
+	 * @throws UnsupportedOperationException If this is a motor command
+	 */
+	private int nonMotorSubaddr(){
 		if(this.type == Command.Type.MOTOR){
-			int motorNum = Integer.parseInt(motor);
-			if(motorNum < 0 || motorNum > MOTOR_COUNT){
-				System.out.println("Invalid motor number");
-				this.printInfo();
-				throw new UnsupportedOperationException();				
-			}
-			int tempSubaddr = motorNum + 1;
-			return executeThis(tempSubaddr, data, true);
-		}	
-		else{
-			System.out.println("This is a non-motor command; a motor number may not be specified");			
+			NMXLog.log("This is a motor command; the motor number must be specified to execute");			
+			this.printInfo();
+			throw new UnsupportedOperationException();
+		}
+		return this.subaddr;
+	}
+	
+	/**
+	 * @return The sub-address of the given motor
+	 * @throws UnsupportedOperationException If this is not a motor command or the motor number is invalid
+	 */
+	private int motorSubaddr(String motor){
+		return motorSubaddr(Integer.parseInt(motor));
+	}
+	
+	private int motorSubaddr(int motorNum){
+		if(this.type != Command.Type.MOTOR){
+			NMXLog.log("This is a non-motor command; a motor number may not be specified");			
 			this.printInfo();
 			throw new UnsupportedOperationException();				
 		} 
+		if(motorNum < 0 || motorNum >= MOTOR_COUNT){
+			NMXLog.log("Invalid motor number");
+			this.printInfo();
+			throw new UnsupportedOperationException();				
+		}
+		return motorNum + 1;
 	}
 	
-	@SuppressWarnings("unchecked")
-	private <T>T executeThis(int subAddr, String dataStr, boolean hasData){
+	/**
+	 * @return The int data converted to this command's wire format
+	 */
+	private int encodeData(int value){
+		return dataType == Float.class ? Float.floatToIntBits(value) : value;
+	}
+	
+	/**
+	 * @return The float data converted to this command's wire format
+	 */
+	private int encodeData(float value){
+		return dataType == Float.class ? Float.floatToIntBits(value) : Math.round(value);
+	}
+	
+	private CompletableFuture<Frame> send(NMXSession session, int addr, int subAddr, Payload data){
+		
+		// Notify if data is attached to a command that does not take additional data
+		if(dataLength == 0 && data.length() > 0){			
+			NMXLog.log("This command does not send additional data");			
+			this.printInfo();
+			throw new UnsupportedOperationException();
+		}
+		
+		return session.cmdAsync(addr, subAddr, command, data, true);
+	}
+	
+	/**
+	 * Sends data that is already in the wire format
+	 */
+	private CompletableFuture<Frame> sendData(NMXSession session, int addr, int subAddr, boolean hasData, int data){
+		if(dataLength == 0 && hasData){			
+			NMXLog.log("This command does not send additional data");			
+			this.printInfo();
+			throw new UnsupportedOperationException();
+		}
+		return session.cmdAsync(addr, subAddr, command, hasData ? dataLength : 0, data, true);
+	}
+	
+	private CompletableFuture<Frame> send(NMXSession session, int addr, int subAddr, String dataStr, boolean hasData){
 
 		// Notify if data is attached to a command that does not take additional data
 		if(dataLength == 0 && hasData){			
-			System.out.println("This command does not send additional data");			
+			NMXLog.log("This command does not send additional data");			
 			this.printInfo();
 			throw new UnsupportedOperationException();
 		}
@@ -886,78 +1346,161 @@ public class Command {
 			if(dataStr.equals("rand")){
 				float speed = (float)(Math.random() * 10000) - 5000;
 				data = Float.floatToIntBits(speed);
-				System.out.println("Setting speed to: " + speed + " steps/s");
+				NMXLog.log("Setting speed to: " + speed + " steps/s");
 			}
 			else if(dataType == Float.class){
 				data = Float.floatToIntBits(Float.parseFloat(dataStr));
-				
-				System.out.println("Parsed float: " + data);
+				if(isVerbose())
+					NMXLog.log("Parsed float: " + data);
 			}
 			else{
 				data = (int) Math.round(Float.parseFloat(dataStr));
-				System.out.println("Parsed int: " + data);
+				if(isVerbose())
+					NMXLog.log("Parsed int: " + data);
 			}
 		}		
 			
 		// Send the command to the NMX
-		if(hasData){			
-			NMXComs.cmd(addr, subaddr, command, dataLength, data);
-		}
-		else{
-			NMXComs.cmd(addr, subaddr, command);			
+		return session.cmdAsync(addr, subAddr, command, hasData ? dataLength : 0, data, true);
+	}
+	
+	/**
+	 * Waits for the response to a command and converts it to the return type. Communication 
+	 * errors and responses whose value cannot be read are reported on the console and turned
+	 * into the legacy error value rather than thrown; only the typed and primitive methods
+	 * throw them.
+	 */
+	<T>T collectResponse(CompletableFuture<Frame> response){
+		
+		T ret = null;
+		boolean ok = false;
+		try {
+			ret = convertResponse(response.get());
+			ok = true;
+		} catch (InterruptedException e) {
+			NMXLog.log("Interrupted while sending command to NMX");
+			NMXLog.log(e);
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException e) {
+			// A setter that gets no confirmation is not reported, same as before
+			if(!(e.getCause() instanceof NMXTimeoutException) || returnType != Void.class){
+				NMXLog.log("COM error: " + e.getCause().getMessage());
+				ret = convertValue(ERROR);
+			}
+		} catch (NMXException e) {
+			// Includes a response without a readable value, e.g. a bare OK to a getter
+			NMXLog.log("COM error: " + e.getMessage());
+			ret = convertValue(ERROR);
 		}
 		
-		// Wait for the NMX to clear
-		waitForNMX();	
-					
-		// Do any post command action or manipulation of the return value
-		int response = 0;
+		// Print debug if necessary
+		if(isVerbose()){
+			NMXLog.log("Command: " + this.name);
+			if(ret != null)
+				NMXLog.log(String.valueOf(ret));
+			else if(ok)
+				NMXLog.log("OK!");
+		}
 		
-		// Don't fetch a response if none is expected
-		if(returnType != Void.class){
-			response = NMXComs.getResponseVal();
+		// Return the value
+		return ret;
+	}
+	
+	/**
+	 * @return The value in the response to a command
+	 * @throws NMXException If the command failed or the response carries no value
+	 */
+	int intValue(CompletableFuture<Frame> response){
+		return (int) await(response).longValue();
+	}
+	
+	/**
+	 * @return The value in the response to a command, scaled back if the command returns a float
+	 * @throws NMXException If the command failed or the response carries no value
+	 */
+	float floatValue(CompletableFuture<Frame> response){
+		Frame frame = await(response);
+		return returnType == Float.class ? frame.floatValue(FLOAT_CONVERSION) : (float) frame.longValue();
+	}
+	
+	/**
+	 * @return Whether the value in the response to a command is non-zero
+	 * @throws NMXException If the command failed or the response carries no value
+	 */
+	boolean boolValue(CompletableFuture<Frame> response){
+		return await(response).longValue() != 0;
+	}
+	
+	/**
+	 * Waits for the controller to confirm a command
+	 * @throws NMXException If the command failed
+	 */
+	void awaitVoid(CompletableFuture<Frame> response){
+		await(response);
+	}
+	
+	/**
+	 * Waits for the response to a command
+	 * @return The response frame
+	 * @throws NMXException If the command failed
+	 */
+	static Frame await(CompletableFuture<Frame> response){
+		try {
+			return response.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new NMXException("Interrupted while waiting for the NMX to respond", e);
+		} catch (ExecutionException e) {
+			if(e.getCause() instanceof NMXException)
+				throw (NMXException) e.getCause();
+			throw new NMXException("COM error: " + e.getCause().getMessage(), e.getCause());
 		}
-
+	}
+	
+	<T> CompletableFuture<T> completeAsync(CompletableFuture<Frame> response){
+		return response.thenApply(new Function<Frame, T>() {
+			@Override
+			public T apply(Frame frame) {
+				return convertResponse(frame);
+			}
+		});
+	}
+	
+	/**
+	 * @param response The response frame, or null if the command was not expecting one
+	 * @return The value in the response, cast to the return type
+	 * @throws NMXResponseException If the response value cannot be read
+	 */
+	@SuppressWarnings("unchecked")
+	private <T>T convertResponse(Frame response){
+		if(returnType == Void.class || response == null){
+			return null;
+		}
+		if(returnType == Float.class)
+			return (T) Float.valueOf(response.floatValue(FLOAT_CONVERSION));
+		return convertValue(response.longValue());
+	}
+	
+	@SuppressWarnings("unchecked")
+	private <T>T convertValue(long response){
 		// Cast the return value to the proper response type
-		T ret = null;
 		if(returnType == Integer.class){
-			ret = (T) returnType.cast(response);
+			return (T) returnType.cast((int) response);
+		}
+		else if(returnType == Long.class){
+			return (T) returnType.cast(response);
 		}
 		else if(returnType == Float.class){			
-			ret = (T) returnType.cast((float) response / FLOAT_CONVERSION);
+			return (T) returnType.cast((float) (int) response / FLOAT_CONVERSION);
 		}
 		else if(returnType == Boolean.class){
-			ret = (T) returnType.cast(response == 0 ? false : true);			
+			return (T) returnType.cast(response == 0 ? false : true);			
 		}
 		// Void return type
 		else{			
-			ret = (T) Void.class.cast(null);
+			return null;
 		}
-		
-		// Print debug if necessary
-		if(debug){
-			System.out.println("Command: " + this.name);
-		}
-		if(ret != null)
-			System.out.println(ret);
-		else
-			System.out.println("OK!");
-		
-		// Return the value
-		return ret;
 	}
-	
-	private static void waitForNMX(){
-		// If a command is currently being sent, wait
-		while(NMXComs.isSendingCommand()){	
-			try {
-				TimeUnit.MILLISECONDS.sleep(50);
-			} catch (InterruptedException e) {
-				System.out.println("Interrupted while sending command to NMX");
-				e.printStackTrace();
-			}
-		}		
-	}	
 
 	/**
 	 * Causes the thread to sleep for 10 milliseconds
@@ -971,13 +1514,13 @@ public class Command {
 	 * @param time The sleep time in milliseconds
 	 */
 	public static void commandWait(int time){
-		while(NMXComs.isBusy()){			
+		while(NMXSession.getDefault().isBusy()){			
 			// Wait till the NMX communications class is free again before proceeding
 			try {
 				Thread.sleep(time);
 			} catch (InterruptedException e) {
-				System.out.println("Interrupted while waiting for NMX response");
-				e.printStackTrace();
+				NMXLog.log("Interrupted while waiting for NMX response");
+				NMXLog.log(e);
 			}
 		}
 	}
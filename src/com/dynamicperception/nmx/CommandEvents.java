@@ -0,0 +1,123 @@
+package com.dynamicperception.nmx;
+
+/**
+ * Emits Java Flight Recorder events for the life of each command, so that a recording taken
+ * when a rig stutters shows the serial traffic next to garbage collection and thread
+ * scheduling. The events are in the "NMX" category:
+ * <ul>
+ * <li><b>Command Enqueued</b> when a command is submitted, on the submitting thread</li>
+ * <li><b>Serial Write</b> spanning each write of gathered packets to the port</li>
+ * <li><b>Response Received</b> when the response to a command has been decoded</li>
+ * <li><b>Response Timeout</b> when a command gets no response in time</li>
+ * </ul>
+ * Each carries the command, controller address, sub-address and payload size, and the
+ * times spent so far. The events record no stack traces and cost an allocation the JIT
+ * removes while they are not being recorded, so they can stay on. They are switched on with
+ * the usual JFR settings, e.g. <code>-XX:StartFlightRecording</code>.
+ * <p>
+ * The events need the <code>jdk.jfr</code> API, which is part of Java 11 and later and of
+ * OpenJDK 8u272 and later, so they live in their own source root, <code>jfr/src</code>, and
+ * the rest of the library still builds for any Java 8. They are compiled after it and put on
+ * the class path next to it:
+ * <pre>
+ * javac --release 8 -cp libraries/jssc.jar -d bin $(find src -name '*.java')
+ * javac --release 11 -cp bin -d jfr/bin $(find jfr/src -name '*.java')
+ * java -cp bin:jfr/bin:libraries/jssc.jar ...
+ * </pre>
+ * Without them, or on a runtime without a flight recorder, this class does nothing.
+ */
+final class CommandEvents {
+
+	/**
+	 * Receives the events, see <code>JfrCommandEvents</code> in <code>jfr/src</code>
+	 */
+	static interface Sink {
+		public void enqueued(Request request, int pending);
+
+		/**
+		 * @return The event to pass to {@link #endWrite}, or null if writes are not being recorded
+		 */
+		public Object beginWrite();
+
+		public void endWrite(Object event, String port, Request[] written, int packets, int bytes, long queueNanos);
+
+		public void responded(Request request, String port, int responseSize, long firstByteNanos, long latencyNanos);
+
+		public void timedOut(Request request, String port, long waitedNanos);
+	}
+
+	private static final String SINK_CLASS = "com.dynamicperception.nmx.JfrCommandEvents";
+
+	private static final Sink SINK = loadSink();
+
+	/** Whether events are being sent to a flight recorder */
+	static final boolean AVAILABLE = SINK != null;
+
+	private CommandEvents(){
+	}
+
+	/**
+	 * @return The flight recorder events, or null if they or the runtime's flight recorder
+	 * are missing
+	 */
+	private static Sink loadSink(){
+		ClassLoader loader = CommandEvents.class.getClassLoader();
+		try {
+			Class.forName("jdk.jfr.Event", false, loader);
+			return (Sink) Class.forName(SINK_CLASS, true, loader).newInstance();
+		} catch (ClassNotFoundException e) {
+			return null;
+		} catch (ReflectiveOperationException e) {
+			NMXLog.log("Flight recorder events are off: " + e);
+			return null;
+		} catch (LinkageError e) {
+			return null;
+		}
+	}
+
+	static void enqueued(Request request, int pending){
+		if(AVAILABLE)
+			SINK.enqueued(request, pending);
+	}
+
+	/**
+	 * Starts timing a write to the port
+	 * @return The event to pass to {@link #endWrite}, or null if writes are not being recorded
+	 */
+	static Object beginWrite(){
+		return AVAILABLE ? SINK.beginWrite() : null;
+	}
+
+	/**
+	 * Records a write started with {@link #beginWrite()}. Only packets to one controller are
+	 * ever gathered into a write.
+	 * @param written The requests written, oldest first, in the first <code>packets</code>
+	 * elements. The array is only read during the call.
+	 * @param queueNanos Time the oldest request waited in the queue
+	 */
+	static void endWrite(Object event, String port, Request[] written, int packets, int bytes, long queueNanos){
+		SINK.endWrite(event, port, written, packets, bytes, queueNanos);
+	}
+
+	/**
+	 * @param firstByteNanos Time from the write until the first byte of the response arrived
+	 * @param latencyNanos Time from the write until the whole response arrived
+	 */
+	static void responded(Request request, String port, int responseSize, long firstByteNanos, long latencyNanos){
+		if(AVAILABLE)
+			SINK.responded(request, port, responseSize, firstByteNanos, latencyNanos);
+	}
+
+	static void timedOut(Request request, String port, long waitedNanos){
+		if(AVAILABLE)
+			SINK.timedOut(request, port, waitedNanos);
+	}
+
+	/**
+	 * @return The name of a request's command, e.g. "m.getPos"
+	 */
+	static String name(Request request){
+		Command command = Command.lookup(request.subAddr, request.command);
+		return command == null ? request.subAddr + "." + request.command : command.getName();
+	}
+}
@@ -0,0 +1,51 @@
+package com.dynamicperception.nmx;
+
+/**
+ * Base of the generated typed command classes, such as {@link MotorCommands}. A generated
+ * method passes its command number and data length as constants, so a call goes straight
+ * to the session without a name lookup, a data type check or boxing.
+ */
+abstract class CommandGroup {
+
+	private final NMXSession session;
+	private final int addr;
+	private final int subAddr;
+
+	CommandGroup(NMXSession session, int addr, int subAddr){
+		this.session = session;
+		this.addr = addr;
+		this.subAddr = subAddr;
+	}
+
+	final void voidCommand(int command, int length, int data){
+		await(command, length, data);
+	}
+
+	final int intCommand(int command, int length, int data){
+		return (int) await(command, length, data).longValue();
+	}
+
+	final long longCommand(int command, int length, int data){
+		return await(command, length, data).longValue();
+	}
+
+	final float floatCommand(int command, int length, int data){
+		return await(command, length, data).floatValue(Command.FLOAT_CONVERSION);
+	}
+
+	final boolean booleanCommand(int command, int length, int data){
+		return await(command, length, data).longValue() != 0;
+	}
+
+	final String stringCommand(int command, int length, int data){
+		return await(command, length, data).stringValue();
+	}
+
+	/**
+	 * Sends a command and waits for its response
+	 * @throws NMXException If the command failed
+	 */
+	private Frame await(int command, int length, int data){
+		return Command.await(session.send(addr, subAddr, command, length, data));
+	}
+}
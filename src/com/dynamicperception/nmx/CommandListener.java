@@ -0,0 +1,39 @@
+package com.dynamicperception.nmx;
+
+/**
+ * Receives the lifecycle events of the commands an {@link NMXSession} sends, e.g. to collect
+ * statistics or trace traffic. Register one with {@link NMXSession#addListener(CommandListener)}.
+ * <p>
+ * Listeners are called on the session's command thread, so they must return quickly and must
+ * not wait for commands themselves. Events carry only numbers, so firing them allocates
+ * nothing, and a session without listeners skips them altogether. Every method does nothing
+ * by default, so a listener only implements the events it needs.
+ */
+public interface CommandListener {
+
+	/**
+	 * A command packet has been written to the port
+	 */
+	public default void commandSent(int addr, int subAddr, int command){
+	}
+
+	/**
+	 * The response to a command has arrived
+	 * @param latencyNanos Time from writing the packet to receiving the response
+	 */
+	public default void responseReceived(int addr, int subAddr, int command, long latencyNanos){
+	}
+
+	/**
+	 * A command could not be sent, or the session shut down before its response arrived
+	 */
+	public default void commandFailed(int addr, int subAddr, int command, NMXException failure){
+	}
+
+	/**
+	 * No response to a command arrived in time
+	 * @param waitedNanos Time from writing the packet to giving up on the response
+	 */
+	public default void commandTimedOut(int addr, int subAddr, int command, long waitedNanos){
+	}
+}
@@ -0,0 +1,184 @@
+// Generated by CommandStubGenerator from commands.csv. Do not edit.
+package com.dynamicperception.nmx;
+
+/**
+ * The NMX firmware's command table, in the order the commands are registered. Where a
+ * name or number is listed twice the first entry is the one that is used.
+ */
+final class CommandTable {
+
+	static interface Registrar {
+		public void add(Command.Type type, int command, String name, Class<?> returnType, Class<?> dataType);
+	}
+
+	private CommandTable(){
+	}
+
+	static void register(Registrar registrar){
+		registrar.add(Command.Type.GENERAL, 2, "g.start", Void.class, Void.class);
+		registrar.add(Command.Type.GENERAL, 3, "g.pause", Void.class, Void.class);
+		registrar.add(Command.Type.GENERAL, 4, "g.stop", Void.class, Void.class);
+		registrar.add(Command.Type.GENERAL, 5, "g.toggleLed", Void.class, Void.class);
+		registrar.add(Command.Type.GENERAL, 6, "g.setTimingMaster", Void.class, Void.class);
+		registrar.add(Command.Type.GENERAL, 7, "g.setName", Void.class, Void.class);
+		registrar.add(Command.Type.GENERAL, 8, "g.setAddress", Void.class, Byte.class);
+		registrar.add(Command.Type.GENERAL, 9, "g.setCommonLine", Void.class, Byte.class);
+		registrar.add(Command.Type.GENERAL, 10, "g.sendAllHome", Void.class, Void.class);
+		registrar.add(Command.Type.GENERAL, 11, "g.setMaxStepRate", Void.class, Integer.class);
+		registrar.add(Command.Type.GENERAL, 12, "g.setInputEdge", Void.class, Byte.class);
+		registrar.add(Command.Type.GENERAL, 13, "g.setAltIOMode", Void.class, Integer.class);
+		registrar.add(Command.Type.GENERAL, 14, "g.setWatchdog", Void.class, Byte.class);
+		registrar.add(Command.Type.GENERAL, 15, "g.setAltOutBeforeShotDelayTime", Void.class, Integer.class);
+		registrar.add(Command.Type.GENERAL, 16, "g.setAltOutAfterShotDelayTime", Void.class, Integer.class);
+		registrar.add(Command.Type.GENERAL, 17, "g.setAltOutBeforeShotTime", Void.class, Integer.class);
+		registrar.add(Command.Type.GENERAL, 18, "g.setAltOutAfterShotTime", Void.class, Integer.class);
+		registrar.add(Command.Type.GENERAL, 19, "g.setAltOutTriggerLevel", Void.class, Byte.class);
+		registrar.add(Command.Type.GENERAL, 20, "g.setMaxProgramTime", Void.class, Long.class);
+		registrar.add(Command.Type.GENERAL, 21, "g.setProgramDelay", Void.class, Long.class);
+		registrar.add(Command.Type.GENERAL, 22, "g.setProgramMode", Void.class, Byte.class);
+		registrar.add(Command.Type.GENERAL, 23, "g.setJoystick", Void.class, Byte.class);
+		registrar.add(Command.Type.GENERAL, 24, "g.setPingpong", Void.class, Byte.class);
+		registrar.add(Command.Type.GENERAL, 25, "g.sendAllStart", Void.class, Void.class);
+		registrar.add(Command.Type.GENERAL, 26, "g.setStartHere", Void.class, Void.class);
+		registrar.add(Command.Type.GENERAL, 27, "g.setStopHere", Void.class, Void.class);
+		registrar.add(Command.Type.GENERAL, 28, "g.setFPS", Void.class, Byte.class);
+		registrar.add(Command.Type.GENERAL, 29, "g.reverseStartStop", Void.class, Void.class);
+		registrar.add(Command.Type.GENERAL, 50, "g.setGraffik", Void.class, Byte.class);
+		registrar.add(Command.Type.GENERAL, 51, "g.setApp", Void.class, Byte.class);
+		registrar.add(Command.Type.GENERAL, 52, "g.setProgramDelay", Void.class, Long.class);
+		registrar.add(Command.Type.GENERAL, 100, "g.getFirmware", Integer.class, Void.class);
+		registrar.add(Command.Type.GENERAL, 101, "g.getRunStatus", Integer.class, Void.class);
+		registrar.add(Command.Type.GENERAL, 102, "g.getRunTime", Integer.class, Void.class);
+		registrar.add(Command.Type.GENERAL, 103, "g.isExposing", Boolean.class, Void.class);
+		registrar.add(Command.Type.GENERAL, 104, "g.isTimingMaster", Boolean.class, Void.class);
+		registrar.add(Command.Type.GENERAL, 105, "g.getName", String.class, Void.class);
+		registrar.add(Command.Type.GENERAL, 106, "g.getMaxStepRate", Integer.class, Void.class);
+		registrar.add(Command.Type.GENERAL, 107, "g.getVoltage", Float.class, Void.class);
+		registrar.add(Command.Type.GENERAL, 108, "g.getCurrent", Float.class, Void.class);
+		registrar.add(Command.Type.GENERAL, 109, "g.getAltInputEdge", Integer.class, Void.class);
+		registrar.add(Command.Type.GENERAL, 110, "g.getAltIOMode", Integer.class, Void.class);
+		registrar.add(Command.Type.GENERAL, 111, "g.getLimitSwitchState", Integer.class, Void.class);
+		registrar.add(Command.Type.GENERAL, 112, "g.getAltOutBeforeShotDelayTime", Integer.class, Void.class);
+		registrar.add(Command.Type.GENERAL, 113, "g.getAltOutAfterShotDelayTime", Integer.class, Void.class);
+		registrar.add(Command.Type.GENERAL, 114, "g.getAltOutBeforeShotTime", Integer.class, Void.class);
+		registrar.add(Command.Type.GENERAL, 115, "g.getAltOutAfterShotTime", Integer.class, Void.class);
+		registrar.add(Command.Type.GENERAL, 116, "g.getAltOutTriggerLevel", Integer.class, Void.class);
+		registrar.add(Command.Type.GENERAL, 117, "g.getProgramDelay", Integer.class, Void.class);
+		registrar.add(Command.Type.GENERAL, 118, "g.getProgramMode", Integer.class, Void.class);
+		registrar.add(Command.Type.GENERAL, 119, "g.getPowerCyled", Integer.class, Void.class);
+		registrar.add(Command.Type.GENERAL, 120, "g.getJoystick", Boolean.class, Void.class);
+		registrar.add(Command.Type.GENERAL, 121, "g.getPingpong", Boolean.class, Void.class);
+		registrar.add(Command.Type.GENERAL, 122, "g.getWatchdog", Boolean.class, Void.class);
+		registrar.add(Command.Type.GENERAL, 123, "g.getPctComplete", Boolean.class, Void.class);
+		registrar.add(Command.Type.GENERAL, 124, "g.getMotorAttach", Integer.class, Void.class);
+		registrar.add(Command.Type.GENERAL, 125, "g.getTotalRunTime", Integer.class, Void.class);
+		registrar.add(Command.Type.GENERAL, 126, "g.isProgramComplete", Boolean.class, Void.class);
+		registrar.add(Command.Type.GENERAL, 127, "g.getFPS", Integer.class, Void.class);
+		registrar.add(Command.Type.GENERAL, 128, "g.getMotorRunningStates", Integer.class, Void.class);
+		registrar.add(Command.Type.GENERAL, 129, "g.isProgramValid", Boolean.class, Void.class);
+		registrar.add(Command.Type.GENERAL, 130, "g.getMotorSleepStates", Integer.class, Void.class);
+		registrar.add(Command.Type.GENERAL, 150, "g.isGraffik", Boolean.class, Void.class);
+		registrar.add(Command.Type.GENERAL, 254, "g.setDebug", Void.class, Byte.class);
+
+		registrar.add(Command.Type.MOTOR, 2, "m.setSleep", Void.class, Byte.class);
+		registrar.add(Command.Type.MOTOR, 3, "m.setEnable", Void.class, Byte.class);
+		registrar.add(Command.Type.MOTOR, 4, "m.stop", Void.class, Void.class);
+		registrar.add(Command.Type.MOTOR, 5, "m.setBacklash", Void.class, Integer.class);
+		registrar.add(Command.Type.MOTOR, 6, "m.setMS", Void.class, Byte.class);
+		registrar.add(Command.Type.MOTOR, 7, "m.setMaxSpeed", Void.class, Integer.class);
+		registrar.add(Command.Type.MOTOR, 8, "m.setDir", Void.class, Byte.class);
+		registrar.add(Command.Type.MOTOR, 9, "m.setHome", Void.class, Void.class);
+		registrar.add(Command.Type.MOTOR, 10, "m.setEndHere", Void.class, Void.class);
+		registrar.add(Command.Type.MOTOR, 11, "m.sendHome", Void.class, Void.class);
+		registrar.add(Command.Type.MOTOR, 12, "m.sendEnd", Void.class, Void.class);
+		registrar.add(Command.Type.MOTOR, 13, "m.setSpeed", Void.class, Float.class);
+		registrar.add(Command.Type.MOTOR, 14, "m.setAccel", Void.class, Float.class);
+		registrar.add(Command.Type.MOTOR, 16, "m.setStart", Void.class, Long.class);
+		registrar.add(Command.Type.MOTOR, 17, "m.setStop", Void.class, Long.class);
+		registrar.add(Command.Type.MOTOR, 18, "m.setEasing", Void.class, Byte.class);
+		registrar.add(Command.Type.MOTOR, 19, "m.setLeadIn", Void.class, Long.class);
+		registrar.add(Command.Type.MOTOR, 20, "m.setTravel", Void.class, Long.class);
+		registrar.add(Command.Type.MOTOR, 21, "m.setProgramAccel", Void.class, Long.class);
+		registrar.add(Command.Type.MOTOR, 22, "m.setProgramDecel", Void.class, Long.class);
+		registrar.add(Command.Type.MOTOR, 23, "m.sendStart", Void.class, Void.class);
+		registrar.add(Command.Type.MOTOR, 24, "m.sendStop", Void.class, Void.class);
+		registrar.add(Command.Type.MOTOR, 25, "m.setLeadOut", Void.class, Long.class);
+		registrar.add(Command.Type.MOTOR, 27, "m.resetLimits", Void.class, Void.class);
+		registrar.add(Command.Type.MOTOR, 28, "m.autoSetMS", Integer.class, Void.class);
+		registrar.add(Command.Type.MOTOR, 29, "m.setStartHere", Void.class, Void.class);
+		registrar.add(Command.Type.MOTOR, 30, "m.setStopHere", Void.class, Byte.class);
+		registrar.add(Command.Type.MOTOR, 31, "m.sendTo", Void.class, Long.class);
+		registrar.add(Command.Type.MOTOR, 100, "m.isEnabled", Boolean.class, Void.class);
+		registrar.add(Command.Type.MOTOR, 101, "m.getBacklash", Integer.class, Void.class);
+		registrar.add(Command.Type.MOTOR, 102, "m.getMS", Integer.class, Void.class);
+		registrar.add(Command.Type.MOTOR, 103, "m.getDir", Integer.class, Void.class);
+		registrar.add(Command.Type.MOTOR, 104, "m.getMaxStepRate", Integer.class, Void.class);
+		registrar.add(Command.Type.MOTOR, 105, "m.getEnd", Integer.class, Void.class);
+		registrar.add(Command.Type.MOTOR, 106, "m.getPos", Integer.class, Void.class);
+		registrar.add(Command.Type.MOTOR, 107, "m.isRunning", Boolean.class, Void.class);
+		registrar.add(Command.Type.MOTOR, 108, "m.getSpeed", Float.class, Void.class);
+		registrar.add(Command.Type.MOTOR, 109, "m.getAccel", Float.class, Void.class);
+		registrar.add(Command.Type.MOTOR, 110, "m.getEasing", Integer.class, Void.class);
+		registrar.add(Command.Type.MOTOR, 111, "m.getStart", Integer.class, Void.class);
+		registrar.add(Command.Type.MOTOR, 112, "m.getStop", Integer.class, Void.class);
+		registrar.add(Command.Type.MOTOR, 113, "m.getTravel", Integer.class, Void.class);
+		registrar.add(Command.Type.MOTOR, 114, "m.getLeadIn", Integer.class, Void.class);
+		registrar.add(Command.Type.MOTOR, 115, "m.getProgramAccel", Integer.class, Void.class);
+		registrar.add(Command.Type.MOTOR, 116, "m.getProgramDecel", Integer.class, Void.class);
+		registrar.add(Command.Type.MOTOR, 117, "m.getSleep", Boolean.class, Void.class);
+		registrar.add(Command.Type.MOTOR, 118, "m.isSpeedValid", Boolean.class, Void.class);
+		registrar.add(Command.Type.MOTOR, 119, "m.getLeadOut", Integer.class, Void.class);
+
+		registrar.add(Command.Type.CAMERA, 2, "c.setEnable", Void.class, Integer.class);
+		registrar.add(Command.Type.CAMERA, 3, "c.expose", Void.class, Integer.class);
+		registrar.add(Command.Type.CAMERA, 4, "c.setTrigger", Void.class, Long.class);
+		registrar.add(Command.Type.CAMERA, 5, "c.setFocus", Void.class, Integer.class);
+		registrar.add(Command.Type.CAMERA, 6, "c.setMaxShots", Void.class, Integer.class);
+		registrar.add(Command.Type.CAMERA, 7, "c.setDelay", Void.class, Integer.class);
+		registrar.add(Command.Type.CAMERA, 8, "c.setFocusWithShutter", Void.class, Void.class);
+		registrar.add(Command.Type.CAMERA, 9, "c.setMUP", Void.class, Integer.class);
+		registrar.add(Command.Type.CAMERA, 10, "c.setInterval", Void.class, Long.class);
+		registrar.add(Command.Type.CAMERA, 11, "c.setTestMode", Void.class, Integer.class);
+		registrar.add(Command.Type.CAMERA, 12, "c.setKeepAlive", Void.class, Integer.class);
+		registrar.add(Command.Type.CAMERA, 100, "c.isEnabled", Integer.class, Void.class);
+		registrar.add(Command.Type.CAMERA, 101, "c.isExposing", Integer.class, Void.class);
+		registrar.add(Command.Type.CAMERA, 102, "c.getTrigger", Integer.class, Void.class);
+		registrar.add(Command.Type.CAMERA, 103, "c.getFocus", Integer.class, Void.class);
+		registrar.add(Command.Type.CAMERA, 104, "c.getMaxShots", Integer.class, Void.class);
+		registrar.add(Command.Type.CAMERA, 105, "c.getDelay", Integer.class, Void.class);
+		registrar.add(Command.Type.CAMERA, 106, "c.getFocusWithShutter", Integer.class, Void.class);
+		registrar.add(Command.Type.CAMERA, 107, "c.getMUP", Integer.class, Void.class);
+		registrar.add(Command.Type.CAMERA, 108, "c.getInterval", Integer.class, Void.class);
+		registrar.add(Command.Type.CAMERA, 109, "c.getShots", Integer.class, Void.class);
+		registrar.add(Command.Type.CAMERA, 110, "c.getTestMode", Integer.class, Void.class);
+		registrar.add(Command.Type.CAMERA, 111, "c.getKeepAlive", Integer.class, Void.class);
+
+		registrar.add(Command.Type.KEYFRAME, 10, "k.setAxis", Integer.class, Integer.class);
+		registrar.add(Command.Type.KEYFRAME, 11, "k.setCount", Integer.class, Integer.class);
+		registrar.add(Command.Type.KEYFRAME, 12, "k.setAbscissa", Float.class, Float.class);
+		registrar.add(Command.Type.KEYFRAME, 13, "k.setPos", Float.class, Float.class);
+		registrar.add(Command.Type.KEYFRAME, 14, "k.setVel", Float.class, Float.class);
+		registrar.add(Command.Type.KEYFRAME, 15, "k.setUpdateRate", Integer.class, Integer.class);
+		registrar.add(Command.Type.KEYFRAME, 16, "k.endTransmission", Void.class, Void.class);
+		registrar.add(Command.Type.KEYFRAME, 17, "k.setContVidTime", Integer.class, Long.class);
+		registrar.add(Command.Type.KEYFRAME, 20, "k.startProgram", Void.class, Void.class);
+		registrar.add(Command.Type.KEYFRAME, 21, "k.pauseProgram", Void.class, Void.class);
+		registrar.add(Command.Type.KEYFRAME, 22, "k.stopProgram", Void.class, Void.class);
+		registrar.add(Command.Type.KEYFRAME, 99, "k.printInfo", Void.class, Void.class);
+		registrar.add(Command.Type.KEYFRAME, 100, "k.getCount", Integer.class, Void.class);
+		registrar.add(Command.Type.KEYFRAME, 101, "k.getUpdateRate", Integer.class, Void.class);
+		registrar.add(Command.Type.KEYFRAME, 102, "k.getPosAt", Float.class, Float.class);
+		registrar.add(Command.Type.KEYFRAME, 103, "k.getVelAt", Float.class, Float.class);
+		registrar.add(Command.Type.KEYFRAME, 104, "k.getAccelAt", Float.class, Float.class);
+		registrar.add(Command.Type.KEYFRAME, 105, "k.isVelValid", Void.class, Void.class);
+		registrar.add(Command.Type.KEYFRAME, 106, "k.isAccelValid", Boolean.class, Void.class);
+		registrar.add(Command.Type.KEYFRAME, 107, "k.getContVidDur", Integer.class, Void.class);
+		registrar.add(Command.Type.KEYFRAME, 120, "k.getRunState", Integer.class, Void.class);
+		registrar.add(Command.Type.KEYFRAME, 121, "k.getRunTime", Long.class, Void.class);
+		registrar.add(Command.Type.KEYFRAME, 122, "k.getMaxRunTime", Long.class, Void.class);
+		registrar.add(Command.Type.KEYFRAME, 123, "k.getPctDone", Integer.class, Void.class);
+		registrar.add(Command.Type.KEYFRAME, 130, "k.getKfTime", Integer.class, Integer.class);
+		registrar.add(Command.Type.KEYFRAME, 131, "k.getKfPos", Integer.class, Integer.class);
+		registrar.add(Command.Type.KEYFRAME, 132, "k.getKfVel", Float.class, Integer.class);
+	}
+}
@@ -0,0 +1,98 @@
+package com.dynamicperception.nmx;
+
+/**
+ * A snapshot of the traffic to one controller address on a session, see
+ * {@link NMXSession#getControllerStats(int)}
+ */
+public final class ControllerStats {
+
+	private final int addr;
+	private final int weight;
+	private final int queued;
+	private final int maxQueued;
+	private final long submitted;
+	private final long sent;
+	private final long completed;
+	private final long failed;
+	private final long timeouts;
+	private final long queueNanos;
+
+	ControllerStats(int addr, int weight, int queued, int maxQueued, long submitted, long sent,
+			long completed, long failed, long timeouts, long queueNanos){
+		this.addr = addr;
+		this.weight = weight;
+		this.queued = queued;
+		this.maxQueued = maxQueued;
+		this.submitted = submitted;
+		this.sent = sent;
+		this.completed = completed;
+		this.failed = failed;
+		this.timeouts = timeouts;
+		this.queueNanos = queueNanos;
+	}
+
+	public int getAddr(){
+		return addr;
+	}
+
+	/**
+	 * @return Number of commands sent in a row before other controllers get a turn
+	 */
+	public int getWeight(){
+		return weight;
+	}
+
+	/**
+	 * @return Number of commands waiting to be sent
+	 */
+	public int getQueued(){
+		return queued;
+	}
+
+	/**
+	 * @return Largest number of commands that have been waiting at once
+	 */
+	public int getMaxQueued(){
+		return maxQueued;
+	}
+
+	public long getSubmitted(){
+		return submitted;
+	}
+
+	public long getSent(){
+		return sent;
+	}
+
+	/**
+	 * @return Number of commands that were answered or did not need an answer
+	 */
+	public long getCompleted(){
+		return completed;
+	}
+
+	/**
+	 * @return Number of commands that failed for reasons other than a timeout
+	 */
+	public long getFailed(){
+		return failed;
+	}
+
+	public long getTimeouts(){
+		return timeouts;
+	}
+
+	/**
+	 * @return Average time sent commands waited in the queue, in milliseconds
+	 */
+	public double getAverageQueueMillis(){
+		return sent == 0 ? 0 : queueNanos / 1e6 / sent;
+	}
+
+	@Override
+	public String toString(){
+		return "Controller " + addr + ": " + submitted + " submitted, " + queued + " queued (max " + maxQueued + "), "
+				+ completed + " completed, " + failed + " failed, " + timeouts + " timed out, "
+				+ String.format("%.2f", getAverageQueueMillis()) + "ms average queue time";
+	}
+}
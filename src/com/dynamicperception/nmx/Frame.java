@@ -0,0 +1,185 @@
+package com.dynamicperception.nmx;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A complete response frame received from an NMX controller. Responses are laid out as
+ * <pre>
+ * 00 00 00 00 00 FF | address (2) | status | length | data type | data...
+ * </pre>
+ * where the length counts the data type byte and the data that follows it. A frame with
+ * a zero length carries only the status, e.g. the "OK" confirmation sent for setters.
+ */
+final class Frame {
+
+	static final int ADDRESS_OFFSET = 6;
+	static final int STATUS_OFFSET = 8;
+	static final int LENGTH_OFFSET = 9;
+	static final int TYPE_OFFSET = 10;
+	static final int DATA_OFFSET = 11;
+	static final int MIN_LENGTH = TYPE_OFFSET;
+	static final int MAX_LENGTH = TYPE_OFFSET + 255;
+
+	/** Status code the firmware uses for a successfully handled command */
+	static final int STATUS_OK = 1;
+
+	// Data type codes, as numbered by the firmware's MoCoBus responses. The value's width is 
+	// taken from the length field; the type only says how to read it.
+	static final int TYPE_BYTE = 0;
+	static final int TYPE_UINT = 1;
+	static final int TYPE_INT = 2;
+	static final int TYPE_LONG = 3;
+	static final int TYPE_ULONG = 4;
+	static final int TYPE_FLOAT = 5;
+	static final int TYPE_STRING = 6;
+	private static final int MAX_VALUE_LENGTH = 8;
+
+	private final byte[] bytes;
+
+	/**
+	 * @param bytes The raw frame, header included. The array is not copied.
+	 */
+	Frame(byte[] bytes){
+		this.bytes = bytes;
+	}
+
+	int getAddress(){
+		return ((bytes[ADDRESS_OFFSET] & 0xFF) << 8) | (bytes[ADDRESS_OFFSET + 1] & 0xFF);
+	}
+
+	int getStatus(){
+		return bytes[STATUS_OFFSET] & 0xFF;
+	}
+
+	/**
+	 * @return The length field, i.e. the number of bytes following it
+	 */
+	int getLength(){
+		return bytes[LENGTH_OFFSET] & 0xFF;
+	}
+
+	/**
+	 * @return Whether the frame carries a data type and value
+	 */
+	boolean hasData(){
+		return getLength() > 0;
+	}
+
+	/**
+	 * @return The data type code, or -1 if the frame carries no data
+	 */
+	int getDataType(){
+		return hasData() ? bytes[TYPE_OFFSET] & 0xFF : -1;
+	}
+
+	/**
+	 * @return Number of value bytes following the data type
+	 */
+	int getDataLength(){
+		return hasData() ? getLength() - 1 : 0;
+	}
+
+	/**
+	 * Reads the value straight from the frame bytes. Signed types are sign-extended from
+	 * their width and floats are truncated.
+	 * @return The value in the frame
+	 * @throws NMXResponseException If the frame carries no value or a malformed one
+	 */
+	long longValue(){
+		int type = checkValue();
+		if(type == TYPE_FLOAT)
+			return (long) Float.intBitsToFloat((int) rawValue());
+		long value = rawValue();
+		if(type == TYPE_INT || type == TYPE_LONG){
+			int shift = 64 - 8 * getDataLength();
+			value = (value << shift) >> shift;
+		}
+		return value;
+	}
+
+	/**
+	 * Reads the value as a float. The firmware sends most fractional values as fixed-point
+	 * integers, which are divided by <code>scale</code>; float values are returned as they are.
+	 * @throws NMXResponseException If the frame carries no value or a malformed one
+	 */
+	float floatValue(float scale){
+		if(checkValue() == TYPE_FLOAT)
+			return Float.intBitsToFloat((int) rawValue());
+		return longValue() / scale;
+	}
+
+	/**
+	 * Reads a string value, such as the controller name, up to the first NUL byte
+	 * @throws NMXResponseException If the frame does not carry a string
+	 */
+	String stringValue(){
+		if(getDataType() != TYPE_STRING)
+			throw new NMXResponseException("Response carries no string: " + toHex());
+		int end = DATA_OFFSET;
+		int limit = DATA_OFFSET + getDataLength();
+		while(end < limit && bytes[end] != 0){
+			end++;
+		}
+		return new String(bytes, DATA_OFFSET, end - DATA_OFFSET, StandardCharsets.US_ASCII);
+	}
+
+	/**
+	 * @return The data type, once it is known that the value can be read
+	 * @throws NMXResponseException If the frame carries no value or a malformed one
+	 */
+	int checkValue(){
+		if(!hasData())
+			throw new NMXResponseException("Response carries no data: " + toHex());
+		int type = getDataType();
+		int length = getDataLength();
+		if(type == TYPE_STRING)
+			throw new NMXResponseException("Response carries a string rather than a number: " + toHex());
+		if(length == 0 || length > MAX_VALUE_LENGTH || (type == TYPE_FLOAT && length != 4))
+			throw new NMXResponseException("Malformed response value: " + toHex());
+		return type;
+	}
+
+	/**
+	 * @return The value bytes as an unsigned big-endian number
+	 */
+	private long rawValue(){
+		long value = 0;
+		int end = DATA_OFFSET + getDataLength();
+		for(int i = DATA_OFFSET; i < end; i++){
+			value = (value << 8) | (bytes[i] & 0xFF);
+		}
+		return value;
+	}
+
+	/**
+	 * @return Whether this is the plain "OK" confirmation with no data
+	 */
+	boolean isOk(){
+		return !hasData() && getStatus() == STATUS_OK;
+	}
+
+	/**
+	 * @return Whether this frame consists of exactly the first <code>length</code> bytes of <code>src</code>
+	 */
+	boolean matches(byte[] src, int length){
+		if(bytes.length != length)
+			return false;
+		for(int i = length - 1; i >= 0; i--){
+			if(bytes[i] != src[i])
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * @return The whole frame as a hex string, used for debug output
+	 */
+	String toHex(){
+		return PacketEncoder.toHex(bytes);
+	}
+
+	@Override
+	public String toString(){
+		return toHex();
+	}
+}
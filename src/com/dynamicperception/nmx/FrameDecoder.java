@@ -0,0 +1,165 @@
+package com.dynamicperception.nmx;
+
+/**
+ * Incremental decoder for NMX response frames. Bytes are fed in as they arrive from the
+ * serial port and each frame is handed to the {@link Listener} as soon as its last byte
+ * lands, so nothing has to wait for a fixed response delay.
+ * <p>
+ * The decoder first looks for the <code>00 00 00 00 00 FF</code> header, discarding anything
+ * else, then reads the address, status and length fields and finally the number of data
+ * bytes given by the length. If a partial frame goes quiet for longer than
+ * {@link #RESYNC_GAP_NANOS} it is dropped and the decoder goes back to looking for a header,
+ * so a lost byte cannot swallow the next response.
+ * <p>
+ * Frames are decoded in place in one reusable array. Controllers answer most commands with
+ * the same few frames, such as the "OK" confirmation or an unchanged position, so the
+ * decoder keeps the frames it has emitted recently and hands out the same immutable
+ * {@link Frame} again when the bytes match. A steady stream of repeated responses then
+ * produces no garbage.
+ * <p>
+ * A decoder must only be fed from one thread at a time.
+ */
+final class FrameDecoder
+implements Transport.Receiver{
+
+	/**
+	 * Receiving a frame takes about 2ms at 57600 baud, so a gap this long means the rest of a
+	 * partial frame is not coming.
+	 */
+	static final long RESYNC_GAP_NANOS = 50 * 1000000L;
+
+	private static final int HEADER_ZEROS = PacketEncoder.HEADER_LENGTH - 1;
+
+	// Number of recently emitted frames kept for reuse, a power of two
+	private static final int RECENT_FRAMES = 16;
+
+	/**
+	 * Receives frames from the decoder. Called on the thread feeding the decoder.
+	 */
+	static interface Listener {
+		/**
+		 * @param firstByteNanos When the first byte of the frame was fed in, from {@link System#nanoTime()}
+		 */
+		public void frameReceived(Frame frame, long firstByteNanos);
+	}
+
+	private final Listener listener;
+	private final byte[] frame = new byte[Frame.MAX_LENGTH];
+	// Recently emitted frames, indexed by a hash of their bytes
+	private final Frame[] recent = new Frame[RECENT_FRAMES];
+
+	// Number of consecutive zero bytes seen while looking for a header
+	private int zeros = 0;
+	// Number of frame bytes collected, 0 while looking for a header
+	private int pos = 0;
+	private long lastByteTime = 0;
+	// When the first zero of the header being collected arrived
+	private long frameStartTime = 0;
+	// Read from other threads for statistics
+	private volatile int resyncCount = 0;
+	private volatile long byteCount = 0;
+
+	FrameDecoder(Listener listener){
+		this.listener = listener;
+	}
+
+	/**
+	 * Feeds received bytes into the decoder
+	 */
+	@Override
+	public void received(byte[] src, int offset, int length){
+		long now = System.nanoTime();
+		if(pos > 0 && now - lastByteTime > RESYNC_GAP_NANOS){
+			resync();
+		}
+		lastByteTime = now;
+		byteCount += length;
+
+		int end = offset + length;
+		for(int i = offset; i < end; i++){
+			byte b = src[i];
+			if(pos == 0){
+				if(b == 0 && zeros == 0)
+					frameStartTime = now;
+				findHeader(b);
+				continue;
+			}
+			frame[pos++] = b;
+			if(pos >= Frame.MIN_LENGTH && pos == Frame.MIN_LENGTH + (frame[Frame.LENGTH_OFFSET] & 0xFF)){
+				emit();
+			}
+		}
+	}
+
+	/**
+	 * Drops any partial frame and goes back to looking for a header
+	 */
+	void reset(){
+		pos = 0;
+		zeros = 0;
+	}
+
+	/**
+	 * @return Number of partial frames that have been dropped
+	 */
+	int getResyncCount(){
+		return resyncCount;
+	}
+
+	/**
+	 * @return Number of bytes fed in
+	 */
+	long getByteCount(){
+		return byteCount;
+	}
+
+	private void findHeader(byte b){
+		if(b == 0){
+			zeros++;
+		}
+		else if(b == (byte) 0xFF && zeros >= HEADER_ZEROS){
+			for(int i = 0; i < HEADER_ZEROS; i++){
+				frame[i] = 0;
+			}
+			frame[HEADER_ZEROS] = b;
+			pos = PacketEncoder.HEADER_LENGTH;
+			zeros = 0;
+		}
+		else{
+			zeros = 0;
+		}
+	}
+
+	private void resync(){
+		resyncCount++;
+		reset();
+	}
+
+	private void emit(){
+		int length = pos;
+		reset();
+		listener.frameReceived(intern(length), frameStartTime);
+	}
+
+	/**
+	 * @return A frame holding the first <code>length</code> bytes of the frame array, reusing
+	 * a recent frame with the same bytes if there is one
+	 */
+	private Frame intern(int length){
+		int hash = 0;
+		// The header is always the same, so only hash what follows it
+		for(int i = PacketEncoder.HEADER_LENGTH; i < length; i++){
+			hash = 31 * hash + frame[i];
+		}
+		int slot = (hash ^ (hash >>> 16)) & (RECENT_FRAMES - 1);
+		Frame cached = recent[slot];
+		if(cached != null && cached.matches(frame, length)){
+			return cached;
+		}
+		byte[] bytes = new byte[length];
+		System.arraycopy(frame, 0, bytes, 0, length);
+		Frame decoded = new Frame(bytes);
+		recent[slot] = decoded;
+		return decoded;
+	}
+}
@@ -0,0 +1,455 @@
+// Generated by CommandStubGenerator from commands.csv. Do not edit.
+package com.dynamicperception.nmx;
+
+/**
+ * Typed methods for the general commands of a controller, obtained from
+ * {@link NMXController}. Each method sends its command and waits for the response, and
+ * throws an {@link NMXException} if the command fails or times out.
+ */
+public final class GeneralCommands extends CommandGroup {
+
+	GeneralCommands(NMXSession session, int addr, int subAddr){
+		super(session, addr, subAddr);
+	}
+
+	/**
+	 * <code>g.start</code>, command 2
+	 */
+	public void start(){
+		voidCommand(2, 0, 0);
+	}
+
+	/**
+	 * <code>g.pause</code>, command 3
+	 */
+	public void pause(){
+		voidCommand(3, 0, 0);
+	}
+
+	/**
+	 * <code>g.stop</code>, command 4
+	 */
+	public void stop(){
+		voidCommand(4, 0, 0);
+	}
+
+	/**
+	 * <code>g.toggleLed</code>, command 5
+	 */
+	public void toggleLed(){
+		voidCommand(5, 0, 0);
+	}
+
+	/**
+	 * <code>g.setTimingMaster</code>, command 6
+	 */
+	public void setTimingMaster(){
+		voidCommand(6, 0, 0);
+	}
+
+	/**
+	 * <code>g.setName</code>, command 7
+	 */
+	public void setName(){
+		voidCommand(7, 0, 0);
+	}
+
+	/**
+	 * <code>g.setAddress</code>, command 8
+	 */
+	public void setAddress(int value){
+		voidCommand(8, 1, value);
+	}
+
+	/**
+	 * <code>g.setCommonLine</code>, command 9
+	 */
+	public void setCommonLine(int value){
+		voidCommand(9, 1, value);
+	}
+
+	/**
+	 * <code>g.sendAllHome</code>, command 10
+	 */
+	public void sendAllHome(){
+		voidCommand(10, 0, 0);
+	}
+
+	/**
+	 * <code>g.setMaxStepRate</code>, command 11
+	 */
+	public void setMaxStepRate(int value){
+		voidCommand(11, 2, value);
+	}
+
+	/**
+	 * <code>g.setInputEdge</code>, command 12
+	 */
+	public void setInputEdge(int value){
+		voidCommand(12, 1, value);
+	}
+
+	/**
+	 * <code>g.setAltIOMode</code>, command 13
+	 */
+	public void setAltIOMode(int value){
+		voidCommand(13, 2, value);
+	}
+
+	/**
+	 * <code>g.setWatchdog</code>, command 14
+	 */
+	public void setWatchdog(int value){
+		voidCommand(14, 1, value);
+	}
+
+	/**
+	 * <code>g.setAltOutBeforeShotDelayTime</code>, command 15
+	 */
+	public void setAltOutBeforeShotDelayTime(int value){
+		voidCommand(15, 2, value);
+	}
+
+	/**
+	 * <code>g.setAltOutAfterShotDelayTime</code>, command 16
+	 */
+	public void setAltOutAfterShotDelayTime(int value){
+		voidCommand(16, 2, value);
+	}
+
+	/**
+	 * <code>g.setAltOutBeforeShotTime</code>, command 17
+	 */
+	public void setAltOutBeforeShotTime(int value){
+		voidCommand(17, 2, value);
+	}
+
+	/**
+	 * <code>g.setAltOutAfterShotTime</code>, command 18
+	 */
+	public void setAltOutAfterShotTime(int value){
+		voidCommand(18, 2, value);
+	}
+
+	/**
+	 * <code>g.setAltOutTriggerLevel</code>, command 19
+	 */
+	public void setAltOutTriggerLevel(int value){
+		voidCommand(19, 1, value);
+	}
+
+	/**
+	 * <code>g.setMaxProgramTime</code>, command 20
+	 */
+	public void setMaxProgramTime(long value){
+		voidCommand(20, 4, (int) value);
+	}
+
+	/**
+	 * <code>g.setProgramDelay</code>, command 21
+	 */
+	public void setProgramDelay(long value){
+		voidCommand(21, 4, (int) value);
+	}
+
+	/**
+	 * <code>g.setProgramMode</code>, command 22
+	 */
+	public void setProgramMode(int value){
+		voidCommand(22, 1, value);
+	}
+
+	/**
+	 * <code>g.setJoystick</code>, command 23
+	 */
+	public void setJoystick(int value){
+		voidCommand(23, 1, value);
+	}
+
+	/**
+	 * <code>g.setPingpong</code>, command 24
+	 */
+	public void setPingpong(int value){
+		voidCommand(24, 1, value);
+	}
+
+	/**
+	 * <code>g.sendAllStart</code>, command 25
+	 */
+	public void sendAllStart(){
+		voidCommand(25, 0, 0);
+	}
+
+	/**
+	 * <code>g.setStartHere</code>, command 26
+	 */
+	public void setStartHere(){
+		voidCommand(26, 0, 0);
+	}
+
+	/**
+	 * <code>g.setStopHere</code>, command 27
+	 */
+	public void setStopHere(){
+		voidCommand(27, 0, 0);
+	}
+
+	/**
+	 * <code>g.setFPS</code>, command 28
+	 */
+	public void setFPS(int value){
+		voidCommand(28, 1, value);
+	}
+
+	/**
+	 * <code>g.reverseStartStop</code>, command 29
+	 */
+	public void reverseStartStop(){
+		voidCommand(29, 0, 0);
+	}
+
+	/**
+	 * <code>g.setGraffik</code>, command 50
+	 */
+	public void setGraffik(int value){
+		voidCommand(50, 1, value);
+	}
+
+	/**
+	 * <code>g.setApp</code>, command 51
+	 */
+	public void setApp(int value){
+		voidCommand(51, 1, value);
+	}
+
+	/**
+	 * <code>g.getFirmware</code>, command 100
+	 */
+	public int getFirmware(){
+		return intCommand(100, 0, 0);
+	}
+
+	/**
+	 * <code>g.getRunStatus</code>, command 101
+	 */
+	public int getRunStatus(){
+		return intCommand(101, 0, 0);
+	}
+
+	/**
+	 * <code>g.getRunTime</code>, command 102
+	 */
+	public int getRunTime(){
+		return intCommand(102, 0, 0);
+	}
+
+	/**
+	 * <code>g.isExposing</code>, command 103
+	 */
+	public boolean isExposing(){
+		return booleanCommand(103, 0, 0);
+	}
+
+	/**
+	 * <code>g.isTimingMaster</code>, command 104
+	 */
+	public boolean isTimingMaster(){
+		return booleanCommand(104, 0, 0);
+	}
+
+	/**
+	 * <code>g.getName</code>, command 105
+	 */
+	public String getName(){
+		return stringCommand(105, 0, 0);
+	}
+
+	/**
+	 * <code>g.getMaxStepRate</code>, command 106
+	 */
+	public int getMaxStepRate(){
+		return intCommand(106, 0, 0);
+	}
+
+	/**
+	 * <code>g.getVoltage</code>, command 107
+	 */
+	public float getVoltage(){
+		return floatCommand(107, 0, 0);
+	}
+
+	/**
+	 * <code>g.getCurrent</code>, command 108
+	 */
+	public float getCurrent(){
+		return floatCommand(108, 0, 0);
+	}
+
+	/**
+	 * <code>g.getAltInputEdge</code>, command 109
+	 */
+	public int getAltInputEdge(){
+		return intCommand(109, 0, 0);
+	}
+
+	/**
+	 * <code>g.getAltIOMode</code>, command 110
+	 */
+	public int getAltIOMode(){
+		return intCommand(110, 0, 0);
+	}
+
+	/**
+	 * <code>g.getLimitSwitchState</code>, command 111
+	 */
+	public int getLimitSwitchState(){
+		return intCommand(111, 0, 0);
+	}
+
+	/**
+	 * <code>g.getAltOutBeforeShotDelayTime</code>, command 112
+	 */
+	public int getAltOutBeforeShotDelayTime(){
+		return intCommand(112, 0, 0);
+	}
+
+	/**
+	 * <code>g.getAltOutAfterShotDelayTime</code>, command 113
+	 */
+	public int getAltOutAfterShotDelayTime(){
+		return intCommand(113, 0, 0);
+	}
+
+	/**
+	 * <code>g.getAltOutBeforeShotTime</code>, command 114
+	 */
+	public int getAltOutBeforeShotTime(){
+		return intCommand(114, 0, 0);
+	}
+
+	/**
+	 * <code>g.getAltOutAfterShotTime</code>, command 115
+	 */
+	public int getAltOutAfterShotTime(){
+		return intCommand(115, 0, 0);
+	}
+
+	/**
+	 * <code>g.getAltOutTriggerLevel</code>, command 116
+	 */
+	public int getAltOutTriggerLevel(){
+		return intCommand(116, 0, 0);
+	}
+
+	/**
+	 * <code>g.getProgramDelay</code>, command 117
+	 */
+	public int getProgramDelay(){
+		return intCommand(117, 0, 0);
+	}
+
+	/**
+	 * <code>g.getProgramMode</code>, command 118
+	 */
+	public int getProgramMode(){
+		return intCommand(118, 0, 0);
+	}
+
+	/**
+	 * <code>g.getPowerCyled</code>, command 119
+	 */
+	public int getPowerCyled(){
+		return intCommand(119, 0, 0);
+	}
+
+	/**
+	 * <code>g.getJoystick</code>, command 120
+	 */
+	public boolean getJoystick(){
+		return booleanCommand(120, 0, 0);
+	}
+
+	/**
+	 * <code>g.getPingpong</code>, command 121
+	 */
+	public boolean getPingpong(){
+		return booleanCommand(121, 0, 0);
+	}
+
+	/**
+	 * <code>g.getWatchdog</code>, command 122
+	 */
+	public boolean getWatchdog(){
+		return booleanCommand(122, 0, 0);
+	}
+
+	/**
+	 * <code>g.getPctComplete</code>, command 123
+	 */
+	public boolean getPctComplete(){
+		return booleanCommand(123, 0, 0);
+	}
+
+	/**
+	 * <code>g.getMotorAttach</code>, command 124
+	 */
+	public int getMotorAttach(){
+		return intCommand(124, 0, 0);
+	}
+
+	/**
+	 * <code>g.getTotalRunTime</code>, command 125
+	 */
+	public int getTotalRunTime(){
+		return intCommand(125, 0, 0);
+	}
+
+	/**
+	 * <code>g.isProgramComplete</code>, command 126
+	 */
+	public boolean isProgramComplete(){
+		return booleanCommand(126, 0, 0);
+	}
+
+	/**
+	 * <code>g.getFPS</code>, command 127
+	 */
+	public int getFPS(){
+		return intCommand(127, 0, 0);
+	}
+
+	/**
+	 * <code>g.getMotorRunningStates</code>, command 128
+	 */
+	public int getMotorRunningStates(){
+		return intCommand(128, 0, 0);
+	}
+
+	/**
+	 * <code>g.isProgramValid</code>, command 129
+	 */
+	public boolean isProgramValid(){
+		return booleanCommand(129, 0, 0);
+	}
+
+	/**
+	 * <code>g.getMotorSleepStates</code>, command 130
+	 */
+	public int getMotorSleepStates(){
+		return intCommand(130, 0, 0);
+	}
+
+	/**
+	 * <code>g.isGraffik</code>, command 150
+	 */
+	public boolean isGraffik(){
+		return booleanCommand(150, 0, 0);
+	}
+
+	/**
+	 * <code>g.setDebug</code>, command 254
+	 */
+	public void setDebug(int value){
+		voidCommand(254, 1, value);
+	}
+}
@@ -0,0 +1,203 @@
+// Generated by CommandStubGenerator from commands.csv. Do not edit.
+package com.dynamicperception.nmx;
+
+/**
+ * Typed methods for the key frame commands of a controller, obtained from
+ * {@link NMXController}. Each method sends its command and waits for the response, and
+ * throws an {@link NMXException} if the command fails or times out.
+ */
+public final class KeyFrameCommands extends CommandGroup {
+
+	KeyFrameCommands(NMXSession session, int addr, int subAddr){
+		super(session, addr, subAddr);
+	}
+
+	/**
+	 * <code>k.setAxis</code>, command 10
+	 */
+	public int setAxis(int value){
+		return intCommand(10, 2, value);
+	}
+
+	/**
+	 * <code>k.setCount</code>, command 11
+	 */
+	public int setCount(int value){
+		return intCommand(11, 2, value);
+	}
+
+	/**
+	 * <code>k.setAbscissa</code>, command 12
+	 */
+	public float setAbscissa(float value){
+		return floatCommand(12, 4, Float.floatToIntBits(value));
+	}
+
+	/**
+	 * <code>k.setPos</code>, command 13
+	 */
+	public float setPos(float value){
+		return floatCommand(13, 4, Float.floatToIntBits(value));
+	}
+
+	/**
+	 * <code>k.setVel</code>, command 14
+	 */
+	public float setVel(float value){
+		return floatCommand(14, 4, Float.floatToIntBits(value));
+	}
+
+	/**
+	 * <code>k.setUpdateRate</code>, command 15
+	 */
+	public int setUpdateRate(int value){
+		return intCommand(15, 2, value);
+	}
+
+	/**
+	 * <code>k.endTransmission</code>, command 16
+	 */
+	public void endTransmission(){
+		voidCommand(16, 0, 0);
+	}
+
+	/**
+	 * <code>k.setContVidTime</code>, command 17
+	 */
+	public int setContVidTime(long value){
+		return intCommand(17, 4, (int) value);
+	}
+
+	/**
+	 * <code>k.startProgram</code>, command 20
+	 */
+	public void startProgram(){
+		voidCommand(20, 0, 0);
+	}
+
+	/**
+	 * <code>k.pauseProgram</code>, command 21
+	 */
+	public void pauseProgram(){
+		voidCommand(21, 0, 0);
+	}
+
+	/**
+	 * <code>k.stopProgram</code>, command 22
+	 */
+	public void stopProgram(){
+		voidCommand(22, 0, 0);
+	}
+
+	/**
+	 * <code>k.printInfo</code>, command 99
+	 */
+	public void printInfo(){
+		voidCommand(99, 0, 0);
+	}
+
+	/**
+	 * <code>k.getCount</code>, command 100
+	 */
+	public int getCount(){
+		return intCommand(100, 0, 0);
+	}
+
+	/**
+	 * <code>k.getUpdateRate</code>, command 101
+	 */
+	public int getUpdateRate(){
+		return intCommand(101, 0, 0);
+	}
+
+	/**
+	 * <code>k.getPosAt</code>, command 102
+	 */
+	public float getPosAt(float value){
+		return floatCommand(102, 4, Float.floatToIntBits(value));
+	}
+
+	/**
+	 * <code>k.getVelAt</code>, command 103
+	 */
+	public float getVelAt(float value){
+		return floatCommand(103, 4, Float.floatToIntBits(value));
+	}
+
+	/**
+	 * <code>k.getAccelAt</code>, command 104
+	 */
+	public float getAccelAt(float value){
+		return floatCommand(104, 4, Float.floatToIntBits(value));
+	}
+
+	/**
+	 * <code>k.isVelValid</code>, command 105
+	 */
+	public void isVelValid(){
+		voidCommand(105, 0, 0);
+	}
+
+	/**
+	 * <code>k.isAccelValid</code>, command 106
+	 */
+	public boolean isAccelValid(){
+		return booleanCommand(106, 0, 0);
+	}
+
+	/**
+	 * <code>k.getContVidDur</code>, command 107
+	 */
+	public int getContVidDur(){
+		return intCommand(107, 0, 0);
+	}
+
+	/**
+	 * <code>k.getRunState</code>, command 120
+	 */
+	public int getRunState(){
+		return intCommand(120, 0, 0);
+	}
+
+	/**
+	 * <code>k.getRunTime</code>, command 121
+	 */
+	public long getRunTime(){
+		return longCommand(121, 0, 0);
+	}
+
+	/**
+	 * <code>k.getMaxRunTime</code>, command 122
+	 */
+	public long getMaxRunTime(){
+		return longCommand(122, 0, 0);
+	}
+
+	/**
+	 * <code>k.getPctDone</code>, command 123
+	 */
+	public int getPctDone(){
+		return intCommand(123, 0, 0);
+	}
+
+	/**
+	 * <code>k.getKfTime</code>, command 130
+	 */
+	public int getKfTime(int value){
+		return intCommand(130, 2, value);
+	}
+
+	/**
+	 * <code>k.getKfPos</code>, command 131
+	 */
+	public int getKfPos(int value){
+		return intCommand(131, 2, value);
+	}
+
+	/**
+	 * <code>k.getKfVel</code>, command 132
+	 */
+	public float getKfVel(int value){
+		return floatCommand(132, 2, value);
+	}
+}
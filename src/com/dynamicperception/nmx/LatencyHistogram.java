@@ -0,0 +1,66 @@
+package com.dynamicperception.nmx;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A histogram of durations with eight buckets per power of two microseconds, so every value
+ * is known to within about 12% from 8us to a little over 4s. Recording is a few array
+ * writes without locking or allocation, cheap enough to leave on for every command.
+ * <p>
+ * Only one thread may record, while any thread may take a {@link #snapshot()}. A snapshot
+ * taken during recording may be off by the values being recorded.
+ */
+final class LatencyHistogram {
+
+	private static final int SUB_BUCKET_BITS = 3;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	/** Number of buckets; values past the last one are counted in it */
+	static final int BUCKETS = 20 * SUB_BUCKETS;
+
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+	private volatile long totalNanos;
+	private volatile long maxNanos;
+
+	void record(long nanos){
+		if(nanos < 0)
+			nanos = 0;
+		int bucket = bucket(TimeUnit.NANOSECONDS.toMicros(nanos));
+		// There is only one writer, so ordered writes are enough
+		counts.lazySet(bucket, counts.get(bucket) + 1);
+		totalNanos += nanos;
+		if(nanos > maxNanos)
+			maxNanos = nanos;
+	}
+
+	LatencyStats snapshot(){
+		long[] copy = new long[BUCKETS];
+		long total = 0;
+		for(int i = 0; i < BUCKETS; i++){
+			copy[i] = counts.get(i);
+			total += copy[i];
+		}
+		return new LatencyStats(copy, total, totalNanos, maxNanos);
+	}
+
+	/**
+	 * @return The bucket holding a number of microseconds
+	 */
+	static int bucket(long micros){
+		if(micros < SUB_BUCKETS)
+			return (int) Math.max(micros, 0);
+		int exponent = 63 - Long.numberOfLeadingZeros(micros);
+		int bucket = (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + (int) ((micros >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1));
+		return Math.min(bucket, BUCKETS - 1);
+	}
+
+	/**
+	 * @return The smallest number of microseconds above every value in a bucket
+	 */
+	static long upperBound(int bucket){
+		if(bucket < SUB_BUCKETS)
+			return bucket + 1;
+		int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+		return (long) (SUB_BUCKETS + bucket % SUB_BUCKETS + 1) << (exponent - SUB_BUCKET_BITS);
+	}
+}
@@ -0,0 +1,73 @@
+package com.dynamicperception.nmx;
+
+/**
+ * A snapshot of the distribution of one kind of duration, such as the time commands wait in
+ * the queue. Percentiles are accurate to about 12%; the mean and maximum are exact.
+ */
+public final class LatencyStats {
+
+	private final long[] counts;
+	private final long count;
+	private final long totalNanos;
+	private final long maxNanos;
+
+	LatencyStats(long[] counts, long count, long totalNanos, long maxNanos){
+		this.counts = counts;
+		this.count = count;
+		this.totalNanos = totalNanos;
+		this.maxNanos = maxNanos;
+	}
+
+	/**
+	 * @return Number of durations recorded
+	 */
+	public long getCount(){
+		return count;
+	}
+
+	public double getMeanMillis(){
+		return count == 0 ? 0 : totalNanos / 1e6 / count;
+	}
+
+	public double getMaxMillis(){
+		return maxNanos / 1e6;
+	}
+
+	public double getP50Millis(){
+		return getPercentileMillis(50);
+	}
+
+	public double getP99Millis(){
+		return getPercentileMillis(99);
+	}
+
+	public double getP999Millis(){
+		return getPercentileMillis(99.9);
+	}
+
+	/**
+	 * @param percentile From 0 to 100
+	 * @return The duration that the given percentage of the recorded durations do not exceed,
+	 * or 0 if none have been recorded
+	 */
+	public double getPercentileMillis(double percentile){
+		if(percentile < 0 || percentile > 100)
+			throw new IllegalArgumentException("A percentile must be between 0 and 100");
+		if(count == 0)
+			return 0;
+		long needed = Math.max(1, (long) Math.ceil(count * percentile / 100));
+		long seen = 0;
+		for(int i = 0; i < counts.length; i++){
+			seen += counts[i];
+			if(seen >= needed)
+				return Math.min(LatencyHistogram.upperBound(i) / 1e3, getMaxMillis());
+		}
+		return getMaxMillis();
+	}
+
+	@Override
+	public String toString(){
+		return String.format("%d recorded, mean %.2fms, p50 %.2fms, p99 %.2fms, p99.9 %.2fms, max %.2fms",
+				count, getMeanMillis(), getP50Millis(), getP99Millis(), getP999Millis(), getMaxMillis());
+	}
+}
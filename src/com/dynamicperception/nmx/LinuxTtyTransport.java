@@ -0,0 +1,256 @@
+package com.dynamicperception.nmx;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A transport that talks to a Linux tty device such as <code>/dev/ttyACM0</code> directly
+ * through its device file, without jssc or RXTX:
+ * <pre>
+ * NMXSession session = NMXSession.open(LinuxTtyTransport.open("/dev/ttyACM0", 57600));
+ * </pre>
+ * The line is put into raw mode with <code>stty</code>, with reads that block until at least
+ * one byte has arrived. Reads happen on the session's command thread while it waits for a
+ * response, so the transport has no thread of its own: the thread sleeps in the driver and a
+ * response is handed over as soon as it arrives. The terminal driver only counts read
+ * timeouts in tenths of a second, so the timeout is kept by a timer shared by all the
+ * transports instead, which closes the read channel if nothing has arrived by then. The
+ * channel is opened again for the next read; the write side of the device stays open
+ * throughout, so nothing the driver has received is lost. Interrupting the thread also
+ * closes the channel, which is how a session stops its command thread.
+ * <p>
+ * Bytes are read into one reused array and written straight from the caller's array.
+ */
+public final class LinuxTtyTransport implements Transport {
+
+	private static final int READ_BUFFER_SIZE = 4096;
+
+	private final String device;
+	private final FileOutputStream out;
+	private final byte[] readBuffer = new byte[READ_BUFFER_SIZE];
+	private final ByteBuffer readView = ByteBuffer.wrap(readBuffer);
+
+	/** Closes the read channel once a read has run past its timeout */
+	private final Runnable expire = new Runnable() {
+		@Override
+		public void run(){
+			closeQuietly(in);
+		}
+	};
+
+	/** Read side of the device, replaced after a timeout or interrupt has closed it */
+	private volatile FileInputStream in;
+	private volatile Receiver receiver;
+	private volatile boolean open = true;
+
+	private LinuxTtyTransport(String device) throws IOException {
+		this.device = device;
+		this.out = new FileOutputStream(device);
+		try {
+			this.in = new FileInputStream(device);
+		} catch (IOException e) {
+			out.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Timer that keeps the read timeouts of all the transports
+	 */
+	private static final class Deadlines {
+		static final ScheduledThreadPoolExecutor TIMER = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable runnable){
+				Thread thread = new Thread(runnable, "NMX tty read timeouts");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+
+		static {
+			TIMER.setRemoveOnCancelPolicy(true);
+		}
+	}
+
+	/**
+	 * Configures a tty device for 8N1 raw mode at the given baud rate and opens it
+	 * @param device Path of the device, e.g. "/dev/ttyACM0"
+	 * @throws NMXException If the device cannot be configured or opened
+	 */
+	public static LinuxTtyTransport open(String device, int baudRate){
+		configure(device, baudRate);
+		try {
+			return new LinuxTtyTransport(device);
+		} catch (IOException e) {
+			throw new NMXException("Error opening serial port " + device + ": " + e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Sets the line up with <code>stty</code>: raw 8N1 without flow control or echo, no
+	 * modem control, and reads that wait for the first byte however long it takes
+	 */
+	private static void configure(String device, int baudRate){
+		ProcessBuilder command = new ProcessBuilder("stty", "-F", device, Integer.toString(baudRate),
+				"raw", "-echo", "-echoe", "-echok", "-echoctl", "-echoke", "cs8", "-cstopb", "-parenb",
+				"-ixon", "-ixoff", "-crtscts", "clocal", "-hupcl", "min", "1", "time", "0");
+		try {
+			Process stty = command.redirectErrorStream(true).start();
+			String output = readAll(stty.getInputStream());
+			if(stty.waitFor() != 0)
+				throw new NMXException("Error configuring serial port " + device + ": " + output.trim());
+		} catch (IOException e) {
+			throw new NMXException("Error running stty for serial port " + device + ": " + e.getMessage(), e);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new NMXException("Interrupted while configuring serial port " + device, e);
+		}
+	}
+
+	private static String readAll(InputStream in) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		byte[] buffer = new byte[256];
+		int read;
+		while((read = in.read(buffer)) != -1){
+			bytes.write(buffer, 0, read);
+		}
+		return bytes.toString();
+	}
+
+	/**
+	 * Lists the serial devices the kernel knows about, i.e. the ttys backed by real hardware
+	 * such as USB adapters, without loading any native library
+	 * @return Device paths, e.g. "/dev/ttyACM0", sorted by name
+	 */
+	public static List<String> listPorts(){
+		List<String> ports = new ArrayList<String>();
+		String[] ttys = new File("/sys/class/tty").list();
+		if(ttys == null)
+			return ports;
+		Arrays.sort(ttys);
+		for(String tty : ttys){
+			// Virtual consoles and pseudo terminals have no device behind them
+			if(new File("/sys/class/tty/" + tty + "/device").exists() && new File("/dev/" + tty).exists())
+				ports.add("/dev/" + tty);
+		}
+		return ports;
+	}
+
+	@Override
+	public void setReceiver(Receiver receiver){
+		this.receiver = receiver;
+	}
+
+	@Override
+	public void write(byte[] src, int offset, int length){
+		try {
+			out.write(src, offset, length);
+		} catch (IOException e) {
+			throw new NMXException("Error writing to serial port " + device + ": " + e.getMessage(), e);
+		}
+	}
+
+	@Override
+	public boolean isPolled(){
+		return true;
+	}
+
+	@Override
+	public void receive(long timeoutNanos){
+		FileInputStream current = null;
+		try {
+			current = reader();
+			if(current.available() == 0){
+				if(timeoutNanos <= 0)
+					return;
+				// Wait in the driver for the first byte
+				ScheduledFuture<?> expiry = Deadlines.TIMER.schedule(expire, timeoutNanos, TimeUnit.NANOSECONDS);
+				try {
+					read(current);
+				} finally {
+					expiry.cancel(false);
+				}
+			}
+			// Hand over everything that is waiting
+			while(current.available() > 0 && read(current)){
+			}
+		} catch (IOException e) {
+			// The timeout has passed, the thread was interrupted or the transport was closed
+			if(!isOpen() || current == null || !current.getChannel().isOpen())
+				return;
+			throw new NMXException("Error reading from serial port " + device + ": " + e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * @return The read side of the device, opened again if a timeout or interrupt closed it
+	 */
+	private FileInputStream reader() throws IOException {
+		FileInputStream current = in;
+		if(!current.getChannel().isOpen()){
+			current = new FileInputStream(device);
+			in = current;
+			// Closed while it was being opened again
+			if(!open)
+				current.close();
+		}
+		return current;
+	}
+
+	/**
+	 * Reads what the driver has into the buffer, waiting for at least one byte, and hands it 
+	 * to the receiver
+	 * @return Whether anything was read
+	 */
+	private boolean read(FileInputStream from) throws IOException {
+		readView.clear();
+		int read = from.getChannel().read(readView);
+		if(read <= 0)
+			return false;
+		Receiver current = receiver;
+		if(current != null)
+			current.received(readBuffer, 0, read);
+		return true;
+	}
+
+	private static void closeQuietly(FileInputStream stream){
+		try {
+			stream.close();
+		} catch (IOException e) {
+			// ignored
+		}
+	}
+
+	@Override
+	public boolean isOpen(){
+		return open;
+	}
+
+	@Override
+	public String getName(){
+		return device;
+	}
+
+	@Override
+	public void close(){
+		open = false;
+		closeQuietly(in);
+		try {
+			out.close();
+		} catch (IOException e) {
+			// ignored
+		}
+	}
+}
@@ -0,0 +1,350 @@
+// Generated by CommandStubGenerator from commands.csv. Do not edit.
+package com.dynamicperception.nmx;
+
+/**
+ * Typed methods for the commands of one motor on a controller, obtained from
+ * {@link NMXController}. Each method sends its command and waits for the response, and
+ * throws an {@link NMXException} if the command fails or times out.
+ */
+public final class MotorCommands extends CommandGroup {
+
+	MotorCommands(NMXSession session, int addr, int subAddr){
+		super(session, addr, subAddr);
+	}
+
+	/**
+	 * <code>m.setSleep</code>, command 2
+	 */
+	public void setSleep(int value){
+		voidCommand(2, 1, value);
+	}
+
+	/**
+	 * <code>m.setEnable</code>, command 3
+	 */
+	public void setEnable(int value){
+		voidCommand(3, 1, value);
+	}
+
+	/**
+	 * <code>m.stop</code>, command 4
+	 */
+	public void stop(){
+		voidCommand(4, 0, 0);
+	}
+
+	/**
+	 * <code>m.setBacklash</code>, command 5
+	 */
+	public void setBacklash(int value){
+		voidCommand(5, 2, value);
+	}
+
+	/**
+	 * <code>m.setMS</code>, command 6
+	 */
+	public void setMS(int value){
+		voidCommand(6, 1, value);
+	}
+
+	/**
+	 * <code>m.setMaxSpeed</code>, command 7
+	 */
+	public void setMaxSpeed(int value){
+		voidCommand(7, 2, value);
+	}
+
+	/**
+	 * <code>m.setDir</code>, command 8
+	 */
+	public void setDir(int value){
+		voidCommand(8, 1, value);
+	}
+
+	/**
+	 * <code>m.setHome</code>, command 9
+	 */
+	public void setHome(){
+		voidCommand(9, 0, 0);
+	}
+
+	/**
+	 * <code>m.setEndHere</code>, command 10
+	 */
+	public void setEndHere(){
+		voidCommand(10, 0, 0);
+	}
+
+	/**
+	 * <code>m.sendHome</code>, command 11
+	 */
+	public void sendHome(){
+		voidCommand(11, 0, 0);
+	}
+
+	/**
+	 * <code>m.sendEnd</code>, command 12
+	 */
+	public void sendEnd(){
+		voidCommand(12, 0, 0);
+	}
+
+	/**
+	 * <code>m.setSpeed</code>, command 13
+	 */
+	public void setSpeed(float value){
+		voidCommand(13, 4, Float.floatToIntBits(value));
+	}
+
+	/**
+	 * <code>m.setAccel</code>, command 14
+	 */
+	public void setAccel(float value){
+		voidCommand(14, 4, Float.floatToIntBits(value));
+	}
+
+	/**
+	 * <code>m.setStart</code>, command 16
+	 */
+	public void setStart(long value){
+		voidCommand(16, 4, (int) value);
+	}
+
+	/**
+	 * <code>m.setStop</code>, command 17
+	 */
+	public void setStop(long value){
+		voidCommand(17, 4, (int) value);
+	}
+
+	/**
+	 * <code>m.setEasing</code>, command 18
+	 */
+	public void setEasing(int value){
+		voidCommand(18, 1, value);
+	}
+
+	/**
+	 * <code>m.setLeadIn</code>, command 19
+	 */
+	public void setLeadIn(long value){
+		voidCommand(19, 4, (int) value);
+	}
+
+	/**
+	 * <code>m.setTravel</code>, command 20
+	 */
+	public void setTravel(long value){
+		voidCommand(20, 4, (int) value);
+	}
+
+	/**
+	 * <code>m.setProgramAccel</code>, command 21
+	 */
+	public void setProgramAccel(long value){
+		voidCommand(21, 4, (int) value);
+	}
+
+	/**
+	 * <code>m.setProgramDecel</code>, command 22
+	 */
+	public void setProgramDecel(long value){
+		voidCommand(22, 4, (int) value);
+	}
+
+	/**
+	 * <code>m.sendStart</code>, command 23
+	 */
+	public void sendStart(){
+		voidCommand(23, 0, 0);
+	}
+
+	/**
+	 * <code>m.sendStop</code>, command 24
+	 */
+	public void sendStop(){
+		voidCommand(24, 0, 0);
+	}
+
+	/**
+	 * <code>m.setLeadOut</code>, command 25
+	 */
+	public void setLeadOut(long value){
+		voidCommand(25, 4, (int) value);
+	}
+
+	/**
+	 * <code>m.resetLimits</code>, command 27
+	 */
+	public void resetLimits(){
+		voidCommand(27, 0, 0);
+	}
+
+	/**
+	 * <code>m.autoSetMS</code>, command 28
+	 */
+	public int autoSetMS(){
+		return intCommand(28, 0, 0);
+	}
+
+	/**
+	 * <code>m.setStartHere</code>, command 29
+	 */
+	public void setStartHere(){
+		voidCommand(29, 0, 0);
+	}
+
+	/**
+	 * <code>m.setStopHere</code>, command 30
+	 */
+	public void setStopHere(int value){
+		voidCommand(30, 1, value);
+	}
+
+	/**
+	 * <code>m.sendTo</code>, command 31
+	 */
+	public void sendTo(long value){
+		voidCommand(31, 4, (int) value);
+	}
+
+	/**
+	 * <code>m.isEnabled</code>, command 100
+	 */
+	public boolean isEnabled(){
+		return booleanCommand(100, 0, 0);
+	}
+
+	/**
+	 * <code>m.getBacklash</code>, command 101
+	 */
+	public int getBacklash(){
+		return intCommand(101, 0, 0);
+	}
+
+	/**
+	 * <code>m.getMS</code>, command 102
+	 */
+	public int getMS(){
+		return intCommand(102, 0, 0);
+	}
+
+	/**
+	 * <code>m.getDir</code>, command 103
+	 */
+	public int getDir(){
+		return intCommand(103, 0, 0);
+	}
+
+	/**
+	 * <code>m.getMaxStepRate</code>, command 104
+	 */
+	public int getMaxStepRate(){
+		return intCommand(104, 0, 0);
+	}
+
+	/**
+	 * <code>m.getEnd</code>, command 105
+	 */
+	public int getEnd(){
+		return intCommand(105, 0, 0);
+	}
+
+	/**
+	 * <code>m.getPos</code>, command 106
+	 */
+	public int getPos(){
+		return intCommand(106, 0, 0);
+	}
+
+	/**
+	 * <code>m.isRunning</code>, command 107
+	 */
+	public boolean isRunning(){
+		return booleanCommand(107, 0, 0);
+	}
+
+	/**
+	 * <code>m.getSpeed</code>, command 108
+	 */
+	public float getSpeed(){
+		return floatCommand(108, 0, 0);
+	}
+
+	/**
+	 * <code>m.getAccel</code>, command 109
+	 */
+	public float getAccel(){
+		return floatCommand(109, 0, 0);
+	}
+
+	/**
+	 * <code>m.getEasing</code>, command 110
+	 */
+	public int getEasing(){
+		return intCommand(110, 0, 0);
+	}
+
+	/**
+	 * <code>m.getStart</code>, command 111
+	 */
+	public int getStart(){
+		return intCommand(111, 0, 0);
+	}
+
+	/**
+	 * <code>m.getStop</code>, command 112
+	 */
+	public int getStop(){
+		return intCommand(112, 0, 0);
+	}
+
+	/**
+	 * <code>m.getTravel</code>, command 113
+	 */
+	public int getTravel(){
+		return intCommand(113, 0, 0);
+	}
+
+	/**
+	 * <code>m.getLeadIn</code>, command 114
+	 */
+	public int getLeadIn(){
+		return intCommand(114, 0, 0);
+	}
+
+	/**
+	 * <code>m.getProgramAccel</code>, command 115
+	 */
+	public int getProgramAccel(){
+		return intCommand(115, 0, 0);
+	}
+
+	/**
+	 * <code>m.getProgramDecel</code>, command 116
+	 */
+	public int getProgramDecel(){
+		return intCommand(116, 0, 0);
+	}
+
+	/**
+	 * <code>m.getSleep</code>, command 117
+	 */
+	public boolean getSleep(){
+		return booleanCommand(117, 0, 0);
+	}
+
+	/**
+	 * <code>m.isSpeedValid</code>, command 118
+	 */
+	public boolean isSpeedValid(){
+		return booleanCommand(118, 0, 0);
+	}
+
+	/**
+	 * <code>m.getLeadOut</code>, command 119
+	 */
+	public int getLeadOut(){
+		return intCommand(119, 0, 0);
+	}
+}
@@ -1,35 +1,27 @@
 package com.dynamicperception.nmx;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Static access to the default {@link NMXSession}, along with the options that apply to
+ * every session
+ */
 class NMXComs {
-	
-	private static final int ERROR = (int) -1e9;
-	
-	// Serial object
-	private static Serial serial;
 
 	// Debugging
-	private static boolean serialDetail = false;
-	
-	// Command handling thread
-	private static Thread commandThread;
-	
-	// State monitoring
-	private static long lastCommandTime = 0;
-	private static boolean sendingCommand = false;
-	private static boolean NMXComsBusy = false;	
-	
-	// Packet vars	
-	private static String commandPacket = null;	
-	private static String manualData = "";
-	
-	// Response handling
-	private static boolean responseOn = true;		
-	private static int responseDelay = 50;	
-	private static String response = "";
-	private static int responseVal;
-	
-	private static int emptyResponseCount = 0;
+	private static volatile boolean serialDetail = false;
+
+	// Options for the next command submitted by each thread, see setResponseDelay() and setManualData()
+	private static final ThreadLocal<Integer> nextResponseDelay = new ThreadLocal<Integer>();
+	private static final ThreadLocal<Payload> manualData = new ThreadLocal<Payload>(){
+		@Override
+		protected Payload initialValue() {
+			return new Payload();
+		}
+	};
 			
-	// Response delay options
+	// Response timeout options. The command thread moves on as soon as the response 
+	// frame arrives; these are only the longest it will wait for one.
 	protected static class ResponseTiming{		
 		public final static int DEFAULT = 80;
 		public final static int NO_RESPONSE = 30;
@@ -47,42 +39,75 @@ class NMXComs {
 		serialDetail = enabled;
 	}	
 	
+	static boolean isSerialDetail(){
+		return serialDetail;
+	}	
+	
 	/**
-	 * Sets how long the command thread should wait before trying to fetch a response packet
-	 * @param millis Time in milliseconds
+	 * Sets the longest the command thread should wait for the response packet to the next command
+	 * submitted by the calling thread. The wait ends as soon as the response arrives. Without
+	 * this, the session learns how long each command takes to answer and waits accordingly, see
+	 * {@link NMXSession#setAdaptiveTimeouts(boolean)}, so there is no need to set a delay ahead
+	 * of EEPROM writes.
+	 * @param millis Time in milliseconds; 0 or less to use the session's timeout
 	 */
 	public static void setResponseDelay(int millis){
-		responseDelay = millis;
+		nextResponseDelay.set(millis);
+	}
+	
+	/**
+	 * Sets how many commands may be written to the controller before their responses have 
+	 * arrived. Responses are matched to commands in the order they were sent. A window of 1, 
+	 * the default, sends each command only once the previous one has been answered.
+	 * <p>
+	 * Commands to different controllers, commands sent without waiting for a response and 
+	 * commands that wait longer than {@link ResponseTiming#DEFAULT} for their response, 
+	 * whether set with {@link #setResponseDelay(int)} or learned, are always sent one at a time.
+	 * @param size Maximum number of commands in flight
+	 */
+	public static void setPipelineWindow(int size){
+		NMXSession.getDefault().setPipelineWindow(size);
 	}
 	
 	/**
 	 * Sets any manually configured data that will be added before the main data segment of the
-	 * packet. This is used for a few commands that require direction byte before other data
-	 * @param data
+	 * next packet with data submitted by the calling thread. This is used for a few commands that
+	 * require direction byte before other data
+	 * @param data Hex string of the bytes to prepend
+	 * @deprecated Build the whole data segment with a {@link Payload} and send it with
+	 * {@link #cmd(int, int, int, Payload, boolean)}
 	 */
+	@Deprecated
 	public static void setManualData(String data){
-		manualData = data;
+		manualData.get().clear().putHex(data);
 	}
 	
 	/**
-	 * Sets the serial object for this class to use and starts the command detection thread
+	 * Sets the serial object for the default session to use and starts its command thread
 	 * @param _serial
 	 */
 	public static void setSerialObject(Serial _serial) {
-		serial = _serial;
-		commandThread = new Thread(new CommandThread());
-		commandThread.start();
+		NMXSession.getDefault().setSerial(_serial);
+	}
+	
+	/**
+	 * Stops the default session's command thread. Commands that have not been sent yet fail 
+	 * with an {@link NMXException}; commands submitted afterwards wait until a new serial 
+	 * object is set.
+	 */
+	public static void shutdown() {
+		NMXSession.getDefault().shutdown();
 	}
 	
 	/**
 	 * This differs from the {@link #isSendingCommand()} method in that isBusy() returns true once 
-	 * the command has starting being processed, while {@link #isSendingCommand()} returns true only once 
-	 * the command thread has been flagged and has started sending the command to the controller.
+	 * a command has been submitted, while {@link #isSendingCommand()} returns true only once
+	 * the command thread has started sending a command to the controller.
 	 * 
-	 * @return Whether the command sending process is in process. T
+	 * @return Whether any submitted command has not been completed yet
 	 */
 	public static boolean isBusy(){
-		return NMXComsBusy;
+		return NMXSession.getDefault().isBusy();
 	}
 
 	/** 
@@ -90,21 +115,7 @@ class NMXComs {
 	 * @return Whether the command thread is busy
 	 */
 	public static boolean isSendingCommand(){
-		return sendingCommand;
-	}
-	
-	/** 
-	 * @return The value associated with the response to the last command sent
-	 */
-	protected static int getResponseVal(){
-		int ret = responseVal;		
-		if(ret == ERROR ){
-			System.out.println("COM error caused by command packet: " + commandPacket);
-		}
-		// Set the response value to the error value so if there is a problem
-		// with the next response, the error value will be returned		
-		responseVal = ERROR;
-		return ret;
+		return NMXSession.getDefault().isSendingCommand();
 	}
 	
 	// ******** Communications Methods ******** // 
@@ -143,12 +154,7 @@ class NMXComs {
 	 *            Data to be included in the packet
 	 */
 	public static void cmd(int addr, int subAddr, int command, int length, int data) {
-		try {
-			cmd(addr, subAddr, command, length, data, true);
-		} catch (InterruptedException e) {
-			System.out.println("NMX Command interrupted during waiting period");
-			e.printStackTrace();
-		}
+		cmdAsync(addr, subAddr, command, length, data, true);
 	}
 	
 	public static void cmd(int addr, int subAddr, int command, int length, int data, boolean getResponse, boolean getException) throws InterruptedException{
@@ -174,41 +180,83 @@ class NMXComs {
 	 *            response from the NMX
 	 */
 	public static void cmd(int addr, int _subAddr, int _command, int _length, int _data, boolean getResponse) throws InterruptedException {
-		
-		responseOn = getResponse;
-		
-		// Lock the NMX communications class
-		NMXComsBusy = true;
-
-		// Assemble command packet
-		String header = "0000000000FF";
-		String address = Integer.toHexString(addr);		
-		address = address.length() == 2 ? address : "0" + address;	// Append leading zero if necessary
-		String sub_addr = _subAddr <= 15 ? "0" + Integer.toHexString(_subAddr) : Integer.toHexString(_subAddr);
-		String command = _command <= 15 ? "0" + Integer.toHexString(_command) : Integer.toHexString(_command);
-		String length = _length <= 15 ? "0" + Integer.toHexString(_length) : Integer.toHexString(_length);
-		String data = Integer.toHexString(_data).length() % 2 != 0 ? "0" + Integer.toHexString(_data)
-				: Integer.toHexString(_data);
-		commandPacket = header + address + sub_addr + command + length;
-
-		// If the length is non-zero, then append the data
-		if (_length != 0) {
-			// Make sure the data has any necessary leading zeros
-			if (data.length() / 2 != _length) {
-				int leading_zero_byes = _length - (data.length() / 2);
-				for (int i = 0; i < leading_zero_byes; i++) {
-					data = "00" + data;
-				}
+		cmdAsync(addr, _subAddr, _command, _length, _data, getResponse);
+	}
+	
+	/**
+	 * An NMX command whose data segment is built with a {@link Payload}. This is used for
+	 * commands that carry several fields, such as a direction byte followed by steps.
+	 * 
+	 * @param sub_addr
+	 *            The sub-address indicates which type of command is being sent.
+	 *            0 - General command, 1-3 - command to specific motor, 4 -
+	 *            camera command, 5 - key frame command;
+	 * @param command
+	 *            NMX command number (DEC)
+	 * @param payload
+	 *            Data to be included in the packet; its length is used as the packet length
+	 * @param response
+	 *            If this parameter is false, the program will not wait for a
+	 *            response from the NMX
+	 */
+	public static void cmd(int addr, int subAddr, int command, Payload payload, boolean getResponse) {
+		cmdAsync(addr, subAddr, command, payload, getResponse);
+	}
+	
+	/**
+	 * Same as {@link #cmd(int, int, int, int, int, boolean)}, but returns a future that is 
+	 * completed with the response frame once it arrives. If no response arrives within the 
+	 * response delay the future fails with an {@link NMXTimeoutException}. This never blocks.
+	 */
+	public static CompletableFuture<Frame> cmdAsync(int addr, int subAddr, int command, int length, int data, boolean getResponse) {
+		return NMXSession.getDefault().cmdAsync(addr, subAddr, command, length, data, getResponse);
+	}
+	
+	/**
+	 * Same as {@link #cmd(int, int, int, Payload, boolean)}, but returns a future that is 
+	 * completed with the response frame once it arrives. See 
+	 * {@link #cmdAsync(int, int, int, int, int, boolean)}.
+	 */
+	public static CompletableFuture<Frame> cmdAsync(int addr, int subAddr, int command, Payload payload, boolean getResponse) {
+		return NMXSession.getDefault().cmdAsync(addr, subAddr, command, payload, getResponse);
+	}
+	
+	/**
+	 * Builds a request using the calling thread's options for its next command, see
+	 * {@link #setResponseDelay(int)} and {@link #setManualData(String)}
+	 */
+	static Request newRequest(int addr, int subAddr, int command, int length, int data, boolean getResponse) {
+		// Any manual data (used for a few commands that require a direction byte and steps
+		// in the same packet) goes ahead of the data
+		byte[] prefix = null;
+		if (length != 0) {
+			Payload manual = manualData.get();
+			if (manual.length() > 0) {
+				prefix = manual.toByteArray();
+				manual.clear();
 			}
-			// Append manual data (this is used for a few commands that require a direction byte and steps in the same packet)
-			commandPacket += manualData;
-			// Append to the packet
-			commandPacket += data;
-			manualData = "";			
 		}
-		
-		// Set command ready flag to trigger command thread		
-		sendingCommand = true;
+		return new Request(addr, subAddr, command, length, data, prefix, getResponse, takeResponseDelay(getResponse));
+	}
+	
+	/**
+	 * Builds a payload request using the calling thread's response delay option
+	 */
+	static Request newRequest(int addr, int subAddr, int command, Payload payload, boolean getResponse) {
+		return new Request(addr, subAddr, command, payload, getResponse, takeResponseDelay(getResponse));
+	}
+	
+	/**
+	 * @return The response timeout for the calling thread's next command, or 0 to leave it to
+	 * the session. Any delay set with {@link #setResponseDelay(int)} only applies to that one command.
+	 */
+	private static int takeResponseDelay(boolean getResponse) {
+		Integer delay = nextResponseDelay.get();
+		nextResponseDelay.remove();
+		if (delay != null && delay > 0) {
+			return delay;
+		}
+		return getResponse ? 0 : ResponseTiming.NO_RESPONSE;
 	}
 
 	
@@ -228,160 +276,7 @@ class NMXComs {
 	}
 	
 	public static int getEmptyResponseCount(){
-		return emptyResponseCount;
-	}
-
-	/**
-	 * This method extracts any value passed from the controller in its response packet.
-	 * It should not be called until enough time has elapsed since sending the last command
-	 * for the command to finish executing on the controller side and to send a complete
-	 * response packet. The timing may vary from command to command, so the timing delay may
-	 * be adjusted with the setTimingDelay() method.
-	 */
-	private static void parseResponse() {		
-		
-		if(!responseOn){
-			responseVal = ERROR;
-			return;
-		}
-
-		if(serialDetail)
-			System.out.println("Response before parsing: " + response);
-		
-		// This is an "OK" confirmation code, ignore it
-		if(response.equals("0000000000ff00000100"))
-			return;
-		if(response.equals("")){
-			System.out.println("Empty response!");
-			responseVal = ERROR;
-			emptyResponseCount++;
-			return;
-		}
-		emptyResponseCount = 0;
-
-		// int length = Integer.decode("0x" + response.substring(18, 20));
-		int data_type = 7;
-		long data = ERROR;
-		try {
-			data_type = Integer.decode("0x" + response.substring(20, 22));
-			try {
-				data = Long.decode("0x" + response.substring(22, response.length()));
-				try {
-					// Handle negative longs
-					if (data_type == 3 && Integer.decode("0x" + response.substring(22, 24)) == 255)
-						data = data - Long.decode("0xffffffff");
-				} catch (NumberFormatException e) {
-					System.out.println("Error handling negative data value");
-				}
-
-			} catch (NumberFormatException e) {
-				System.out.println("Error parsing response: " + response);
-			}
-		} catch (NumberFormatException e) {
-			System.out.println("Error parsing data type: " + response);
-		} catch (StringIndexOutOfBoundsException e) {
-			if(serialDetail)
-				System.out.println("Out of bounds!!!");
-		}
-		
-		responseVal = (int) data;
+		return NMXSession.getDefault().getEmptyResponseCount();
 	}
 	
-	
-	// ******** Command Monitoring Thread ******** // 
-	
-	/**
-	 * This class is a thread that handles the timing of sending commands to
-	 * the NMX controller. In order to avoid lagging of the UI on the EventDispach
-	 * thread, waiting for responses from the controller is handled here. 
-	 * @author Michael
-	 *
-	 */
-	private static class CommandThread
-	implements Runnable{
-		
-		volatile boolean execute;		
-		
-		public void run(){
-			execute = true;
-			while(execute){
-				
-				// Wait a while before checking if there a command is to be sent
-				try{					
-					Thread.sleep(2);					
-				} catch (InterruptedException e) {
-					System.out.println("NMX Command thread interrupted!");
-					e.printStackTrace();
-				}	
-				
-				if(sendingCommand){					
-					
-					if(serialDetail)
-						ThreadManagement.message("******************************************************");
-					
-					// Print the command being sent
-					if(serialDetail)					
-						ThreadManagement.message("Command out: " + commandPacket);
-	
-					// Convert hex string to byte array and send to NMX
-					byte[] outCommand = hexStringToByteArray(commandPacket);
-					
-					serial.write(outCommand);
-					
-					// Log the command time
-					long commandTime = System.currentTimeMillis();
-					if(serialDetail)
-						ThreadManagement.message("Time since last command: " + (commandTime-lastCommandTime)  + "ms");
-					lastCommandTime = commandTime;
-					
-					if(responseDelay == ResponseTiming.EEPROM || responseDelay == ResponseTiming.LONG_WAIT){
-						// If the the timing has been set an allowable alternate value, don't change it
-					}
-					else if(responseOn){						
-						responseDelay = ResponseTiming.DEFAULT;
-					}
-					else if(!responseOn){
-						//ThreadManagement.message("Not waiting for response");
-						responseDelay = ResponseTiming.NO_RESPONSE;
-					}
-					
-					// Wait for response
-					try {
-						Thread.sleep(responseDelay);
-					} catch (InterruptedException e) {
-						ThreadManagement.message("NMX Command thread interrupted!");
-						e.printStackTrace();
-					}				
-					
-					// Change the response delay back to the default
-					responseDelay = ResponseTiming.DEFAULT;
-										
-					// Retrieve response buffer					
-					int size = serial.available();				
-					int[] inByte = new int[size];
-					
-					// Clear old response string and populate with chars from buffer
-					response = "";
-					for (int i = 0; i < inByte.length; i++) {
-						inByte[i] = serial.read();
-						String debug = inByte[i] <= 15 ? "0" + Integer.toHexString(inByte[i]) : Integer.toHexString(inByte[i]);
-						response = response + debug;
-					}			
-					// Extract the data from the response packet					
-					parseResponse();
-					
-					if(serialDetail)
-						ThreadManagement.message("******************************************************");
-					
-					// Cancel the command sending condition 
-					sendingCommand = false;
-					
-					// Unlock the NMX communications class
-					NMXComsBusy = false;
-				}
-				
-			}				
-		};
-	}
-
 }
@@ -0,0 +1,95 @@
+package com.dynamicperception.nmx;
+
+/**
+ * One controller on an {@link NMXSession}'s port. Several controllers can be daisy-chained
+ * on the same port and driven at once from different threads; the session sends their
+ * commands in turn. Obtain one with {@link NMXSession#controller(int)}.
+ * <p>
+ * Commands are sent through the typed command classes, e.g. <code>motor(0).setSpeed(500f)</code>,
+ * or by name through a {@link #batch()}, which also sends them without waiting.
+ */
+public final class NMXController {
+
+	private final NMXSession session;
+	private final int addr;
+	// Typed command classes, created on first use. They are immutable, so a race only 
+	// costs an extra object.
+	private GeneralCommands general;
+	private final MotorCommands[] motors = new MotorCommands[Command.MOTOR_COUNT];
+	private CameraCommands camera;
+	private KeyFrameCommands keyFrame;
+
+	NMXController(NMXSession session, int addr){
+		this.session = session;
+		this.addr = addr;
+	}
+
+	public NMXSession getSession(){
+		return session;
+	}
+
+	public int getAddr(){
+		return addr;
+	}
+
+	/**
+	 * See {@link NMXSession#setControllerWeight(int, int)}
+	 * @param weight Number of commands sent in a row while other controllers are waiting
+	 */
+	public void setWeight(int weight){
+		session.setControllerWeight(addr, weight);
+	}
+
+	/**
+	 * @return Traffic statistics for this controller, or null if no command has been sent to it
+	 */
+	public ControllerStats getStats(){
+		return session.getControllerStats(addr);
+	}
+
+	/**
+	 * @return Typed methods for the general commands, e.g. <code>general().getFirmware()</code>
+	 */
+	public GeneralCommands general(){
+		if(general == null)
+			general = new GeneralCommands(session, addr, 0);
+		return general;
+	}
+
+	/**
+	 * @param motor Motor number, counted from 0 as with {@link Command#execute(String, int, int)}
+	 * @return Typed methods for the motor's commands, e.g. <code>motor(0).setSpeed(500f)</code>
+	 */
+	public MotorCommands motor(int motor){
+		if(motor < 0 || motor >= motors.length)
+			throw new IllegalArgumentException("Invalid motor number: " + motor);
+		if(motors[motor] == null)
+			motors[motor] = new MotorCommands(session, addr, motor + 1);
+		return motors[motor];
+	}
+
+	/**
+	 * @return Typed methods for the camera commands, e.g. <code>camera().setInterval(2000)</code>
+	 */
+	public CameraCommands camera(){
+		if(camera == null)
+			camera = new CameraCommands(session, addr, 4);
+		return camera;
+	}
+
+	/**
+	 * @return Typed methods for the key frame commands
+	 */
+	public KeyFrameCommands keyFrame(){
+		if(keyFrame == null)
+			keyFrame = new KeyFrameCommands(session, addr, 5);
+		return keyFrame;
+	}
+
+	/**
+	 * @return An empty batch of commands for this controller, see {@link Command.Batch}
+	 */
+	public Command.Batch batch(){
+		return new Command.Batch(session, addr);
+	}
+}
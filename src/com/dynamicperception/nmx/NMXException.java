@@ -0,0 +1,18 @@
+package com.dynamicperception.nmx;
+
+/**
+ * Thrown, or used to complete a future exceptionally, when a command could not be carried
+ * out by the NMX controller.
+ */
+public class NMXException extends RuntimeException {
+
+	private static final long serialVersionUID = 1L;
+
+	public NMXException(String message){
+		super(message);
+	}
+
+	public NMXException(String message, Throwable cause){
+		super(message, cause);
+	}
+}
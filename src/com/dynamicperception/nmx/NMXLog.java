@@ -0,0 +1,180 @@
+package com.dynamicperception.nmx;
+
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Asynchronous console output for the serial trace and the command methods. Messages are put
+ * in a fixed-size queue and printed by a daemon thread, so neither callers nor the command
+ * thread wait on the console. When the queue is full new messages are dropped and counted
+ * rather than blocking. All of the library's console output goes through here, so it comes
+ * out in the order it was logged. Shutting a session down waits for the queue to be printed,
+ * and whatever is still queued is printed when the JVM exits.
+ */
+public final class NMXLog {
+
+	private static final String THREAD_NAME = "NMX Log";
+	private static final int CAPACITY = 4096;
+	// Longest a shutdown waits for the queue to be printed
+	private static final long SHUTDOWN_FLUSH_MILLIS = 1000;
+
+	private static final BlockingQueue<String> queue = new ArrayBlockingQueue<String>(CAPACITY);
+	private static final AtomicLong queued = new AtomicLong();
+	private static final AtomicLong dropped = new AtomicLong();
+	private static final Object printedLock = new Object();
+	private static long printed = 0;
+
+	private static volatile PrintStream out = System.out;
+	private static volatile Thread writer;
+
+	private NMXLog(){
+	}
+
+	/**
+	 * @param stream Where messages are printed from now on; System.out by default
+	 */
+	public static void setOutput(PrintStream stream){
+		if(stream == null)
+			throw new IllegalArgumentException("The log output may not be null");
+		out = stream;
+	}
+
+	/**
+	 * @return Number of messages dropped because the queue was full
+	 */
+	public static long getDroppedCount(){
+		return dropped.get();
+	}
+
+	/**
+	 * Waits until every message logged so far has been printed
+	 */
+	public static void flush() throws InterruptedException {
+		long target = queued.get();
+		synchronized(printedLock){
+			while(printed < target){
+				printedLock.wait();
+			}
+		}
+	}
+
+	/**
+	 * Waits for the messages logged so far to be printed, but no longer than
+	 * {@link #SHUTDOWN_FLUSH_MILLIS}; used when a session is shut down
+	 */
+	static void flushOnShutdown(){
+		long target = queued.get();
+		long deadline = System.currentTimeMillis() + SHUTDOWN_FLUSH_MILLIS;
+		synchronized(printedLock){
+			long wait;
+			while(printed < target && (wait = deadline - System.currentTimeMillis()) > 0){
+				try {
+					printedLock.wait(wait);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					return;
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return A listener that logs every command event of the sessions it is added to
+	 */
+	public static CommandListener listener(){
+		return new CommandListener() {
+			@Override
+			public void commandSent(int addr, int subAddr, int command) {
+				message("Sent " + describe(addr, subAddr, command));
+			}
+
+			@Override
+			public void responseReceived(int addr, int subAddr, int command, long latencyNanos) {
+				message("Response to " + describe(addr, subAddr, command) + " after " + latencyNanos / 1000 + "us");
+			}
+
+			@Override
+			public void commandFailed(int addr, int subAddr, int command, NMXException failure) {
+				message("Failed " + describe(addr, subAddr, command) + ": " + failure.getMessage());
+			}
+
+			@Override
+			public void commandTimedOut(int addr, int subAddr, int command, long waitedNanos) {
+				message("No response to " + describe(addr, subAddr, command) + " after " + waitedNanos / 1000000 + "ms");
+			}
+		};
+	}
+
+	private static String describe(int addr, int subAddr, int command){
+		return Command.getCommandName(subAddr, command) + " (" + addr + "/" + subAddr + "/" + command + ")";
+	}
+
+	/**
+	 * Logs a message prefixed with the name of the calling thread
+	 */
+	static void message(String message){
+		log(Thread.currentThread().getName() + ": " + message);
+	}
+
+	/**
+	 * Logs a message as it is
+	 */
+	static void log(String message){
+		if(writer == null)
+			start();
+		if(queue.offer(message))
+			queued.incrementAndGet();
+		else
+			dropped.incrementAndGet();
+	}
+
+	/**
+	 * Logs an exception with its stack trace
+	 */
+	static void log(Throwable e){
+		StringWriter trace = new StringWriter();
+		e.printStackTrace(new PrintWriter(trace));
+		log(trace.toString().trim());
+	}
+
+	private static synchronized void start(){
+		if(writer != null)
+			return;
+		Thread thread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				while(true){
+					try {
+						print(queue.take());
+					} catch (InterruptedException e) {
+						return;
+					}
+				}
+			}
+		}, THREAD_NAME);
+		thread.setDaemon(true);
+		thread.start();
+		Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+			@Override
+			public void run() {
+				String message;
+				while((message = queue.poll()) != null){
+					print(message);
+				}
+			}
+		}, THREAD_NAME));
+		writer = thread;
+	}
+
+	private static void print(String message){
+		out.println(message);
+		synchronized(printedLock){
+			printed++;
+			printedLock.notifyAll();
+		}
+	}
+}
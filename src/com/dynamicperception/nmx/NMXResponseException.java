@@ -0,0 +1,13 @@
+package com.dynamicperception.nmx;
+
+/**
+ * The controller answered a command, but the response could not be turned into a value.
+ */
+public class NMXResponseException extends NMXException {
+
+	private static final long serialVersionUID = 1L;
+
+	public NMXResponseException(String message){
+		super(message);
+	}
+}
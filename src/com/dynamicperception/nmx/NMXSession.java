@@ -0,0 +1,1329 @@
+package com.dynamicperception.nmx;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * A connection to the NMX controllers on one serial port. Each session has its own port,
+ * request queue and command thread, so one program can drive several rigs on separate
+ * USB serial adapters at the same time:
+ * <pre>
+ * NMXSession left = NMXSession.open("/dev/ttyACM0");
+ * NMXSession right = NMXSession.open("/dev/ttyACM1");
+ * left.execute(Names.Motor.SET_SPEED, 1, 500f);
+ * right.execute(Names.Motor.SET_SPEED, 1, 500f);
+ * </pre>
+ * The static methods of {@link Command} and {@link NMXComs} use the default session, which
+ * is the one {@link Serial#getInstance()} connects to.
+ */
+public class NMXSession {
+
+	private static final String THREAD_NAME = "NMX Command Thread";
+
+	// Most responses kept waiting for the command thread; any more are late and dropped
+	private static final int RESPONSE_CAPACITY = 256;
+
+	private static final CommandListener[] NO_LISTENERS = new CommandListener[0];
+
+	// Longest a stopped command thread is waited for before its queues and port are reused
+	private static final long STOP_TIMEOUT_MILLIS = NMXComs.ResponseTiming.LONG_WAIT;
+
+	// Sessions are numbered to give their MBeans unique names
+	private static final AtomicInteger sessionCount = new AtomicInteger();
+
+	private static volatile NMXSession defaultSession;
+
+	private final ThreadFactory threadFactory;
+
+	// Link to the controllers
+	private Transport transport;
+	// Whether the port was opened by this session and should be closed with it
+	private boolean ownsTransport = false;
+	private volatile boolean closed = false;
+
+	// Address of the controller that commands are sent to
+	private volatile int addr = 3;
+
+	// Command handling thread
+	private Thread commandThread;
+	private CommandThread commandRunner;
+
+	// State monitoring
+	private long lastCommandTime = 0;
+	private volatile Request inFlight = null;
+	private final AtomicInteger pendingCount = new AtomicInteger();
+
+	// Commands waiting for the command thread, queued by controller address. Each request 
+	// carries its own packet, options and result, so any number of threads may submit commands
+	// at once.
+	private final BusScheduler requests = new BusScheduler();
+
+	// Number of commands that may be written before their responses arrive
+	private volatile int pipelineWindow = 1;
+
+	// Response timeouts learned from the controllers' response times
+	private final ResponseDeadlines deadlines = new ResponseDeadlines();
+	private volatile boolean adaptiveTimeouts = true;
+
+	// Longest the command thread waits for more commands to gather into one write
+	private volatile long coalesceNanos = 0;
+
+	// Response handling
+	private final ResponseQueue responses = new ResponseQueue(RESPONSE_CAPACITY);
+	private volatile int emptyResponseCount = 0;
+
+	// Statistics. The decoder is replaced along with the transport, so the counts of the
+	// ones before it are kept.
+	private final int id = sessionCount.incrementAndGet();
+	private final SessionMetrics metrics = new SessionMetrics();
+	private FrameDecoder decoder;
+	private ResponseListener responseListener;
+	private long retiredBytesReceived = 0;
+	private long retiredResyncs = 0;
+	private ObjectName mbeanName;
+
+	// Replaced as a whole when a listener is added or removed, so the command thread only 
+	// has to check the length when there are none
+	private volatile CommandListener[] listeners = NO_LISTENERS;
+
+	/**
+	 * Creates a session without a port. Commands may be submitted straight away; they are
+	 * sent once a port is attached.
+	 */
+	public NMXSession(){
+		this(null);
+	}
+
+	/**
+	 * @param threadFactory Creates the session's command thread, e.g. a virtual thread
+	 * factory on JDKs that have them. Null gives a plain platform thread.
+	 */
+	public NMXSession(ThreadFactory threadFactory){
+		this.threadFactory = threadFactory;
+	}
+
+	/**
+	 * @return The session used by the static methods of {@link Command} and {@link NMXComs}
+	 */
+	public static NMXSession getDefault(){
+		if(defaultSession == null){
+			synchronized(NMXSession.class){
+				if(defaultSession == null){
+					defaultSession = new NMXSession();
+				}
+			}
+		}
+		return defaultSession;
+	}
+
+	/**
+	 * Opens a serial port at the default baud rate and starts a session on it
+	 * @param portName e.g. "COM3" or "/dev/ttyACM0"
+	 */
+	public static NMXSession open(String portName){
+		return open(portName, (ThreadFactory) null);
+	}
+
+	/**
+	 * Opens a serial port and starts a session on it
+	 * @param portName e.g. "COM3" or "/dev/ttyACM0"
+	 * @param baudRate Baud rate of the port
+	 */
+	public static NMXSession open(String portName, int baudRate){
+		return open(portName, baudRate, null);
+	}
+
+	/**
+	 * Opens a serial port at the default baud rate and starts a session on it
+	 * @param threadFactory See {@link #NMXSession(ThreadFactory)}
+	 */
+	public static NMXSession open(String portName, ThreadFactory threadFactory){
+		Serial serial = Serial.createDetached();
+		serial.openPort(portName);
+		return attach(serial, threadFactory);
+	}
+
+	/**
+	 * Opens a serial port and starts a session on it
+	 * @param threadFactory See {@link #NMXSession(ThreadFactory)}
+	 */
+	public static NMXSession open(String portName, int baudRate, ThreadFactory threadFactory){
+		Serial serial = Serial.createDetached();
+		serial.openPort(portName, baudRate);
+		return attach(serial, threadFactory);
+	}
+
+	/**
+	 * Starts a session on an open transport, e.g. a {@link LinuxTtyTransport}. The transport
+	 * is closed along with the session.
+	 */
+	public static NMXSession open(Transport transport){
+		return attach(transport, null);
+	}
+
+	/**
+	 * Starts a session on an open transport. The transport is closed along with the session.
+	 * @param threadFactory See {@link #NMXSession(ThreadFactory)}
+	 */
+	public static NMXSession open(Transport transport, ThreadFactory threadFactory){
+		return attach(transport, threadFactory);
+	}
+
+	private static NMXSession attach(Transport transport, ThreadFactory threadFactory){
+		NMXSession session = new NMXSession(threadFactory);
+		session.setTransport(transport);
+		session.ownsTransport = true;
+		return session;
+	}
+
+	// ******** Setters and Getters ******** //
+
+	/**
+	 * Sets the link for this session to send commands over and starts the command thread.
+	 * The session does not close a transport set this way.
+	 */
+	public synchronized void setTransport(Transport transport){
+		// Only one command thread may take requests off the queue
+		stopCommandThread();
+		detachTransport();
+		this.transport = transport;
+		ownsTransport = false;
+		// Anything the old decoder delivered belongs to the old thread's requests
+		responses.clear();
+		responseListener = new ResponseListener();
+		decoder = new FrameDecoder(responseListener);
+		transport.setReceiver(decoder);
+		commandRunner = new CommandThread(transport);
+		commandThread = threadFactory == null ? new Thread(commandRunner, threadName(transport)) : threadFactory.newThread(commandRunner);
+		commandThread.start();
+	}
+
+	/**
+	 * Sets the serial object for this session to use and starts the command thread
+	 */
+	void setSerial(Serial serial){
+		setTransport(serial);
+	}
+
+	private static String threadName(Transport transport){
+		String name = transport.getName();
+		return name == null ? THREAD_NAME : THREAD_NAME + " (" + name + ")";
+	}
+
+	/**
+	 * @return The link this session sends commands over, or null if none is attached
+	 */
+	public synchronized Transport getTransport(){
+		return transport;
+	}
+
+	/**
+	 * @return The serial object this session sends commands through, or null if none is 
+	 * attached or the session uses another kind of transport
+	 */
+	public synchronized Serial getSerial(){
+		return transport instanceof Serial ? (Serial) transport : null;
+	}
+
+	/**
+	 * @param addr Address of the controller that commands are sent to
+	 */
+	public void setAddr(int addr){
+		this.addr = addr;
+	}
+
+	public int getAddr(){
+		return addr;
+	}
+
+	/**
+	 * Gives access to one of several controllers daisy-chained on this session's port,
+	 * without changing the session's address:
+	 * <pre>
+	 * NMXController first = session.controller(3);
+	 * NMXController second = session.controller(4);
+	 * </pre>
+	 * Commands to different controllers are sent in turn, see
+	 * {@link #setControllerWeight(int, int)}.
+	 * @param addr Address of the controller
+	 */
+	public NMXController controller(int addr){
+		return new NMXController(this, addr);
+	}
+
+	/**
+	 * Sets how many commands to a controller are sent in a row while other controllers 
+	 * on the port have commands waiting. Every controller has a weight of 1 by default,
+	 * so they take turns one command at a time.
+	 * @param addr Address of the controller
+	 * @param weight Number of commands per turn
+	 */
+	public void setControllerWeight(int addr, int weight){
+		requests.setWeight(addr, weight);
+	}
+
+	/**
+	 * @return Traffic statistics for a controller address, or null if no command has 
+	 * been sent to it
+	 */
+	public ControllerStats getControllerStats(int addr){
+		return requests.getStats(addr);
+	}
+
+	/**
+	 * @return Traffic statistics for every controller address that has been sent to
+	 */
+	public List<ControllerStats> getControllerStats(){
+		return requests.getStats();
+	}
+
+	/**
+	 * @return Latency histograms and traffic counts for the commands this session has sent,
+	 * by command and by controller
+	 */
+	public synchronized SessionStats getStats(){
+		long bytesReceived = retiredBytesReceived;
+		long resyncs = retiredResyncs;
+		if(decoder != null){
+			bytesReceived += decoder.getByteCount();
+			resyncs += decoder.getResyncCount();
+		}
+		return new SessionStats(transport == null ? null : transport.getName(), metrics.getBytesWritten(),
+				bytesReceived, resyncs, metrics.getCommands(), metrics.getControllers());
+	}
+
+	/**
+	 * Registers the session's statistics with the platform MBean server, as
+	 * <code>com.dynamicperception.nmx:type=NMXSession,id=1</code>, so they can be watched with
+	 * JConsole or any other JMX client. The MBean is unregistered when the session is closed.
+	 * @return The name of the MBean
+	 * @throws NMXException If the MBean cannot be registered
+	 */
+	public synchronized ObjectName registerMBean(){
+		if(mbeanName != null)
+			return mbeanName;
+		try {
+			ObjectName name = new ObjectName("com.dynamicperception.nmx:type=NMXSession,id=" + id);
+			ManagementFactory.getPlatformMBeanServer().registerMBean(new LiveStats(), name);
+			mbeanName = name;
+			return name;
+		} catch (JMException e) {
+			throw new NMXException("Error registering the session MBean: " + e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Unregisters the MBean registered by {@link #registerMBean()}, if there is one
+	 */
+	public synchronized void unregisterMBean(){
+		if(mbeanName == null)
+			return;
+		try {
+			ManagementFactory.getPlatformMBeanServer().unregisterMBean(mbeanName);
+		} catch (JMException e) {
+			// Already gone
+		}
+		mbeanName = null;
+	}
+
+	/**
+	 * Reads every attribute from a fresh snapshot
+	 */
+	private class LiveStats
+	implements SessionStatsMXBean{
+		@Override
+		public String getPort(){
+			return getStats().getPort();
+		}
+
+		@Override
+		public long getBytesWritten(){
+			return getStats().getBytesWritten();
+		}
+
+		@Override
+		public long getBytesReceived(){
+			return getStats().getBytesReceived();
+		}
+
+		@Override
+		public long getResyncs(){
+			return getStats().getResyncs();
+		}
+
+		@Override
+		public long getCompleted(){
+			return getStats().getCompleted();
+		}
+
+		@Override
+		public long getTimeouts(){
+			return getStats().getTimeouts();
+		}
+
+		@Override
+		public long getFailed(){
+			return getStats().getFailed();
+		}
+
+		@Override
+		public Map<String, TimingStats> getCommands(){
+			return getStats().getCommands();
+		}
+
+		@Override
+		public Map<Integer, TimingStats> getControllers(){
+			return getStats().getControllers();
+		}
+	}
+
+	/**
+	 * See {@link NMXComs#setPipelineWindow(int)}
+	 * @param size Maximum number of commands in flight
+	 */
+	public void setPipelineWindow(int size){
+		if(size < 1)
+			throw new IllegalArgumentException("The pipeline window must hold at least one command");
+		pipelineWindow = size;
+	}
+
+	/**
+	 * Sets whether response timeouts are learned from how long each command takes to answer,
+	 * which is the default. A command's timeout is then twice the 99.9th percentile of its
+	 * response times plus a few milliseconds, but never less than
+	 * {@link NMXComs.ResponseTiming#DEFAULT}, so slow commands such as EEPROM writes always
+	 * get the time they need. Timeouts set with
+	 * {@link NMXComs#setResponseDelay(int)} are used as they are either way. Without learning
+	 * every command waits up to {@link NMXComs.ResponseTiming#DEFAULT}.
+	 */
+	public void setAdaptiveTimeouts(boolean enabled){
+		adaptiveTimeouts = enabled;
+	}
+
+	/**
+	 * @param subAddr Sub-address the command is sent to, e.g. 1 for the first motor
+	 * @param command Command number
+	 * @return How long the command thread currently waits for the response to a command
+	 * that was not given a response delay of its own
+	 */
+	public long getResponseTimeout(int subAddr, int command, TimeUnit unit){
+		return unit.convert(timeoutNanos(subAddr, command), TimeUnit.NANOSECONDS);
+	}
+
+	private long timeoutNanos(int subAddr, int command){
+		if(!adaptiveTimeouts)
+			return TimeUnit.MILLISECONDS.toNanos(NMXComs.ResponseTiming.DEFAULT);
+		return deadlines.timeoutNanos(subAddr, command);
+	}
+
+	/**
+	 * @return How long to wait for the response to a request
+	 */
+	private long timeoutNanos(Request request){
+		if(request.timeout > 0)
+			return TimeUnit.MILLISECONDS.toNanos(request.timeout);
+		return timeoutNanos(request.subAddr, request.command);
+	}
+
+	/**
+	 * @return Whether a request must be the only one in flight, including requests learned to
+	 * take longer than usual to answer
+	 */
+	private boolean isStopAndWait(Request request){
+		return request.stopAndWait || (request.timeout == 0
+				&& timeoutNanos(request.subAddr, request.command) > TimeUnit.MILLISECONDS.toNanos(NMXComs.ResponseTiming.DEFAULT));
+	}
+
+	/**
+	 * Sets how long the command thread may hold back a write while waiting for more commands
+	 * that could be sent in the same write. Commands that can share the pipeline window are
+	 * always gathered into a single write to the port when they are already queued; a delay
+	 * also catches commands submitted in quick succession, at the cost of up to that much
+	 * extra latency. The default of 0 never waits.
+	 * @param delay Longest wait, 0 to never wait
+	 */
+	public void setMaxCoalesceDelay(long delay, TimeUnit unit){
+		if(delay < 0)
+			throw new IllegalArgumentException("The coalescing delay may not be negative");
+		coalesceNanos = unit.toNanos(delay);
+	}
+
+	/**
+	 * See {@link NMXComs#isBusy()}
+	 * @return Whether any submitted command has not been completed yet
+	 */
+	public boolean isBusy(){
+		return pendingCount.get() > 0;
+	}
+
+	/**
+	 * Registers a listener for the lifecycle events of every command this session sends
+	 */
+	public synchronized void addListener(CommandListener listener){
+		if(listener == null)
+			throw new IllegalArgumentException("The listener may not be null");
+		CommandListener[] current = listeners;
+		CommandListener[] updated = new CommandListener[current.length + 1];
+		System.arraycopy(current, 0, updated, 0, current.length);
+		updated[current.length] = listener;
+		listeners = updated;
+	}
+
+	/**
+	 * Unregisters a listener; nothing happens if it was not registered
+	 */
+	public synchronized void removeListener(CommandListener listener){
+		CommandListener[] current = listeners;
+		for(int i = 0; i < current.length; i++){
+			if(current[i] == listener){
+				CommandListener[] updated = current.length == 1 ? NO_LISTENERS : new CommandListener[current.length - 1];
+				System.arraycopy(current, 0, updated, 0, i);
+				System.arraycopy(current, i + 1, updated, i, current.length - i - 1);
+				listeners = updated;
+				return;
+			}
+		}
+	}
+
+	/**
+	 * See {@link NMXComs#isSendingCommand()}
+	 * @return Whether the command thread is busy
+	 */
+	public boolean isSendingCommand(){
+		return inFlight != null;
+	}
+
+	public int getEmptyResponseCount(){
+		return emptyResponseCount;
+	}
+
+	/**
+	 * Looks up a command in the registry, see {@link Command#get(String)}
+	 */
+	public Command getCommand(String name){
+		return Command.get(name);
+	}
+
+	// ******** Lifecycle ******** //
+
+	/**
+	 * Stops the command thread. Commands that have not been sent yet fail with an
+	 * {@link NMXException}; commands submitted afterwards wait until a new serial object
+	 * is set. Returns once the messages logged so far have been printed.
+	 */
+	public synchronized void shutdown(){
+		stopCommandThread();
+		failQueued("NMX communications have been shut down");
+		NMXLog.flushOnShutdown();
+	}
+
+	/**
+	 * Shuts the session down and closes its port if the session opened it. Commands
+	 * submitted afterwards fail straight away.
+	 */
+	public synchronized void close(){
+		closed = true;
+		shutdown();
+		unregisterMBean();
+		if(transport != null){
+			detachTransport();
+			if(ownsTransport)
+				transport.close();
+		}
+		transport = null;
+	}
+
+	/**
+	 * Stops the command thread and waits for it to finish, so that it is no longer using the
+	 * port or the session's queues and statistics when they are handed to another thread or
+	 * the port is closed. A thread stuck in a write is given up on after
+	 * {@link #STOP_TIMEOUT_MILLIS}.
+	 */
+	private void stopCommandThread(){
+		if(commandRunner == null)
+			return;
+		Thread stopping = commandThread;
+		commandRunner.execute = false;
+		stopping.interrupt();
+		commandRunner = null;
+		commandThread = null;
+
+		// A listener may shut the session down from the command thread itself
+		if(stopping == Thread.currentThread())
+			return;
+		try {
+			stopping.join(STOP_TIMEOUT_MILLIS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		if(stopping.isAlive())
+			NMXLog.message("NMX command thread did not stop within " + STOP_TIMEOUT_MILLIS + "ms");
+	}
+
+	/**
+	 * Stops the current port delivering to this session and keeps the counts of its decoder
+	 */
+	private void detachTransport(){
+		if(decoder == null)
+			return;
+		transport.setReceiver(null);
+		responseListener.detached = true;
+		retiredBytesReceived += decoder.getByteCount();
+		retiredResyncs += decoder.getResyncCount();
+		decoder = null;
+		responseListener = null;
+	}
+
+	private void failQueued(String message){
+		for(Request request : requests.clear()){
+			NMXException failure = new NMXException(message);
+			requests.finished(request, failure);
+			pendingCount.decrementAndGet();
+			CommandListener[] current = listeners;
+			if(current.length != 0)
+				fireFailure(current, request, failure);
+			request.response.completeExceptionally(failure);
+		}
+	}
+
+	// ******** Command Events ******** //
+	// A listener that throws is logged and skipped, so it cannot stop the command thread
+
+	private static void fireSent(CommandListener[] listeners, Request request){
+		for(CommandListener listener : listeners){
+			try {
+				listener.commandSent(request.addr, request.subAddr, request.command);
+			} catch (RuntimeException e) {
+				listenerFailed(e);
+			}
+		}
+	}
+
+	private static void fireResponse(CommandListener[] listeners, Request request, long latencyNanos){
+		for(CommandListener listener : listeners){
+			try {
+				listener.responseReceived(request.addr, request.subAddr, request.command, latencyNanos);
+			} catch (RuntimeException e) {
+				listenerFailed(e);
+			}
+		}
+	}
+
+	private static void fireFailure(CommandListener[] listeners, Request request, NMXException failure){
+		for(CommandListener listener : listeners){
+			try {
+				listener.commandFailed(request.addr, request.subAddr, request.command, failure);
+			} catch (RuntimeException e) {
+				listenerFailed(e);
+			}
+		}
+	}
+
+	private static void fireTimeout(CommandListener[] listeners, Request request, long waitedNanos){
+		for(CommandListener listener : listeners){
+			try {
+				listener.commandTimedOut(request.addr, request.subAddr, request.command, waitedNanos);
+			} catch (RuntimeException e) {
+				listenerFailed(e);
+			}
+		}
+	}
+
+	private static void listenerFailed(RuntimeException e){
+		NMXLog.message("Command listener failed: " + e);
+	}
+
+	// ******** Command Execution ******** //
+
+	/**
+	 * See {@link Command#execute(String)}
+	 */
+	public <T>T execute(String name){
+		return Command.get(name).executeThis(this, addr);
+	}
+
+	public <T>T execute(String name, String dataOrMotor){
+		return Command.get(name).executeThis(this, addr, dataOrMotor);
+	}
+
+	public <T>T execute(String name, String motor, String data){
+		return Command.get(name).executeThis(this, addr, motor, data);
+	}
+
+	public <T>T execute(String name, boolean dataOrMotor){
+		return Command.get(name).executeThis(this, addr, dataOrMotor == true ? "1" : "0");
+	}
+
+	public <T>T execute(String name, int motor, boolean data){
+		return Command.get(name).executeThis(this, addr, Integer.toString(motor), data == true ? "1" : "0");
+	}
+
+	public <T>T execute(String name, int dataOrMotor){
+		return Command.get(name).executeThis(this, addr, Integer.toString(dataOrMotor));
+	}
+
+	public <T>T execute(String name, int motor, int data){
+		return Command.get(name).executeThis(this, addr, Integer.toString(motor), Integer.toString(data));
+	}
+
+	public <T>T execute(String name, float dataOrMotor){
+		return Command.get(name).executeThis(this, addr, Float.toString(dataOrMotor));
+	}
+
+	public <T>T execute(String name, int motor, float data){
+		return Command.get(name).executeThis(this, addr, Integer.toString(motor), Float.toString(data));
+	}
+
+	/**
+	 * See {@link Command#execute(String, Payload)}
+	 */
+	public <T>T execute(String name, Payload data){
+		Command command = Command.get(name);
+		return command.collectResponse(command.send(this, addr, data));
+	}
+
+	/**
+	 * See {@link Command#execute(String, int, Payload)}
+	 */
+	public <T>T execute(String name, int motor, Payload data){
+		Command command = Command.get(name);
+		return command.collectResponse(command.send(this, addr, Integer.toString(motor), data));
+	}
+
+	/**
+	 * See {@link Command#executeInt(String)}
+	 */
+	public int executeInt(String name){
+		Command command = Command.get(name);
+		return command.intValue(command.send(this, addr));
+	}
+
+	public int executeInt(String name, int dataOrMotor){
+		Command command = Command.get(name);
+		return command.intValue(command.send(this, addr, dataOrMotor));
+	}
+
+	public int executeInt(String name, float data){
+		Command command = Command.get(name);
+		return command.intValue(command.send(this, addr, data));
+	}
+
+	public int executeInt(String name, int motor, int data){
+		Command command = Command.get(name);
+		return command.intValue(command.send(this, addr, motor, data));
+	}
+
+	public int executeInt(String name, int motor, float data){
+		Command command = Command.get(name);
+		return command.intValue(command.send(this, addr, motor, data));
+	}
+
+	/**
+	 * See {@link Command#executeFloat(String)}
+	 */
+	public float executeFloat(String name){
+		Command command = Command.get(name);
+		return command.floatValue(command.send(this, addr));
+	}
+
+	public float executeFloat(String name, int dataOrMotor){
+		Command command = Command.get(name);
+		return command.floatValue(command.send(this, addr, dataOrMotor));
+	}
+
+	public float executeFloat(String name, float data){
+		Command command = Command.get(name);
+		return command.floatValue(command.send(this, addr, data));
+	}
+
+	public float executeFloat(String name, int motor, int data){
+		Command command = Command.get(name);
+		return command.floatValue(command.send(this, addr, motor, data));
+	}
+
+	public float executeFloat(String name, int motor, float data){
+		Command command = Command.get(name);
+		return command.floatValue(command.send(this, addr, motor, data));
+	}
+
+	/**
+	 * See {@link Command#executeBool(String)}
+	 */
+	public boolean executeBool(String name){
+		Command command = Command.get(name);
+		return command.boolValue(command.send(this, addr));
+	}
+
+	public boolean executeBool(String name, int dataOrMotor){
+		Command command = Command.get(name);
+		return command.boolValue(command.send(this, addr, dataOrMotor));
+	}
+
+	public boolean executeBool(String name, float data){
+		Command command = Command.get(name);
+		return command.boolValue(command.send(this, addr, data));
+	}
+
+	public boolean executeBool(String name, int motor, int data){
+		Command command = Command.get(name);
+		return command.boolValue(command.send(this, addr, motor, data));
+	}
+
+	public boolean executeBool(String name, int motor, float data){
+		Command command = Command.get(name);
+		return command.boolValue(command.send(this, addr, motor, data));
+	}
+
+	/**
+	 * See {@link Command#executeVoid(String)}
+	 */
+	public void executeVoid(String name){
+		Command command = Command.get(name);
+		command.awaitVoid(command.send(this, addr));
+	}
+
+	public void executeVoid(String name, int dataOrMotor){
+		Command command = Command.get(name);
+		command.awaitVoid(command.send(this, addr, dataOrMotor));
+	}
+
+	public void executeVoid(String name, float data){
+		Command command = Command.get(name);
+		command.awaitVoid(command.send(this, addr, data));
+	}
+
+	public void executeVoid(String name, int motor, int data){
+		Command command = Command.get(name);
+		command.awaitVoid(command.send(this, addr, motor, data));
+	}
+
+	public void executeVoid(String name, int motor, float data){
+		Command command = Command.get(name);
+		command.awaitVoid(command.send(this, addr, motor, data));
+	}
+
+	/**
+	 * See {@link Command#executeAsync(String)}
+	 */
+	public <T> CompletableFuture<T> executeAsync(String name){
+		Command command = Command.get(name);
+		return command.completeAsync(command.send(this, addr));
+	}
+
+	public <T> CompletableFuture<T> executeAsync(String name, int dataOrMotor){
+		Command command = Command.get(name);
+		return command.completeAsync(command.send(this, addr, Integer.toString(dataOrMotor)));
+	}
+
+	public <T> CompletableFuture<T> executeAsync(String name, int motor, int data){
+		Command command = Command.get(name);
+		return command.completeAsync(command.send(this, addr, Integer.toString(motor), Integer.toString(data)));
+	}
+
+	public <T> CompletableFuture<T> executeAsync(String name, float data){
+		Command command = Command.get(name);
+		return command.completeAsync(command.send(this, addr, Float.toString(data)));
+	}
+
+	public <T> CompletableFuture<T> executeAsync(String name, int motor, float data){
+		Command command = Command.get(name);
+		return command.completeAsync(command.send(this, addr, Integer.toString(motor), Float.toString(data)));
+	}
+
+	public <T> CompletableFuture<T> executeAsync(String name, Payload data){
+		Command command = Command.get(name);
+		return command.completeAsync(command.send(this, addr, data));
+	}
+
+	public <T> CompletableFuture<T> executeAsync(String name, int motor, Payload data){
+		Command command = Command.get(name);
+		return command.completeAsync(command.send(this, addr, Integer.toString(motor), data));
+	}
+
+	/**
+	 * @return An empty batch of commands for this session, see {@link Command.Batch}
+	 */
+	public Command.Batch batch(){
+		return new Command.Batch(this, addr);
+	}
+
+	// ******** Communications Methods ******** //
+
+	/**
+	 * See {@link NMXComs#cmdAsync(int, int, int, int, int, boolean)}
+	 */
+	CompletableFuture<Frame> cmdAsync(int addr, int subAddr, int command, int length, int data, boolean getResponse){
+		return submit(NMXComs.newRequest(addr, subAddr, command, length, data, getResponse));
+	}
+
+	/**
+	 * See {@link NMXComs#cmdAsync(int, int, int, Payload, boolean)}
+	 */
+	CompletableFuture<Frame> cmdAsync(int addr, int subAddr, int command, Payload payload, boolean getResponse){
+		return submit(NMXComs.newRequest(addr, subAddr, command, payload, getResponse));
+	}
+
+	/**
+	 * Queues a command to a controller, leaving alone any options the calling thread set for
+	 * its next command. This is how the typed command classes and batches send their commands.
+	 */
+	CompletableFuture<Frame> send(int addr, int subAddr, int command, int length, int data){
+		return submit(new Request(addr, subAddr, command, length, data, null, true, 0));
+	}
+
+	/**
+	 * Queues a request for the command thread
+	 * @return The request's response future
+	 */
+	private CompletableFuture<Frame> submit(Request request){
+		if(closed){
+			request.response.completeExceptionally(new NMXException("The NMX session has been closed"));
+			return request.response;
+		}
+		int pending = pendingCount.incrementAndGet();
+		CommandEvents.enqueued(request, pending);
+		requests.add(request);
+		return request.response;
+	}
+
+	/**
+	 * Reports the response to a request on the console and keeps count of empty responses.
+	 * It is called once the response frame has arrived, or once the response delay has run
+	 * out without one.
+	 *
+	 * @param response The decoded response frame, or null if none arrived
+	 */
+	private void parseResponse(Request request, Frame response){
+
+		if(!request.responseOn){
+			return;
+		}
+
+		boolean serialDetail = NMXComs.isSerialDetail();
+		if(serialDetail)
+			NMXLog.message("Response before parsing: " + (response == null ? "" : response.toHex()));
+
+		// This is an "OK" confirmation code, ignore it
+		if(response != null && response.isOk())
+			return;
+		if(response == null){
+			NMXLog.message("Empty response!");
+			emptyResponseCount++;
+			return;
+		}
+		emptyResponseCount = 0;
+
+		// Whoever is waiting gets an NMXResponseException for a value that cannot be read
+		if(serialDetail){
+			try {
+				response.checkValue();
+			} catch (NMXResponseException e) {
+				NMXLog.message(e.getMessage());
+			}
+		}
+	}
+
+	/**
+	 * Collects the frames decoded on the serial event thread, or on the command thread itself 
+	 * for polled transports, for the command thread
+	 */
+	private class ResponseListener
+	implements FrameDecoder.Listener{
+
+		// Set once the transport has been replaced, as its event thread may still be 
+		// delivering a frame
+		volatile boolean detached = false;
+
+		@Override
+		public void frameReceived(Frame frame, long firstByteNanos){
+			if(!detached)
+				responses.offer(frame, firstByteNanos);
+		}
+	}
+
+
+	// ******** Command Monitoring Thread ******** //
+
+	/**
+	 * Sends the session's requests to the controller and waits for their responses, so
+	 * that callers on the UI thread never have to.
+	 */
+	private class CommandThread
+	implements Runnable{
+
+		volatile boolean execute = true;
+
+		private final Transport transport;
+
+		// Packets are only encoded on this thread, so one encoder can gather them into its buffer
+		private final PacketEncoder encoder = new PacketEncoder();
+
+		// Requests whose packets have been gathered or written but whose responses have not 
+		// arrived yet, oldest first. The last encoder.count() of them have not been written.
+		private final ArrayDeque<Sent> window = new ArrayDeque<Sent>();
+
+		// The requests of a write, for its flight recorder event
+		private Request[] written = new Request[1];
+
+		// Responses that may still arrive for requests that were given up on, and until when
+		private int lateResponses = 0;
+		private long lateDeadline;
+
+		CommandThread(Transport transport){
+			this.transport = transport;
+		}
+
+		public void run(){
+			while(execute){
+				try{
+					if(window.isEmpty()){
+						if(lateResponses > 0)
+							awaitLateResponses();
+						// Park until a command is submitted; shutdown interrupts the wait
+						gather(requests.take());
+					}
+
+					// Gather any following requests that may share the window, then write them 
+					// all at once and wait for the oldest response
+					long coalesceDeadline = System.nanoTime() + coalesceNanos;
+					while(true){
+						Request next;
+						while((next = requests.peek()) != null && canPipeline(next) && encoder.fits(next)){
+							gather(requests.poll());
+						}
+						if(next != null || !canCoalesce())
+							break;
+						long wait = coalesceDeadline - System.nanoTime();
+						if(wait <= 0 || requests.await(wait) == null)
+							break;
+					}
+					flush();
+					if(!window.isEmpty())
+						awaitResponse();
+				} catch (InterruptedException e) {
+					failWindow();
+				}
+			}
+		};
+
+		/**
+		 * Responses carry no command or node information, so they can only be matched to
+		 * requests by order. A request may only join the window if it goes to the same
+		 * controller as the requests already in it and expects a normal, prompt response.
+		 * The scheduler only offers requests to one controller until its turn is over.
+		 */
+		private boolean canPipeline(Request request){
+			if(window.isEmpty())
+				return true;
+			Request head = window.peekFirst().request;
+			return window.size() < pipelineWindow && !isStopAndWait(request) && !isStopAndWait(head)
+					&& request.addr == head.addr;
+		}
+
+		/**
+		 * @return Whether it is worth holding back the gathered packets for more requests
+		 */
+		private boolean canCoalesce(){
+			return coalesceNanos > 0 && encoder.count() > 0 && window.size() < pipelineWindow
+					&& !isStopAndWait(window.peekFirst().request);
+		}
+
+		/**
+		 * Encodes a request into the gather buffer and adds it to the window
+		 */
+		private void gather(Request request){
+
+			// Drop any late responses to earlier commands
+			if(window.isEmpty()){
+				if(transport.isPolled())
+					drain();
+				responses.clear();
+			}
+
+			int offset = encoder.append(request);
+			Sent sent = new Sent(request);
+			sent.queueNanos = System.nanoTime() - request.queuedNanos;
+
+			// Print the command being sent
+			if(NMXComs.isSerialDetail()){
+				NMXLog.message("******************************************************");
+				NMXLog.message("Command out: " + PacketEncoder.toHex(encoder.buffer(), offset, encoder.length() - offset));
+			}
+			window.addLast(sent);
+		}
+
+		/**
+		 * Writes the gathered packets to the port in one call and starts their response timeouts
+		 */
+		private void flush(){
+			int count = encoder.count();
+			if(count == 0)
+				return;
+
+			Object writeEvent = CommandEvents.beginWrite();
+			long start = System.nanoTime();
+			try {
+				transport.write(encoder.buffer(), 0, encoder.length());
+			} catch (RuntimeException e) {
+				String packets = PacketEncoder.toHex(encoder.buffer(), 0, encoder.length());
+				encoder.clear();
+				for(int i = 0; i < count; i++){
+					finish(window.pollLast(), new NMXException("Error sending command packet: " + packets, e));
+				}
+				return;
+			}
+			if(writeEvent != null)
+				endWrite(writeEvent, count);
+			metrics.written(encoder.length());
+			encoder.clear();
+
+			long now = System.nanoTime();
+			Iterator<Sent> written = window.descendingIterator();
+			for(int i = 0; i < count; i++){
+				Sent sent = written.next();
+				sent.writeNanos = now - start;
+				sent.sentNanos = now;
+				sent.deadline = now + timeoutNanos(sent.request);
+			}
+			CommandListener[] current = listeners;
+			if(current.length != 0){
+				// Report them in the order they were written
+				Iterator<Sent> inOrder = window.iterator();
+				for(int i = window.size() - count; i > 0; i--){
+					inOrder.next();
+				}
+				while(inOrder.hasNext()){
+					fireSent(current, inOrder.next().request);
+				}
+			}
+			inFlight = window.peekFirst().request;
+
+			// Log the command time
+			long commandTime = System.currentTimeMillis();
+			if(NMXComs.isSerialDetail())
+				NMXLog.message("Time since last command: " + (commandTime-lastCommandTime)  + "ms");
+			lastCommandTime = commandTime;
+		}
+
+		/**
+		 * Records a flight recorder event for the write of the last <code>count</code> requests
+		 * in the window
+		 */
+		private void endWrite(Object event, int count){
+			if(written.length < count)
+				written = new Request[count];
+			Iterator<Sent> inOrder = window.iterator();
+			for(int i = window.size() - count; i > 0; i--){
+				inOrder.next();
+			}
+			Sent first = inOrder.next();
+			written[0] = first.request;
+			for(int i = 1; i < count; i++){
+				written[i] = inOrder.next().request;
+			}
+			CommandEvents.endWrite(event, transport.getName(), written, count, encoder.length(), first.queueNanos);
+			Arrays.fill(written, 0, count, null);
+		}
+
+		/**
+		 * Waits for the response to the oldest request in the window, giving up once its
+		 * response delay has passed
+		 */
+		private void awaitResponse() throws InterruptedException {
+
+			Sent oldest = window.peekFirst();
+			long wait = oldest.deadline - System.nanoTime();
+			Frame response;
+			if(transport.isPolled()){
+				// Read on this thread until the response has been decoded or the time is up
+				try {
+					while((response = responses.poll()) == null && (wait = oldest.deadline - System.nanoTime()) > 0){
+						// Nothing else wakes a shutdown here, as the wait is spent in the transport
+						if(Thread.interrupted())
+							throw new InterruptedException();
+						transport.receive(wait);
+					}
+				} catch (RuntimeException e) {
+					failWindow(new NMXException("Error reading the response from " + transport.getName(), e));
+					return;
+				}
+			}
+			else
+				response = wait > 0 ? responses.poll(wait) : responses.poll();
+			if(response != null){
+				oldest.firstByteNanos = responses.lastFirstByteNanos();
+				oldest.receivedNanos = responses.lastReceivedNanos();
+			}
+			window.removeFirst();
+			Request request = oldest.request;
+
+			// Report the first response frame decoded since the command went out
+			parseResponse(request, response);
+
+			if(NMXComs.isSerialDetail())
+				NMXLog.message("******************************************************");
+
+			// Hand the outcome to whoever is waiting on the command
+			if(response == null && request.responseOn){
+				expectLateResponse(oldest);
+				finish(oldest, new NMXTimeoutException("No response within "
+						+ TimeUnit.NANOSECONDS.toMillis(oldest.deadline - oldest.sentNanos)
+						+ "ms to command packet: " + PacketEncoder.toHex(request.encode())));
+
+				// A late response would arrive ahead of those to the rest of the window, so 
+				// they can no longer be told apart
+				Sent next;
+				while((next = window.pollFirst()) != null){
+					expectLateResponse(next);
+					finish(next, new NMXException("An earlier command timed out, so the response to command packet "
+							+ PacketEncoder.toHex(next.request.encode()) + " could not be matched"));
+				}
+			}
+			else
+				finish(oldest, response);
+		}
+
+		/**
+		 * Notes that the response to a request that was given up on may still arrive. It is 
+		 * waited for as long again as the request's timeout, but no longer than 
+		 * {@link NMXComs.ResponseTiming#LONG_WAIT} after the request was written.
+		 */
+		private void expectLateResponse(Sent sent){
+			if(!sent.request.responseOn)
+				return;
+			long timeout = sent.deadline - sent.sentNanos;
+			long until = sent.sentNanos + Math.min(2 * timeout, TimeUnit.MILLISECONDS.toNanos(NMXComs.ResponseTiming.LONG_WAIT));
+			if(lateResponses++ == 0 || until - lateDeadline > 0)
+				lateDeadline = until;
+		}
+
+		/**
+		 * Drops the responses to requests that were given up on as they arrive, so that they 
+		 * cannot be taken for the responses to the next requests. Returns once they have all 
+		 * arrived or the time they were given has passed.
+		 */
+		private void awaitLateResponses() throws InterruptedException {
+			long wait;
+			while(lateResponses > 0 && (wait = lateDeadline - System.nanoTime()) > 0){
+				Frame late;
+				if(transport.isPolled()){
+					if(Thread.interrupted())
+						throw new InterruptedException();
+					try {
+						transport.receive(wait);
+					} catch (RuntimeException e) {
+						// Shows up again when the next packets are written
+						break;
+					}
+					late = responses.poll();
+				}
+				else
+					late = responses.poll(wait);
+				if(late != null){
+					lateResponses--;
+					if(NMXComs.isSerialDetail())
+						NMXLog.message("Dropped late response: " + late.toHex());
+				}
+			}
+			lateResponses = 0;
+		}
+
+		/**
+		 * Reads and drops whatever a polled transport has received so far
+		 */
+		private void drain(){
+			try {
+				transport.receive(0);
+			} catch (RuntimeException e) {
+				// Any problem with the port shows up again when the packets are written
+			}
+		}
+
+		/**
+		 * Fails everything in the window after the thread has been interrupted by a shutdown
+		 */
+		private void failWindow(){
+			failWindow(new NMXException("NMX communications were shut down while waiting for a response"));
+		}
+
+		private void failWindow(NMXException failure){
+			encoder.clear();
+			Sent sent;
+			while((sent = window.pollFirst()) != null){
+				finish(sent, failure);
+			}
+		}
+
+		private void finish(Sent sent, Frame response){
+			Request request = sent.request;
+			inFlight = window.isEmpty() ? null : window.peekFirst().request;
+			requests.finished(request, null);
+			pendingCount.decrementAndGet();
+			if(response != null){
+				long latency = sent.receivedNanos - sent.sentNanos;
+				if(request.timeout == 0)
+					deadlines.responded(request.subAddr, request.command, latency);
+				// The frame may have started before the write call returned
+				long firstByte = Math.max(0, sent.firstByteNanos - sent.sentNanos);
+				metrics.record(request, sent.queueNanos, sent.writeNanos, firstByte, latency, null);
+				CommandEvents.responded(request, transport.getName(), response.getLength(), firstByte, latency);
+				CommandListener[] current = listeners;
+				if(current.length != 0)
+					fireResponse(current, request, latency);
+			}
+			else
+				metrics.record(request, sent.queueNanos, sent.writeNanos, 0, -1, null);
+			request.response.complete(response);
+		}
+
+		private void finish(Sent sent, NMXException failure){
+			Request request = sent.request;
+			inFlight = window.isEmpty() ? null : window.peekFirst().request;
+			requests.finished(request, failure);
+			pendingCount.decrementAndGet();
+			if(failure instanceof NMXTimeoutException){
+				if(request.timeout == 0)
+					deadlines.timedOut(request.subAddr, request.command, sent.deadline - sent.sentNanos);
+				CommandEvents.timedOut(request, transport.getName(), sent.deadline - sent.sentNanos);
+			}
+			metrics.record(request, sent.queueNanos, sent.writeNanos, 0, -1, failure);
+			CommandListener[] current = listeners;
+			if(current.length != 0){
+				if(failure instanceof NMXTimeoutException)
+					fireTimeout(current, request, System.nanoTime() - sent.sentNanos);
+				else
+					fireFailure(current, request, failure);
+			}
+			request.response.completeExceptionally(failure);
+		}
+	}
+
+	/**
+	 * A request in the pipeline window, with the time by which its response must arrive once
+	 * it has been written to the port and the timings of its way through the session
+	 */
+	private static class Sent {
+		final Request request;
+		long queueNanos;
+		long writeNanos = -1;
+		long sentNanos;
+		long deadline;
+		long firstByteNanos;
+		long receivedNanos;
+
+		Sent(Request request){
+			this.request = request;
+		}
+	}
+}
@@ -0,0 +1,13 @@
+package com.dynamicperception.nmx;
+
+/**
+ * The controller did not answer a command before its response delay ran out.
+ */
+public class NMXTimeoutException extends NMXException {
+
+	private static final long serialVersionUID = 1L;
+
+	public NMXTimeoutException(String message){
+		super(message);
+	}
+}
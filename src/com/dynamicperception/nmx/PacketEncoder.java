@@ -0,0 +1,141 @@
+package com.dynamicperception.nmx;
+
+/**
+ * Assembles NMX command packets directly as bytes. A packet is laid out as
+ * <pre>
+ * 00 00 00 00 00 FF | address | sub-address | command | length | data...
+ * </pre>
+ * with all multi-byte data sent big-endian.
+ * <p>
+ * An encoder instance gathers packets: each packet appended is encoded right behind the
+ * previous one in a reusable buffer, so that a run of pipelined packets can be written to the
+ * port in a single call. An encoder is not thread safe.
+ */
+final class PacketEncoder {
+
+	static final int HEADER_LENGTH = 6;
+	static final int ADDRESS_OFFSET = 6;
+	static final int SUB_ADDR_OFFSET = 7;
+	static final int COMMAND_OFFSET = 8;
+	static final int LENGTH_OFFSET = 9;
+	static final int DATA_OFFSET = 10;
+	static final int MAX_DATA_LENGTH = 255;
+	static final int MAX_PACKET_LENGTH = DATA_OFFSET + MAX_DATA_LENGTH;
+	/** Most bytes gathered into one write; room for at least a few of the longest packets */
+	static final int GATHER_CAPACITY = 1024;
+
+	private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+	private final byte[] buffer = new byte[GATHER_CAPACITY];
+	private int length = 0;
+	private int count = 0;
+
+	/**
+	 * @return Whether the request's packet can be appended without overflowing the buffer.
+	 * Any single packet fits into an empty buffer.
+	 */
+	boolean fits(Request request){
+		return length + request.packetLength() <= buffer.length;
+	}
+
+	/**
+	 * Encodes a request's packet behind those already gathered
+	 * @return The offset of the packet in {@link #buffer()}
+	 */
+	int append(Request request){
+		int size = request.packetLength();
+		if(size > MAX_PACKET_LENGTH)
+			throw new IllegalArgumentException("NMX packet too long: " + size + " bytes");
+		if(!fits(request))
+			throw new IllegalStateException("No room to gather another " + size + " byte packet");
+		int offset = length;
+		length = request.encode(buffer, offset);
+		count++;
+		return offset;
+	}
+
+	/**
+	 * @return The buffer holding the gathered packets, starting at index 0
+	 */
+	byte[] buffer(){
+		return buffer;
+	}
+
+	/**
+	 * @return Number of bytes gathered
+	 */
+	int length(){
+		return length;
+	}
+
+	/**
+	 * @return Number of packets gathered
+	 */
+	int count(){
+		return count;
+	}
+
+	/**
+	 * Empties the buffer once the gathered packets have been written
+	 */
+	void clear(){
+		length = 0;
+		count = 0;
+	}
+
+	/**
+	 * Writes a packet into <code>dst</code> starting at <code>offset</code>.
+	 *
+	 * @param length
+	 *            Value of the length byte
+	 * @param prefix
+	 *            Bytes to write ahead of the int data, may be null
+	 * @param dataBytes
+	 *            Number of low bytes of <code>data</code> to write, big-endian, after the prefix
+	 * @return The offset just past the packet
+	 */
+	static int encode(byte[] dst, int offset, int addr, int subAddr, int command, int length,
+			byte[] prefix, int dataBytes, int data){
+		int pos = writeHeader(dst, offset, addr, subAddr, command, length);
+		if(prefix != null){
+			System.arraycopy(prefix, 0, dst, pos, prefix.length);
+			pos += prefix.length;
+		}
+		// Zero padded when the data segment is wider than an int
+		for(int i = dataBytes - 1; i >= 0; i--){
+			dst[pos++] = i < 4 ? (byte) (data >>> (i * 8)) : 0;
+		}
+		return pos;
+	}
+
+	private static int writeHeader(byte[] dst, int offset, int addr, int subAddr, int command, int length){
+		if(length < 0 || length > MAX_DATA_LENGTH)
+			throw new IllegalArgumentException("Invalid NMX data length: " + length);
+		for(int i = 0; i < HEADER_LENGTH - 1; i++){
+			dst[offset + i] = 0;
+		}
+		dst[offset + HEADER_LENGTH - 1] = (byte) 0xFF;
+		dst[offset + ADDRESS_OFFSET] = (byte) addr;
+		dst[offset + SUB_ADDR_OFFSET] = (byte) subAddr;
+		dst[offset + COMMAND_OFFSET] = (byte) command;
+		dst[offset + LENGTH_OFFSET] = (byte) length;
+		return offset + DATA_OFFSET;
+	}
+
+	/**
+	 * @return The bytes as a lower case hex string, used for debug output
+	 */
+	static String toHex(byte[] src, int offset, int length){
+		char[] out = new char[length * 2];
+		for(int i = 0; i < length; i++){
+			int b = src[offset + i] & 0xFF;
+			out[i * 2] = HEX[b >>> 4];
+			out[i * 2 + 1] = HEX[b & 0x0F];
+		}
+		return new String(out);
+	}
+
+	static String toHex(byte[] src){
+		return src == null ? "null" : toHex(src, 0, src.length);
+	}
+}
@@ -0,0 +1,104 @@
+package com.dynamicperception.nmx;
+
+/**
+ * Reusable builder for the data segment of an NMX command packet. Values are written
+ * big-endian using the same sizes as the NMX firmware: a byte is 1 byte, an int is 2 bytes
+ * and a long or float is 4 bytes.
+ * <p>
+ * This is used for the few commands that take several fields in one packet, such as
+ * a direction byte followed by a step count:
+ * <pre>
+ * Payload payload = new Payload().putByte(dir).putLong(steps);
+ * </pre>
+ * A payload can be cleared and refilled as soon as the command using it has been submitted,
+ * so callers sending many packets only need one.
+ */
+public final class Payload {
+
+	private final byte[] bytes = new byte[PacketEncoder.MAX_DATA_LENGTH];
+	private int length = 0;
+
+	/**
+	 * Empties the payload so it can be reused for another packet
+	 * @return This payload
+	 */
+	public Payload clear(){
+		length = 0;
+		return this;
+	}
+
+	/**
+	 * @param value Value to append as a single byte
+	 * @return This payload
+	 */
+	public Payload putByte(int value){
+		ensureRoom(1);
+		bytes[length++] = (byte) value;
+		return this;
+	}
+
+	/**
+	 * @param value Value to append as a 2 byte NMX int
+	 * @return This payload
+	 */
+	public Payload putInt(int value){
+		ensureRoom(2);
+		bytes[length++] = (byte) (value >>> 8);
+		bytes[length++] = (byte) value;
+		return this;
+	}
+
+	/**
+	 * @param value Value to append as a 4 byte NMX long
+	 * @return This payload
+	 */
+	public Payload putLong(long value){
+		ensureRoom(4);
+		bytes[length++] = (byte) (value >>> 24);
+		bytes[length++] = (byte) (value >>> 16);
+		bytes[length++] = (byte) (value >>> 8);
+		bytes[length++] = (byte) value;
+		return this;
+	}
+
+	/**
+	 * @param value Value to append as its 4 byte IEEE 754 representation
+	 * @return This payload
+	 */
+	public Payload putFloat(float value){
+		return putLong(Float.floatToIntBits(value));
+	}
+
+	/**
+	 * @return Number of data bytes currently in the payload
+	 */
+	public int length(){
+		return length;
+	}
+
+	/**
+	 * Appends bytes given as a hex string, e.g. "01" or "00ff". This only exists to support
+	 * the deprecated {@link NMXComs#setManualData(String)}.
+	 */
+	Payload putHex(String hex){
+		for(int i = 0; i + 1 < hex.length(); i += 2){
+			putByte((Character.digit(hex.charAt(i), 16) << 4) + Character.digit(hex.charAt(i + 1), 16));
+		}
+		return this;
+	}
+
+	/**
+	 * @return A copy of the payload bytes
+	 */
+	byte[] toByteArray(){
+		byte[] copy = new byte[length];
+		System.arraycopy(bytes, 0, copy, 0, length);
+		return copy;
+	}
+
+	private void ensureRoom(int size){
+		if(length + size > bytes.length){
+			throw new IllegalStateException("NMX packets may not carry more than " + bytes.length + " data bytes");
+		}
+	}
+}
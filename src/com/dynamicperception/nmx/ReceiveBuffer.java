@@ -0,0 +1,250 @@
+package com.dynamicperception.nmx;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Fixed-size ring buffer for the bytes received by {@link Serial}. One thread, the serial
+ * event thread, writes and one consumer thread reads, without locks.
+ * <p>
+ * The producer publishes bytes by moving the tail with a release store after copying them
+ * in, so the consumer sees the bytes whenever it sees the new tail. The consumer frees space
+ * by moving the head. When the buffer is full the producer either stores only what fits,
+ * leaving the rest for the caller to retry, or drops the oldest bytes to make room. In the
+ * second case the head is moved with a compare-and-set by both threads and the consumer
+ * throws away anything it copied if the producer moved the head past it in the meantime.
+ */
+final class ReceiveBuffer {
+
+	private final byte[] bytes;
+	private final int mask;
+
+	// Positions only ever increase; the array index is the position masked by the capacity
+	private final AtomicLong head = new AtomicLong();
+	private final AtomicLong tail = new AtomicLong();
+
+	private final boolean dropOldest;
+	private final AtomicLong dropped = new AtomicLong();
+
+	/**
+	 * @param capacity Size of the buffer, rounded up to a power of two
+	 * @param dropOldest Whether writes to a full buffer drop the oldest bytes rather than
+	 * storing only what fits
+	 */
+	ReceiveBuffer(int capacity, boolean dropOldest){
+		if(capacity < 1 || capacity > 1 << 30)
+			throw new IllegalArgumentException("Invalid receive buffer capacity: " + capacity);
+		int size = Integer.highestOneBit(capacity);
+		if(size < capacity)
+			size <<= 1;
+		this.bytes = new byte[size];
+		this.mask = size - 1;
+		this.dropOldest = dropOldest;
+	}
+
+	int capacity(){
+		return bytes.length;
+	}
+
+	boolean isDropOldest(){
+		return dropOldest;
+	}
+
+	/**
+	 * @return Number of bytes dropped to make room for newer ones
+	 */
+	long getDropped(){
+		return dropped.get();
+	}
+
+	// ******** Producer ******** //
+
+	/**
+	 * @return Number of bytes that can be written without dropping any. Producer only.
+	 */
+	int free(){
+		return bytes.length - (int) (tail.get() - head.get());
+	}
+
+	/**
+	 * Appends bytes to the buffer. Producer only.
+	 * @return Number of bytes stored. This is less than <code>length</code> only when the
+	 * buffer is full and old bytes are not being dropped.
+	 */
+	int write(byte[] src, int offset, int length){
+		long t = tail.get();
+		int free = bytes.length - (int) (t - head.get());
+		if(length > free){
+			if(!dropOldest){
+				length = free;
+			}
+			else{
+				if(length > bytes.length){
+					// Only the newest bytes can fit
+					dropped.addAndGet(length - bytes.length);
+					offset += length - bytes.length;
+					length = bytes.length;
+				}
+				dropHead(t + length - bytes.length);
+			}
+		}
+		if(length <= 0)
+			return 0;
+
+		int index = (int) t & mask;
+		int first = Math.min(length, bytes.length - index);
+		System.arraycopy(src, offset, bytes, index, first);
+		System.arraycopy(src, offset + first, bytes, 0, length - first);
+		// Publish the bytes
+		tail.lazySet(t + length);
+		return length;
+	}
+
+	/**
+	 * Moves the head forward so that it is at least <code>to</code>, unless the consumer got
+	 * there first
+	 */
+	private void dropHead(long to){
+		long h;
+		while((h = head.get()) < to){
+			if(head.compareAndSet(h, to)){
+				dropped.addAndGet(to - h);
+				return;
+			}
+		}
+	}
+
+	/**
+	 * @return The most recently written byte, or -1 if the buffer is empty
+	 */
+	int newest(){
+		long t = tail.get();
+		return t == head.get() ? -1 : bytes[(int) (t - 1) & mask] & 0xFF;
+	}
+
+	// ******** Consumer ******** //
+
+	/**
+	 * @return Number of bytes waiting to be read
+	 */
+	int available(){
+		// Read the head first so that a tail read afterwards cannot be behind it
+		long h = head.get();
+		return (int) (tail.get() - h);
+	}
+
+	boolean isEmpty(){
+		return available() == 0;
+	}
+
+	/**
+	 * @return The next byte, or -1 if the buffer is empty
+	 */
+	int read(){
+		while(true){
+			long h = head.get();
+			if(h == tail.get())
+				return -1;
+			int b = bytes[(int) h & mask] & 0xFF;
+			if(advance(h, 1))
+				return b;
+		}
+	}
+
+	/**
+	 * Moves up to <code>length</code> bytes into <code>dst</code>
+	 * @return Number of bytes read
+	 */
+	int read(byte[] dst, int offset, int length){
+		while(true){
+			long h = head.get();
+			int n = copy(h, dst, offset, length);
+			if(advance(h, n))
+				return n;
+		}
+	}
+
+	/**
+	 * Copies up to <code>length</code> bytes into <code>dst</code> without removing them
+	 * @return Number of bytes copied
+	 */
+	int peek(byte[] dst, int offset, int length){
+		while(true){
+			long h = head.get();
+			int n = copy(h, dst, offset, length);
+			if(head.get() == h)
+				return n;
+		}
+	}
+
+	/**
+	 * @return Number of bytes up to and including the first occurrence of <code>b</code>,
+	 * or -1 if it has not been received
+	 */
+	int indexOf(byte b){
+		while(true){
+			long h = head.get();
+			long t = Math.min(tail.get(), h + bytes.length);
+			int found = -1;
+			for(long i = h; i < t; i++){
+				if(bytes[(int) i & mask] == b){
+					found = (int) (i - h) + 1;
+					break;
+				}
+			}
+			if(head.get() == h)
+				return found;
+		}
+	}
+
+	/**
+	 * Removes up to <code>length</code> bytes without reading them
+	 * @return Number of bytes removed
+	 */
+	int skip(int length){
+		while(true){
+			long h = head.get();
+			int n = (int) Math.min(length, tail.get() - h);
+			if(advance(h, n))
+				return n;
+		}
+	}
+
+	/**
+	 * Removes everything that has been received so far
+	 */
+	void clear(){
+		while(true){
+			long h = head.get();
+			if(advance(h, (int) (tail.get() - h)))
+				return;
+		}
+	}
+
+	private int copy(long h, byte[] dst, int offset, int length){
+		// A stale head may be more than a buffer behind the tail; the copy is thrown away then
+		int n = (int) Math.min(Math.min(length, bytes.length), tail.get() - h);
+		if(n <= 0)
+			return 0;
+		int index = (int) h & mask;
+		int first = Math.min(n, bytes.length - index);
+		System.arraycopy(bytes, index, dst, offset, first);
+		System.arraycopy(bytes, 0, dst, offset + first, n - first);
+		return n;
+	}
+
+	/**
+	 * Frees <code>n</code> bytes from position <code>h</code>
+	 * @return False if the producer dropped bytes in the meantime, in which case whatever was
+	 * copied from <code>h</code> may have been overwritten
+	 */
+	private boolean advance(long h, int n){
+		if(n <= 0)
+			return head.get() == h;
+		if(!dropOldest){
+			// The producer never moves the head in this mode
+			head.lazySet(h + n);
+			return true;
+		}
+		return head.compareAndSet(h, h + n);
+	}
+}
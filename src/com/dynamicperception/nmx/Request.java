@@ -0,0 +1,98 @@
+package com.dynamicperception.nmx;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A single command on its way to the NMX controller. Everything needed to send the command
+ * and wait for its answer travels with the request, so requests from several threads can
+ * be queued for the command thread without sharing any state. The response future is the
+ * request's result slot and is completed by the command thread.
+ */
+final class Request {
+
+	final int addr;
+	final int subAddr;
+	final int command;
+	/** Whether the caller wants the value in the response */
+	final boolean responseOn;
+	/** Longest time to wait for the response in milliseconds, or 0 for the session's timeout */
+	final int timeout;
+	/** Whether nothing else may be in flight alongside this request, see {@link NMXComs#setPipelineWindow(int)} */
+	final boolean stopAndWait;
+	final CompletableFuture<Frame> response = new CompletableFuture<Frame>();
+	/** When the request was queued, set by the {@link BusScheduler} */
+	long queuedNanos;
+
+	// Value of the packet's length byte
+	private final int length;
+	// Bytes sent ahead of the int data; this is the whole data segment for payload requests
+	private final byte[] prefix;
+	// Number of low bytes of data sent after the prefix
+	private final int dataBytes;
+	private final int data;
+
+	/**
+	 * A command whose data is the low <code>length</code> bytes of <code>data</code>
+	 * @param prefix Bytes sent ahead of the data without being counted in the length; may be null
+	 */
+	Request(int addr, int subAddr, int command, int length, int data, byte[] prefix, boolean responseOn, int timeout){
+		this.addr = addr;
+		this.subAddr = subAddr;
+		this.command = command;
+		this.length = length;
+		this.prefix = length == 0 ? null : prefix;
+		this.dataBytes = length;
+		this.data = data;
+		this.responseOn = responseOn;
+		this.timeout = timeout;
+		this.stopAndWait = isStopAndWait(responseOn, timeout);
+	}
+
+	/**
+	 * A command whose data segment is a copy of the payload
+	 */
+	Request(int addr, int subAddr, int command, Payload payload, boolean responseOn, int timeout){
+		this.addr = addr;
+		this.subAddr = subAddr;
+		this.command = command;
+		this.length = payload.length();
+		this.prefix = payload.toByteArray();
+		this.dataBytes = 0;
+		this.data = 0;
+		this.responseOn = responseOn;
+		this.timeout = timeout;
+		this.stopAndWait = isStopAndWait(responseOn, timeout);
+	}
+
+	/**
+	 * Commands without a response or with EEPROM and long waits cannot be matched to a 
+	 * response by order alone
+	 */
+	private static boolean isStopAndWait(boolean responseOn, int timeout){
+		return !responseOn || timeout > NMXComs.ResponseTiming.DEFAULT;
+	}
+
+	/**
+	 * @return Total size of the encoded packet in bytes
+	 */
+	int packetLength(){
+		return PacketEncoder.DATA_OFFSET + (prefix == null ? 0 : prefix.length) + dataBytes;
+	}
+
+	/**
+	 * Writes the packet for this request into <code>dst</code>
+	 * @return The offset just past the packet
+	 */
+	int encode(byte[] dst, int offset){
+		return PacketEncoder.encode(dst, offset, addr, subAddr, command, length, prefix, dataBytes, data);
+	}
+
+	/**
+	 * @return The packet for this request in a new array, used for error messages
+	 */
+	byte[] encode(){
+		byte[] packet = new byte[packetLength()];
+		encode(packet, 0);
+		return packet;
+	}
+}
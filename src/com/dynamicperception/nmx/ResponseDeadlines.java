@@ -0,0 +1,160 @@
+package com.dynamicperception.nmx;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Learns how long the controllers take to answer each command and derives response timeouts
+ * from it, so a slow command such as an EEPROM write is not cut off.
+ * <p>
+ * Response times are kept per sub-address and command in a histogram with the buckets of a
+ * {@link LatencyHistogram}, accurate to about 12%. Once a command has {@link #MIN_SAMPLES}
+ * responses its timeout is the 99.9th percentile doubled plus {@link #MARGIN_NANOS}. With
+ * fewer than a thousand samples the percentile is simply the slowest response seen. The
+ * counts are halved whenever they reach {@link #DECAY_SAMPLES}, so the timeouts follow a
+ * controller whose timing changes.
+ * <p>
+ * A timeout is never shorter than {@link NMXComs.ResponseTiming#DEFAULT}, however fast the
+ * command usually is. Responses carry nothing that says which command they answer, so a
+ * response that turns up after its timeout has to be waited out before the next command is
+ * sent, and a short timeout would make that happen on every hiccup of the link. The
+ * commands in {@link #SLOW_COMMANDS} write to the controller's EEPROM and are never given
+ * less than {@link NMXComs.ResponseTiming#LONG_WAIT}.
+ * <p>
+ * A response that does not arrive tells nothing about how long it would have taken, so each
+ * timeout doubles the command's timeout, up to {@link NMXComs.ResponseTiming#LONG_WAIT}, until
+ * a response arrives again.
+ * <p>
+ * Only the command thread records samples; timeouts may be read from any thread.
+ */
+final class ResponseDeadlines {
+
+	/** Responses needed before a command's timeout is derived from its own response times */
+	static final int MIN_SAMPLES = 32;
+	/** Number of responses at which a command's counts are halved */
+	static final int DECAY_SAMPLES = 1024;
+	/** Fixed allowance on top of the doubled percentile, for scheduling and USB delays */
+	static final long MARGIN_NANOS = TimeUnit.MILLISECONDS.toNanos(5);
+
+	/** Commands that store their setting in EEPROM, which can take hundreds of milliseconds */
+	static final String[] SLOW_COMMANDS = { "g.setName", "g.setAddress", "g.setWatchdog", "g.setGraffik",
+			"g.setApp", "m.setSleep", "m.setBacklash", "m.setMS", "m.setMaxSpeed" };
+
+	private static final long DEFAULT_TIMEOUT_NANOS = TimeUnit.MILLISECONDS.toNanos(NMXComs.ResponseTiming.DEFAULT);
+	private static final long MAX_TIMEOUT_NANOS = TimeUnit.MILLISECONDS.toNanos(NMXComs.ResponseTiming.LONG_WAIT);
+
+	private static final int BUCKETS = LatencyHistogram.BUCKETS;
+
+	private static final int SUB_ADDRESSES = 6;
+
+	/**
+	 * The response times of one command
+	 */
+	private static final class Estimate {
+		final int[] counts = new int[BUCKETS];
+		int total;
+		// Shortest timeout the command may be given
+		final long minTimeoutNanos;
+		// Timeout in force, recomputed after every response and timeout
+		volatile long timeoutNanos;
+
+		Estimate(long minTimeoutNanos){
+			this.minTimeoutNanos = minTimeoutNanos;
+			this.timeoutNanos = minTimeoutNanos;
+		}
+	}
+
+	// Estimates by sub-address and command number, created on the first response unless the
+	// command is slow. Stored with volatile semantics, so a thread reading a timeout sees a
+	// new estimate fully built.
+	private final AtomicReferenceArray<Estimate> estimates = new AtomicReferenceArray<Estimate>(SUB_ADDRESSES * 256);
+
+	ResponseDeadlines(){
+		for(String name : SLOW_COMMANDS){
+			Command command = Command.get(name);
+			int subAddrs = command.getType() == Command.Type.MOTOR ? Command.MOTOR_COUNT : 1;
+			for(int i = 0; i < subAddrs; i++){
+				estimates.set((command.getSubaddr() + i) * 256 + command.getCommandNum(), new Estimate(MAX_TIMEOUT_NANOS));
+			}
+		}
+	}
+
+	/**
+	 * @return How long to wait for the response to a command
+	 */
+	long timeoutNanos(int subAddr, int command){
+		Estimate estimate = get(subAddr, command);
+		return estimate == null ? DEFAULT_TIMEOUT_NANOS : estimate.timeoutNanos;
+	}
+
+	/**
+	 * Records the time a response took to arrive after its command was written
+	 */
+	void responded(int subAddr, int command, long latencyNanos){
+		Estimate estimate = getOrCreate(subAddr, command);
+		if(estimate == null)
+			return;
+		estimate.counts[LatencyHistogram.bucket(TimeUnit.NANOSECONDS.toMicros(latencyNanos))]++;
+		if(++estimate.total >= DECAY_SAMPLES){
+			estimate.total = 0;
+			for(int i = 0; i < BUCKETS; i++){
+				estimate.counts[i] >>= 1;
+				estimate.total += estimate.counts[i];
+			}
+		}
+		if(estimate.total >= MIN_SAMPLES){
+			long percentile = TimeUnit.MICROSECONDS.toNanos(LatencyHistogram.upperBound(percentileBucket(estimate, 0.999)));
+			estimate.timeoutNanos = clamp(estimate, 2 * percentile + MARGIN_NANOS);
+		}
+		else{
+			// Still learning, but never cut off a response like this one
+			estimate.timeoutNanos = Math.max(estimate.timeoutNanos, clamp(estimate, 2 * latencyNanos + MARGIN_NANOS));
+		}
+	}
+
+	/**
+	 * Records that no response arrived within <code>waitedNanos</code>
+	 */
+	void timedOut(int subAddr, int command, long waitedNanos){
+		Estimate estimate = getOrCreate(subAddr, command);
+		if(estimate == null)
+			return;
+		estimate.timeoutNanos = clamp(estimate, Math.max(estimate.timeoutNanos, waitedNanos) * 2);
+	}
+
+	private Estimate get(int subAddr, int command){
+		if(subAddr < 0 || subAddr >= SUB_ADDRESSES || command < 0 || command > 0xFF)
+			return null;
+		return estimates.get(subAddr * 256 + command);
+	}
+
+	private Estimate getOrCreate(int subAddr, int command){
+		if(subAddr < 0 || subAddr >= SUB_ADDRESSES || command < 0 || command > 0xFF)
+			return null;
+		int index = subAddr * 256 + command;
+		Estimate estimate = estimates.get(index);
+		if(estimate == null){
+			estimate = new Estimate(DEFAULT_TIMEOUT_NANOS);
+			estimates.set(index, estimate);
+		}
+		return estimate;
+	}
+
+	/**
+	 * @return The first bucket at or below which at least <code>fraction</code> of the samples lie
+	 */
+	private static int percentileBucket(Estimate estimate, double fraction){
+		long needed = (long) Math.ceil(estimate.total * fraction);
+		long seen = 0;
+		for(int i = 0; i < BUCKETS; i++){
+			seen += estimate.counts[i];
+			if(seen >= needed)
+				return i;
+		}
+		return BUCKETS - 1;
+	}
+
+	private static long clamp(Estimate estimate, long timeoutNanos){
+		return Math.max(estimate.minTimeoutNanos, Math.min(MAX_TIMEOUT_NANOS, timeoutNanos));
+	}
+}
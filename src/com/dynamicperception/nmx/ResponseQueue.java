@@ -0,0 +1,93 @@
+package com.dynamicperception.nmx;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hands decoded response frames from the thread feeding the decoder to the command thread,
+ * along with the times the first and the last byte of each frame arrived. A fixed ring is plenty, as only
+ * the responses to the requests in the pipeline window are ever waited for; frames that do
+ * not fit are late and dropped. Nothing is allocated per frame.
+ */
+final class ResponseQueue {
+
+	private final Frame[] frames;
+	private final long[] firstByteNanos;
+	private final long[] receivedNanos;
+	private int head = 0;
+	private int size = 0;
+
+	// Arrival of the frame last taken, only used by the command thread
+	private long lastFirstByteNanos;
+	private long lastReceivedNanos;
+
+	ResponseQueue(int capacity){
+		frames = new Frame[capacity];
+		firstByteNanos = new long[capacity];
+		receivedNanos = new long[capacity];
+	}
+
+	/**
+	 * Adds a frame that has just been decoded, unless the queue is full
+	 * @param firstByteNanos When the first byte of the frame arrived, from {@link System#nanoTime()}
+	 */
+	synchronized void offer(Frame frame, long firstByteNanos){
+		if(size == frames.length)
+			return;
+		int tail = (head + size) % frames.length;
+		frames[tail] = frame;
+		this.firstByteNanos[tail] = firstByteNanos;
+		receivedNanos[tail] = System.nanoTime();
+		size++;
+		notifyAll();
+	}
+
+	/**
+	 * @return The oldest frame, or null if there is none
+	 */
+	synchronized Frame poll(){
+		if(size == 0)
+			return null;
+		Frame frame = frames[head];
+		frames[head] = null;
+		lastFirstByteNanos = firstByteNanos[head];
+		lastReceivedNanos = receivedNanos[head];
+		head = (head + 1) % frames.length;
+		size--;
+		return frame;
+	}
+
+	/**
+	 * Waits up to <code>timeoutNanos</code> for a frame
+	 * @return The oldest frame, or null if none arrived in time
+	 */
+	synchronized Frame poll(long timeoutNanos) throws InterruptedException {
+		long deadline = System.nanoTime() + timeoutNanos;
+		long wait;
+		while(size == 0 && (wait = deadline - System.nanoTime()) > 0){
+			TimeUnit.NANOSECONDS.timedWait(this, wait);
+		}
+		return poll();
+	}
+
+	/**
+	 * @return When the first byte of the frame last taken by {@link #poll()} arrived
+	 */
+	long lastFirstByteNanos(){
+		return lastFirstByteNanos;
+	}
+
+	/**
+	 * @return When the frame last taken by {@link #poll()} was decoded
+	 */
+	long lastReceivedNanos(){
+		return lastReceivedNanos;
+	}
+
+	synchronized void clear(){
+		while(size > 0){
+			frames[head] = null;
+			head = (head + 1) % frames.length;
+			size--;
+		}
+	}
+}
@@ -19,31 +19,46 @@ package com.dynamicperception.nmx;
   Free Software Foundation, Inc., 59 Temple Place, Suite 330,
   Boston, MA  02111-1307  USA
 */
-import gnu.io.CommPortIdentifier;
-
 import java.lang.reflect.*;
-import java.util.Enumeration;
+import java.util.Arrays;
 import java.util.Vector;
 
 import jssc.*;
 
 
-public class Serial implements SerialPortEventListener {
+public class Serial implements SerialPortEventListener, Transport {
 
   // *** Processing library vars *** //
   public SerialPort port;
   Method serialAvailableMethod;
   Method serialEventMethod;
 
-  byte[] buffer = new byte[32768];
-  int inBuffer = 0;
-  int readOffset = 0;
+  // received bytes waiting for read() and friends
+  volatile ReceiveBuffer received = new ReceiveBuffer(DEFAULT_RECEIVE_CAPACITY, false);
 
   int bufferUntilSize = 1;
   byte bufferUntilByte = 0;
 
   volatile boolean invokeSerialAvailable = false;
 
+  // when set, received bytes go to this receiver instead of the read buffer
+  volatile Receiver receiver;
+
+  // exactly sized arrays for write(byte[], int, int), indexed by length
+  private final byte[][] writeArrays = new byte[PacketEncoder.GATHER_CAPACITY + 1][];
+
+
+  static final int DEFAULT_RECEIVE_CAPACITY = 32768;
+
+  /**
+   * What happens to received bytes when the receive buffer is full
+   */
+  public enum Overflow {
+    /** Bytes are left with the port driver until there is room for them */
+    BACKPRESSURE,
+    /** The oldest unread bytes are dropped to make room */
+    DROP_OLDEST
+  }
 
   // *** NMX communications vars *** //
   int defaultBaudRate = 57600;  
@@ -69,6 +84,8 @@ public class Serial implements SerialPortEventListener {
 	}
 	
 	public static void destroy(){
+		// Stop the command thread started for this instance
+		NMXComs.shutdown();
 		instance = null;
 	}
 	
@@ -80,6 +97,20 @@ public class Serial implements SerialPortEventListener {
 	  NMXComs.setSerialObject(this);
   }
 
+  private Serial(boolean attachDefault) {
+	  if (attachDefault) {
+		  NMXComs.setSerialObject(this);
+	  }
+  }
+
+  /**
+   * Creates a serial object that is not attached to the default session, for an
+   * {@link NMXSession} opening its own port
+   */
+  static Serial createDetached() {
+	  return new Serial(false);
+  }
+
   //*** NMX communications functions *** //
   
   public static Vector<String> getPortList(){
@@ -94,34 +125,20 @@ public class Serial implements SerialPortEventListener {
 		return portOpen;
 	}
 	
-	@SuppressWarnings("unchecked")
 	public static void checkPorts() {
 		
-		Enumeration<CommPortIdentifier> portList;
-		Vector<String> portVect = new Vector<String>();
-		portList = CommPortIdentifier.getPortIdentifiers();
-
-		CommPortIdentifier portId;
-		while (portList.hasMoreElements()) {
-			portId = (CommPortIdentifier) portList.nextElement();
-			if (portId.getPortType() == CommPortIdentifier.PORT_SERIAL) {
-				portVect.add(portId.getName());
-			}
-		}
-		
-		port_list = portVect;
+		// jssc lists the serial ports itself, so RXTX is not needed as well
+		port_list = new Vector<String>(Arrays.asList(list()));
 		
 		// Display ports in console
-		System.out.println();
+		NMXLog.log("");
 		if (port_list.size() > 0) {
-			System.out
-					.println("The following serial ports have been detected:");
+			NMXLog.log("The following serial ports have been detected:");
 		} else {
-			System.out
-					.println("Sorry, no serial ports were found on your computer\n");
+			NMXLog.log("Sorry, no serial ports were found on your computer\n");
 		}
 		for (int i = 0; i < port_list.size(); ++i) {
-			System.out.println("    " + Integer.toString(i + 1) + ":  "
+			NMXLog.log("    " + Integer.toString(i + 1) + ":  "
 					+ port_list.elementAt(i));
 		}
 		
@@ -173,7 +190,7 @@ public class Serial implements SerialPortEventListener {
 
     port = new SerialPort(portName);
     try {
-      System.out.println("Opening " + portName);
+      NMXLog.log("Opening " + portName);
       // the native open() call is not using O_NONBLOCK, so this might block for certain operations (see write())
       port.openPort();
       port.setParams(baudRate, dataBits, stopBitsIdx, parity);
@@ -201,7 +218,7 @@ public class Serial implements SerialPortEventListener {
   }
 
   public int available() {
-    return (inBuffer-readOffset);
+    return received.available();
   }
   
   public void buffer(int size) {
@@ -214,10 +231,23 @@ public class Serial implements SerialPortEventListener {
   }
   
   public void clear() {
-    synchronized (buffer) {
-      inBuffer = 0;
-      readOffset = 0;
-    }
+    received.clear();
+  }
+
+  /**
+   * Replaces the receive buffer. Any unread bytes are discarded.
+   * @param capacity Size of the buffer in bytes, rounded up to a power of two
+   * @param overflow What to do with received bytes when the buffer is full
+   */
+  public void setReceiveBuffer(int capacity, Overflow overflow) {
+    received = new ReceiveBuffer(capacity, overflow == Overflow.DROP_OLDEST);
+  }
+
+  /**
+   * @return Number of received bytes dropped because the receive buffer was full
+   */
+  public long getDroppedBytes() {
+    return received.getDropped();
   }
 
   public boolean getCTS() {
@@ -237,22 +267,54 @@ public class Serial implements SerialPortEventListener {
   }
 
   public int last() {
-    if (inBuffer == readOffset) {
-      return -1;
-    }
-
-    synchronized (buffer) {
-      int ret = buffer[inBuffer-1] & 0xFF;
-      inBuffer = 0;
-      readOffset = 0;
-      return ret;
-    }
+    ReceiveBuffer buf = received;
+    int ret = buf.newest();
+    buf.clear();
+    return ret;
   }
   
   public char lastChar() {
     return (char)last();
   }
   
+  /**
+   * Routes received bytes to a receiver, such as a session's frame decoder, instead of 
+   * the read buffer. Pass null to go back to buffering bytes for read() and friends.
+   */
+  @Override
+  public void setReceiver(Receiver receiver) {
+    this.receiver = receiver;
+  }
+
+  /**
+   * Bytes are delivered on jssc's event thread
+   */
+  @Override
+  public boolean isPolled() {
+    return false;
+  }
+
+  @Override
+  public void receive(long timeoutNanos) {
+  }
+
+  @Override
+  public boolean isOpen() {
+    return port != null && port.isOpened();
+  }
+
+  @Override
+  public String getName() {
+    return port == null ? null : port.getPortName();
+  }
+
+  @Override
+  public void close() {
+    if (isOpen()) {
+      closePort();
+    }
+  }
+  
   public static String[] list() {
     // returns list sorted alphabetically, thus cu.* comes before tty.*
     // this was different with RXTX
@@ -260,118 +322,55 @@ public class Serial implements SerialPortEventListener {
   }
   
   public int read() {
-    if (inBuffer == readOffset) {
-      return -1;
-    }
-
-    synchronized (buffer) {
-      int ret = buffer[readOffset++] & 0xFF;
-      if (inBuffer == readOffset) {
-        inBuffer = 0;
-        readOffset = 0;
-      }
-      return ret;
-    }
+    return received.read();
   }
 
   public byte[] readBytes() {
-    if (inBuffer == readOffset) {
+    ReceiveBuffer buf = received;
+    int toCopy = buf.available();
+    if (toCopy == 0) {
       return null;
     }
 
-    synchronized (buffer) {
-      byte[] ret = new byte[inBuffer-readOffset];
-      System.arraycopy(buffer, readOffset, ret, 0, ret.length);
-      inBuffer = 0;
-      readOffset = 0;
-      return ret;
-    }
+    byte[] ret = new byte[toCopy];
+    int read = buf.read(ret, 0, toCopy);
+    // fewer bytes are left if old ones were dropped in the meantime
+    return read == toCopy ? ret : Arrays.copyOf(ret, read);
   }
   
   public int readBytes(byte[] dest) {
-    if (inBuffer == readOffset) {
-      return 0;
-    }
-
-    synchronized (buffer) {
-      int toCopy = inBuffer-readOffset;
-      if (dest.length < toCopy) {
-        toCopy = dest.length;
-      }
-      System.arraycopy(buffer, readOffset, dest, 0, toCopy);
-      readOffset += toCopy;
-      if (inBuffer == readOffset) {
-        inBuffer = 0;
-        readOffset = 0;
-      }
-      return toCopy;
-    }
+    return received.read(dest, 0, dest.length);
   }
   
   public byte[] readBytesUntil(int inByte) {
-    if (inBuffer == readOffset) {
+    ReceiveBuffer buf = received;
+    // look for needle in buffer
+    int toCopy = buf.indexOf((byte)inByte);
+    if (toCopy == -1) {
       return null;
     }
 
-    synchronized (buffer) {
-      // look for needle in buffer
-      int found = -1;
-      for (int i=readOffset; i < inBuffer; i++) {
-        if (buffer[i] == (byte)inByte) {
-          found = i;
-          break;
-        }
-      }
-      if (found == -1) {
-        return null;
-      }
-
-      int toCopy = found-readOffset+1;
-      byte[] dest = new byte[toCopy];
-      System.arraycopy(buffer, readOffset, dest, 0, toCopy);
-      readOffset += toCopy;
-      if (inBuffer == readOffset) {
-        inBuffer = 0;
-        readOffset = 0;
-      }
-      return dest;
-    }
+    byte[] dest = new byte[toCopy];
+    buf.read(dest, 0, toCopy);
+    return dest;
   }
   
   public int readBytesUntil(int inByte, byte[] dest) {
-    if (inBuffer == readOffset) {
+    ReceiveBuffer buf = received;
+    // look for needle in buffer
+    int toCopy = buf.indexOf((byte)inByte);
+    if (toCopy == -1) {
       return 0;
     }
 
-    synchronized (buffer) {
-      // look for needle in buffer
-      int found = -1;
-      for (int i=readOffset; i < inBuffer; i++) {
-        if (buffer[i] == (byte)inByte) {
-          found = i;
-          break;
-        }
-      }
-      if (found == -1) {
-        return 0;
-      }
-
-      // check if bytes to copy fit in dest
-      int toCopy = found-readOffset+1;
-      if (dest.length < toCopy) {
-        System.err.println( "The buffer passed to readBytesUntil() is to small " +
-                  "to contain " + toCopy + " bytes up to and including " +
-                  "char " + (byte)inByte);
-        return -1;
-      }
-      System.arraycopy(buffer, readOffset, dest, 0, toCopy);
-      readOffset += toCopy;
-      if (inBuffer == readOffset) {
-        inBuffer = 0;
-        readOffset = 0;
-      }
-      return toCopy;
+    // check if bytes to copy fit in dest
+    if (dest.length < toCopy) {
+      NMXLog.log( "The buffer passed to readBytesUntil() is to small " +
+                "to contain " + toCopy + " bytes up to and including " +
+                "char " + (byte)inByte);
+      return -1;
     }
+    return buf.read(dest, 0, toCopy);
   }
   
   public char readChar() {
@@ -379,10 +378,11 @@ public class Serial implements SerialPortEventListener {
   }
   
   public String readString() {
-    if (inBuffer == readOffset) {
+    byte[] bytes = readBytes();
+    if (bytes == null) {
       return null;
     }
-    return new String(readBytes());
+    return new String(bytes);
   }
 
   public String readStringUntil(int inByte) {
@@ -399,26 +399,33 @@ public class Serial implements SerialPortEventListener {
       int toRead;
       try {
         while (0 < (toRead = port.getInputBufferBytesCount())) {
-          // this method can be called from the context of another thread
-          synchronized (buffer) {
-            // read one byte at a time if the sketch is using serialEvent
-            if (serialEventMethod != null) {
-              toRead = 1;
-            }
-            // enlarge buffer if necessary
-            if (buffer.length < inBuffer+toRead) {
-              byte temp[] = new byte[buffer.length<<1];
-              System.arraycopy(buffer, 0, temp, 0, inBuffer);
-              buffer = temp;
-            }
-            // read an array of bytes and copy it into our buffer
+          // hand the bytes straight to the receiver if there is one; jssc
+          // returns a new array for every read, which the receiver consumes in place
+          Receiver current = receiver;
+          if (current != null) {
             byte[] read = port.readBytes(toRead);
-            System.arraycopy(read, 0, buffer, inBuffer, read.length);
-            inBuffer += read.length;
+            current.received(read, 0, read.length);
+            continue;
           }
+          // this is the only thread writing to the receive buffer
+          ReceiveBuffer buf = received;
+          // read one byte at a time if the sketch is using serialEvent
           if (serialEventMethod != null) {
-            if ((0 < bufferUntilSize && bufferUntilSize <= inBuffer-readOffset) ||
-              (0 == bufferUntilSize && bufferUntilByte == buffer[inBuffer-1])) {
+            toRead = 1;
+          }
+          // leave the bytes with the driver until the buffer has room for them
+          if (!buf.isDropOldest()) {
+            toRead = Math.min(toRead, buf.free());
+            if (toRead == 0) {
+              break;
+            }
+          }
+          // read an array of bytes and copy it into our buffer
+          byte[] read = port.readBytes(toRead);
+          buf.write(read, 0, read.length);
+          if (serialEventMethod != null) {
+            if ((0 < bufferUntilSize && bufferUntilSize <= buf.available()) ||
+              (0 == bufferUntilSize && bufferUntilByte == (byte)buf.newest())) {
               try {
                 // serialEvent() is invoked in the context of the current (serial) thread
                 // which means that serialization and atomic variables need to be used to
@@ -429,8 +436,8 @@ public class Serial implements SerialPortEventListener {
                 // of the Processing applet
                 
               } catch (Exception e) {
-                System.err.println("Error, disabling serialEvent() for "+port.getPortName());
-                System.err.println(e.getLocalizedMessage());
+                NMXLog.log("Error, disabling serialEvent() for "+port.getPortName());
+                NMXLog.log(e.getLocalizedMessage());
                 serialEventMethod = null;
               }
             }
@@ -468,8 +475,7 @@ public class Serial implements SerialPortEventListener {
     } catch (SerialPortException e) {
       // ignored
     }
-    inBuffer = 0;
-    readOffset = 0;
+    received.clear();
   }
   
   public void write(byte[] src) {
@@ -482,6 +488,28 @@ public class Serial implements SerialPortEventListener {
     }
   }
   
+  /**
+   * Writes part of an array in a single call, used for gathered packets. jssc can only
+   * write whole arrays, so the bytes are copied into an array of exactly that size, one
+   * of which is kept per length. Only one thread may call this at a time.
+   */
+  @Override
+  public void write(byte[] src, int offset, int length) {
+    if (offset == 0 && length == src.length) {
+      write(src);
+      return;
+    }
+    byte[] out = length < writeArrays.length ? writeArrays[length] : null;
+    if (out == null) {
+      out = new byte[length];
+      if (length < writeArrays.length) {
+        writeArrays[length] = out;
+      }
+    }
+    System.arraycopy(src, offset, out, 0, length);
+    write(out);
+  }
+
   public void write(int src) {
     try {
       port.writeInt(src);
@@ -0,0 +1,133 @@
+package com.dynamicperception.nmx;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Records the timings of a session's commands, by command and by controller address, for
+ * {@link SessionStats}. Only the command thread records; snapshots may be taken from any
+ * thread.
+ */
+final class SessionMetrics {
+
+	private static final int SUB_ADDRESSES = 6;
+
+	/**
+	 * The timings of one command or controller
+	 */
+	private static final class Timings {
+		final String name;
+		final LatencyHistogram queueWait = new LatencyHistogram();
+		final LatencyHistogram write = new LatencyHistogram();
+		final LatencyHistogram firstByte = new LatencyHistogram();
+		final LatencyHistogram response = new LatencyHistogram();
+		volatile long completed;
+		volatile long timeouts;
+		volatile long failed;
+
+		Timings(String name){
+			this.name = name;
+		}
+
+		void record(long queueNanos, long writeNanos, long firstByteNanos, long responseNanos, NMXException failure){
+			queueWait.record(queueNanos);
+			if(writeNanos >= 0)
+				write.record(writeNanos);
+			if(failure == null){
+				if(responseNanos >= 0){
+					firstByte.record(firstByteNanos);
+					response.record(responseNanos);
+				}
+				completed++;
+			}
+			else if(failure instanceof NMXTimeoutException)
+				timeouts++;
+			else
+				failed++;
+		}
+
+		TimingStats snapshot(){
+			return new TimingStats(name, completed, timeouts, failed, queueWait.snapshot(), write.snapshot(),
+					firstByte.snapshot(), response.snapshot());
+		}
+	}
+
+	// Created on the first command to each, and never replaced
+	private final Timings[] commands = new Timings[SUB_ADDRESSES * 256];
+	private final Timings[] controllers = new Timings[256];
+
+	private volatile long bytesWritten;
+
+	/**
+	 * Records a write to the port
+	 */
+	void written(int bytes){
+		bytesWritten += bytes;
+	}
+
+	long getBytesWritten(){
+		return bytesWritten;
+	}
+
+	/**
+	 * Records the outcome of a command
+	 * @param queueNanos Time the command waited in the queue
+	 * @param writeNanos Time its packet took to write, or -1 if it was never written
+	 * @param firstByteNanos Time from the write until the first byte of the response arrived
+	 * @param responseNanos Time from the write until the whole response arrived, or -1 if there was none
+	 * @param failure Why the command failed, or null if it succeeded
+	 */
+	void record(Request request, long queueNanos, long writeNanos, long firstByteNanos, long responseNanos, NMXException failure){
+		controller(request.addr).record(queueNanos, writeNanos, firstByteNanos, responseNanos, failure);
+		Timings command = command(request.subAddr, request.command);
+		if(command != null)
+			command.record(queueNanos, writeNanos, firstByteNanos, responseNanos, failure);
+	}
+
+	private Timings controller(int addr){
+		int index = addr & 0xFF;
+		Timings timings = controllers[index];
+		if(timings == null){
+			timings = new Timings("Controller " + index);
+			controllers[index] = timings;
+		}
+		return timings;
+	}
+
+	private Timings command(int subAddr, int command){
+		if(subAddr < 0 || subAddr >= SUB_ADDRESSES || command < 0 || command > 0xFF)
+			return null;
+		int index = subAddr * 256 + command;
+		Timings timings = commands[index];
+		if(timings == null){
+			Command known = Command.lookup(subAddr, command);
+			String name = known == null ? subAddr + "." + command : known.getName();
+			// Motors share their command names, so keep them apart
+			if(known != null && subAddr >= 1 && subAddr <= Command.MOTOR_COUNT)
+				name = name + "[" + (subAddr - 1) + "]";
+			timings = new Timings(name);
+			commands[index] = timings;
+		}
+		return timings;
+	}
+
+	Map<String, TimingStats> getCommands(){
+		Map<String, TimingStats> stats = new TreeMap<String, TimingStats>();
+		for(Timings timings : commands){
+			if(timings != null)
+				stats.put(timings.name, timings.snapshot());
+		}
+		return stats;
+	}
+
+	Map<Integer, TimingStats> getControllers(){
+		Map<Integer, TimingStats> stats = new LinkedHashMap<Integer, TimingStats>();
+		for(int addr = 0; addr < controllers.length; addr++){
+			Timings timings = controllers[addr];
+			if(timings != null)
+				stats.put(addr, timings.snapshot());
+		}
+		return stats;
+	}
+}
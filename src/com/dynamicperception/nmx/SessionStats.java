@@ -0,0 +1,114 @@
+package com.dynamicperception.nmx;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * A snapshot of the traffic on a session, see {@link NMXSession#getStats()}. The counts cover
+ * the whole life of the session, across changes of port.
+ */
+public final class SessionStats
+implements SessionStatsMXBean{
+
+	private final String port;
+	private final long bytesWritten;
+	private final long bytesReceived;
+	private final long resyncs;
+	private final Map<String, TimingStats> commands;
+	private final Map<Integer, TimingStats> controllers;
+
+	SessionStats(String port, long bytesWritten, long bytesReceived, long resyncs,
+			Map<String, TimingStats> commands, Map<Integer, TimingStats> controllers){
+		this.port = port;
+		this.bytesWritten = bytesWritten;
+		this.bytesReceived = bytesReceived;
+		this.resyncs = resyncs;
+		this.commands = Collections.unmodifiableMap(commands);
+		this.controllers = Collections.unmodifiableMap(controllers);
+	}
+
+	@Override
+	public String getPort(){
+		return port;
+	}
+
+	@Override
+	public long getBytesWritten(){
+		return bytesWritten;
+	}
+
+	@Override
+	public long getBytesReceived(){
+		return bytesReceived;
+	}
+
+	@Override
+	public long getResyncs(){
+		return resyncs;
+	}
+
+	@Override
+	public long getCompleted(){
+		long completed = 0;
+		for(TimingStats stats : controllers.values()){
+			completed += stats.getCompleted();
+		}
+		return completed;
+	}
+
+	@Override
+	public long getTimeouts(){
+		long timeouts = 0;
+		for(TimingStats stats : controllers.values()){
+			timeouts += stats.getTimeouts();
+		}
+		return timeouts;
+	}
+
+	@Override
+	public long getFailed(){
+		long failed = 0;
+		for(TimingStats stats : controllers.values()){
+			failed += stats.getFailed();
+		}
+		return failed;
+	}
+
+	@Override
+	public Map<String, TimingStats> getCommands(){
+		return commands;
+	}
+
+	@Override
+	public Map<Integer, TimingStats> getControllers(){
+		return controllers;
+	}
+
+	/**
+	 * @return Timings for a command, e.g. "m.getPos", or null if it has not been sent
+	 */
+	public TimingStats getCommand(String name){
+		return commands.get(name);
+	}
+
+	/**
+	 * @return Timings for a controller address, or null if nothing has been sent to it
+	 */
+	public TimingStats getController(int addr){
+		return controllers.get(addr);
+	}
+
+	@Override
+	public String toString(){
+		StringBuilder text = new StringBuilder();
+		text.append(port).append(": ").append(bytesWritten).append(" bytes written, ").append(bytesReceived)
+				.append(" bytes received, ").append(resyncs).append(" resyncs");
+		for(TimingStats stats : controllers.values()){
+			text.append('\n').append(stats);
+		}
+		for(TimingStats stats : commands.values()){
+			text.append('\n').append(stats);
+		}
+		return text.toString();
+	}
+}
@@ -0,0 +1,40 @@
+package com.dynamicperception.nmx;
+
+import java.util.Map;
+
+/**
+ * The management interface of a session's statistics, see {@link NMXSession#registerMBean()}.
+ * Every attribute is read from a fresh {@link SessionStats} snapshot.
+ */
+public interface SessionStatsMXBean {
+
+	/**
+	 * @return Name of the port the session sends over, or null if it has none
+	 */
+	public String getPort();
+
+	public long getBytesWritten();
+
+	public long getBytesReceived();
+
+	/**
+	 * @return Number of partial response frames dropped while looking for the next header
+	 */
+	public long getResyncs();
+
+	public long getCompleted();
+
+	public long getTimeouts();
+
+	public long getFailed();
+
+	/**
+	 * @return Timings by command name
+	 */
+	public Map<String, TimingStats> getCommands();
+
+	/**
+	 * @return Timings by controller address
+	 */
+	public Map<Integer, TimingStats> getControllers();
+}
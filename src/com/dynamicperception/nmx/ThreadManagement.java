@@ -1,11 +0,0 @@
-package com.dynamicperception.nmx;
-class ThreadManagement {
-	
-	public static void message(String message) {
-	    String threadName =
-	        Thread.currentThread().getName();
-	    System.out.format("%s: %s%n",
-	                      threadName,
-	                      message);
-	}
-}
@@ -0,0 +1,91 @@
+package com.dynamicperception.nmx;
+
+/**
+ * A snapshot of where the time goes for one command or one controller on a session, see
+ * {@link NMXSession#getStats()}. Each command is timed in four stages: waiting in the queue,
+ * being written to the port, until the first byte of its response arrives and until the whole
+ * response has arrived. The response times are measured from the end of the write.
+ */
+public final class TimingStats {
+
+	private final String name;
+	private final long completed;
+	private final long timeouts;
+	private final long failed;
+	private final LatencyStats queueWait;
+	private final LatencyStats write;
+	private final LatencyStats firstByte;
+	private final LatencyStats response;
+
+	TimingStats(String name, long completed, long timeouts, long failed, LatencyStats queueWait,
+			LatencyStats write, LatencyStats firstByte, LatencyStats response){
+		this.name = name;
+		this.completed = completed;
+		this.timeouts = timeouts;
+		this.failed = failed;
+		this.queueWait = queueWait;
+		this.write = write;
+		this.firstByte = firstByte;
+		this.response = response;
+	}
+
+	/**
+	 * @return Name of the command, e.g. "m.getPos", or "Controller 3"
+	 */
+	public String getName(){
+		return name;
+	}
+
+	/**
+	 * @return Number of commands that were answered or did not need an answer
+	 */
+	public long getCompleted(){
+		return completed;
+	}
+
+	public long getTimeouts(){
+		return timeouts;
+	}
+
+	/**
+	 * @return Number of commands that failed for reasons other than a timeout
+	 */
+	public long getFailed(){
+		return failed;
+	}
+
+	/**
+	 * @return Time from submitting a command until the command thread took it off the queue
+	 */
+	public LatencyStats getQueueWait(){
+		return queueWait;
+	}
+
+	/**
+	 * @return Time spent writing the packets to the port. Packets gathered into one write all
+	 * count the whole write.
+	 */
+	public LatencyStats getWrite(){
+		return write;
+	}
+
+	/**
+	 * @return Time from writing a command until the first byte of its response arrived
+	 */
+	public LatencyStats getFirstByte(){
+		return firstByte;
+	}
+
+	/**
+	 * @return Time from writing a command until its whole response arrived
+	 */
+	public LatencyStats getResponse(){
+		return response;
+	}
+
+	@Override
+	public String toString(){
+		return name + ": " + completed + " completed, " + timeouts + " timed out, " + failed + " failed, response "
+				+ String.format("p50 %.2fms, p99 %.2fms, p99.9 %.2fms", response.getP50Millis(), response.getP99Millis(), response.getP999Millis());
+	}
+}
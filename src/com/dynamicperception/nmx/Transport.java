@@ -0,0 +1,56 @@
+package com.dynamicperception.nmx;
+
+/**
+ * A byte link to the NMX controllers that an {@link NMXSession} sends its packets over.
+ * <p>
+ * There are two ways for a transport to hand over received bytes. An event driven
+ * transport, such as the jssc based {@link Serial}, delivers them to the receiver on its
+ * own thread as they arrive. A polled transport, such as {@link LinuxTtyTransport}, only
+ * delivers them from {@link #receive(long)}, which the session's command thread calls
+ * while it waits for a response, so no extra thread is needed.
+ */
+public interface Transport {
+
+	/**
+	 * Consumes received bytes. The bytes are only valid for the duration of the call.
+	 */
+	public static interface Receiver {
+		public void received(byte[] src, int offset, int length);
+	}
+
+	/**
+	 * @param receiver Where received bytes go from now on, or null to stop delivering them
+	 */
+	public void setReceiver(Receiver receiver);
+
+	/**
+	 * Writes bytes to the link, blocking until they have been handed to the driver
+	 * @throws RuntimeException If the write fails
+	 */
+	public void write(byte[] src, int offset, int length);
+
+	/**
+	 * @return Whether received bytes are only delivered by {@link #receive(long)}
+	 */
+	public boolean isPolled();
+
+	/**
+	 * Delivers bytes that have arrived to the receiver, waiting for up to about
+	 * <code>timeoutNanos</code> for the first one. A timeout of 0 only delivers what is
+	 * already waiting. Event driven transports return straight away.
+	 * @throws RuntimeException If reading fails
+	 */
+	public void receive(long timeoutNanos);
+
+	public boolean isOpen();
+
+	/**
+	 * @return Name of the port, used in messages and thread names
+	 */
+	public String getName();
+
+	/**
+	 * Closes the link. Nothing happens if it is already closed.
+	 */
+	public void close();
+}
@@ -0,0 +1,90 @@
+package com.dynamicperception.nmx;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+public class BusSchedulerTest {
+
+	private final BusScheduler scheduler = new BusScheduler();
+
+	@Test
+	public void alternatesBetweenAddresses(){
+		for(int i = 0; i < 3; i++){
+			scheduler.add(request(3));
+		}
+		scheduler.add(request(4));
+		scheduler.add(request(5));
+		assertOrder(3, 4, 5, 3, 3);
+	}
+
+	@Test
+	public void givesEachAddressTurnsOfItsWeight(){
+		scheduler.setWeight(3, 3);
+		for(int i = 0; i < 6; i++){
+			scheduler.add(request(3));
+			scheduler.add(request(4));
+		}
+		assertOrder(3, 3, 3, 4, 3, 3, 3, 4, 4, 4, 4, 4);
+	}
+
+	@Test
+	public void peekShowsNextPoll(){
+		scheduler.add(request(3));
+		scheduler.add(request(4));
+		Request next = scheduler.peek();
+		assertSame(next, scheduler.poll());
+		assertEquals(4, scheduler.peek().addr);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsWeightBelowOne(){
+		scheduler.setWeight(3, 0);
+	}
+
+	@Test
+	public void countsOutcomes(){
+		scheduler.add(request(3));
+		scheduler.add(request(3));
+		scheduler.add(request(3));
+		scheduler.finished(scheduler.poll(), null);
+		scheduler.finished(scheduler.poll(), new NMXTimeoutException("No response"));
+		scheduler.finished(scheduler.poll(), new NMXException("Write failed"));
+
+		ControllerStats stats = scheduler.getStats(3);
+		assertEquals(3, stats.getSent());
+		assertEquals(1, stats.getCompleted());
+		assertEquals(1, stats.getTimeouts());
+		assertEquals(1, stats.getFailed());
+		assertEquals(3, stats.getMaxQueued());
+	}
+
+	@Test
+	public void clearDoesNotCountRequestsAsSent(){
+		scheduler.add(request(3));
+		scheduler.add(request(3));
+		scheduler.add(request(4));
+		scheduler.finished(scheduler.poll(), null);
+
+		assertEquals(2, scheduler.clear().size());
+		assertNull(scheduler.peek());
+		ControllerStats stats = scheduler.getStats(3);
+		assertEquals(2, stats.getSubmitted());
+		assertEquals(1, stats.getSent());
+		assertEquals(0, stats.getQueued());
+		assertEquals(0, scheduler.getStats(4).getSent());
+	}
+
+	private void assertOrder(int... addrs){
+		for(int addr : addrs){
+			assertEquals(addr, scheduler.poll().addr);
+		}
+		assertNull(scheduler.poll());
+	}
+
+	private static Request request(int addr){
+		return new Request(addr, 0, 0, 0, 0, null, true, 0);
+	}
+}
@@ -0,0 +1,118 @@
+package com.dynamicperception.nmx;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CommandTest {
+
+	private final ByteArrayOutputStream log = new ByteArrayOutputStream();
+	private NMXSimulator simulator;
+	private NMXSession session;
+
+	@Before
+	public void setUp(){
+		NMXLog.setOutput(new PrintStream(log, true));
+		simulator = new NMXSimulator(7);
+		simulator.setLatency(1, TimeUnit.MILLISECONDS);
+		session = NMXSession.open(simulator);
+	}
+
+	@After
+	public void tearDown(){
+		session.close();
+		Command.setDebug(false);
+		NMXLog.setOutput(System.out);
+	}
+
+	@Test
+	public void executeByNameIsQuietByDefault() throws InterruptedException{
+		session.execute("m.setSpeed", "0", "12.5");
+		assertEquals(12.5f, (Float) session.execute("m.getSpeed", "0"), 0.01f);
+		assertEquals("", log());
+	}
+
+	@Test
+	public void executeByNameLogsInDebugMode() throws InterruptedException{
+		Command.setDebug(true);
+		session.execute("m.setSpeed", "0", "12.5");
+		session.execute("m.getSpeed", "0");
+		String log = log();
+		assertTrue(log, log.contains("Command: m.setSpeed"));
+		assertTrue(log, log.contains("OK!"));
+		assertTrue(log, log.contains("12.5"));
+	}
+
+	@Test
+	public void failedSetterIsNotLoggedAsOk() throws InterruptedException{
+		Command.setDebug(true);
+		// The write fails, which is not a timeout
+		simulator.close();
+		session.execute("m.setSpeed", "0", "12.5");
+		String log = log();
+		assertTrue(log, log.contains("COM error"));
+		assertFalse(log, log.contains("OK!"));
+	}
+
+	@Test
+	public void consoleOutputKeepsItsOrder() throws InterruptedException{
+		Command.setDebug(true);
+		session.execute("m.setSpeed", "0", "12.5");
+		Command.get("m.getPos").printInfo();
+		String log = log();
+		assertTrue(log, log.indexOf("OK!") < log.indexOf("Name: m.getPos"));
+	}
+
+	@Test
+	public void closePrintsWhatWasLogged(){
+		Command.setDebug(true);
+		session.execute("m.setSpeed", "0", "12.5");
+		session.close();
+		assertTrue(log.toString(), log.toString().contains("OK!"));
+	}
+
+	@Test
+	public void executeByNameReturnsErrorValueForResponseWithoutValue() throws InterruptedException{
+		// Answers with a bare status frame
+		simulator.setErrorRate(1);
+		Integer position = session.execute("m.getPos", "0");
+		assertEquals(Integer.valueOf((int) -1e9), position);
+		assertTrue(log(), log().contains("COM error"));
+	}
+
+	@Test(expected = NMXResponseException.class)
+	public void typedExecuteThrowsForResponseWithoutValue(){
+		simulator.setErrorRate(1);
+		session.executeInt("m.getPos", 0);
+	}
+
+	@Test
+	public void batchLeavesNextCommandOptionsAlone(){
+		NMXComs.setManualData("0102");
+		NMXComs.setResponseDelay(NMXComs.ResponseTiming.LONG_WAIT);
+		try {
+			Command.BatchResult[] results = session.batch()
+					.add("m.sendTo", 0, 777)
+					.add("m.getPos", 0)
+					.execute();
+			assertTrue(String.valueOf(results[0].getError()), results[0].isOk());
+			assertEquals(777, results[1].<Integer>getValue().intValue());
+		} finally {
+			NMXComs.setManualData("");
+			NMXComs.setResponseDelay(0);
+		}
+	}
+
+	private String log() throws InterruptedException{
+		NMXLog.flush();
+		return log.toString();
+	}
+}
@@ -0,0 +1,109 @@
+package com.dynamicperception.nmx;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class FrameDecoderTest {
+
+	// An "OK" confirmation and a response carrying the int 1234 from address 3
+	private static final byte[] OK = bytes("0000000000ff00030100");
+	private static final byte[] VALUE = bytes("0000000000ff000301030204d2");
+
+	private final List<Frame> frames = new ArrayList<Frame>();
+	private FrameDecoder decoder;
+
+	@Before
+	public void setUp(){
+		decoder = new FrameDecoder(new FrameDecoder.Listener() {
+			@Override
+			public void frameReceived(Frame frame, long firstByteNanos){
+				frames.add(frame);
+			}
+		});
+	}
+
+	@Test
+	public void decodesWholeFrames(){
+		feed(OK);
+		feed(VALUE);
+		assertEquals(2, frames.size());
+		assertTrue(frames.get(0).isOk());
+		assertEquals(3, frames.get(1).getAddress());
+		assertEquals(1234, frames.get(1).longValue());
+	}
+
+	@Test
+	public void decodesFramesSplitAcrossReads(){
+		for(byte b : VALUE){
+			feed(new byte[] { b });
+		}
+		assertEquals(1, frames.size());
+		assertEquals(1234, frames.get(0).longValue());
+	}
+
+	@Test
+	public void decodesSeveralFramesInOneRead(){
+		byte[] both = new byte[OK.length + VALUE.length];
+		System.arraycopy(OK, 0, both, 0, OK.length);
+		System.arraycopy(VALUE, 0, both, OK.length, VALUE.length);
+		feed(both);
+		assertEquals(2, frames.size());
+	}
+
+	@Test
+	public void skipsNoiseBeforeHeader(){
+		feed(bytes("ff0000ff1200000000"));
+		feed(VALUE);
+		assertEquals(1, frames.size());
+		assertEquals(1234, frames.get(0).longValue());
+		assertEquals(0, decoder.getResyncCount());
+	}
+
+	@Test
+	public void dropsPartialFrameAfterGap() throws InterruptedException{
+		// A frame that lost its last bytes, followed after a pause by a whole one
+		decoder.received(VALUE, 0, VALUE.length - 2);
+		Thread.sleep(FrameDecoder.RESYNC_GAP_NANOS / 1000000 + 20);
+		feed(OK);
+		assertEquals(1, frames.size());
+		assertTrue(frames.get(0).isOk());
+		assertEquals(1, decoder.getResyncCount());
+	}
+
+	@Test
+	public void reusesRepeatedFrames(){
+		feed(OK);
+		feed(VALUE);
+		feed(OK);
+		assertEquals(3, frames.size());
+		assertSame(frames.get(0), frames.get(2));
+		assertNotSame(frames.get(0), frames.get(1));
+	}
+
+	@Test
+	public void countsBytes(){
+		feed(OK);
+		feed(VALUE);
+		assertEquals(OK.length + VALUE.length, decoder.getByteCount());
+	}
+
+	private void feed(byte[] bytes){
+		decoder.received(bytes, 0, bytes.length);
+	}
+
+	private static byte[] bytes(String hex){
+		byte[] bytes = new byte[hex.length() / 2];
+		for(int i = 0; i < bytes.length; i++){
+			bytes[i] = (byte) Integer.parseInt(hex.substring(2 * i, 2 * i + 2), 16);
+		}
+		return bytes;
+	}
+}
@@ -0,0 +1,49 @@
+package com.dynamicperception.nmx;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class LatencyHistogramTest {
+
+	@Test
+	public void bucketsHoldTheirValues(){
+		for(long micros = 0; micros < LatencyHistogram.upperBound(LatencyHistogram.BUCKETS - 1); micros += 1 + micros / 50){
+			int bucket = LatencyHistogram.bucket(micros);
+			assertTrue(micros < LatencyHistogram.upperBound(bucket));
+			if(bucket > 0)
+				assertTrue(micros >= LatencyHistogram.upperBound(bucket - 1));
+		}
+	}
+
+	@Test
+	public void countsPastLastBucketInIt(){
+		assertEquals(LatencyHistogram.BUCKETS - 1, LatencyHistogram.bucket(Long.MAX_VALUE));
+	}
+
+	@Test
+	public void snapshotSummarizesRecordedValues(){
+		LatencyHistogram histogram = new LatencyHistogram();
+		for(int i = 1; i <= 100; i++){
+			histogram.record(TimeUnit.MILLISECONDS.toNanos(i));
+		}
+		LatencyStats stats = histogram.snapshot();
+		assertEquals(100, stats.getCount());
+		assertEquals(50.5, stats.getMeanMillis(), 1e-9);
+		assertEquals(100, stats.getMaxMillis(), 1e-9);
+		// Percentiles are accurate to about 12%
+		assertEquals(50, stats.getP50Millis(), 50 * 0.125);
+		assertEquals(99, stats.getP99Millis(), 99 * 0.125);
+	}
+
+	@Test
+	public void emptySnapshotIsZero(){
+		LatencyStats stats = new LatencyHistogram().snapshot();
+		assertEquals(0, stats.getCount());
+		assertEquals(0, stats.getP999Millis(), 0);
+		assertEquals(0, stats.getMeanMillis(), 0);
+	}
+}
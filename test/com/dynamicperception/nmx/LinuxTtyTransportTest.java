@@ -0,0 +1,134 @@
+package com.dynamicperception.nmx;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeNoException;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Runs the transport against a pseudo terminal whose other end is a small Python script that
+ * plays the controller, sending back whatever it is sent after {@link #ECHO_DELAY_MILLIS}.
+ * The tests are skipped where there is no Python or pseudo terminal.
+ */
+public class LinuxTtyTransportTest {
+
+	private static final long ECHO_DELAY_MILLIS = 30;
+
+	private static final String CONTROLLER = "import os, pty, select, sys, time\n"
+			+ "master, slave = pty.openpty()\n"
+			+ "print(os.ttyname(slave), flush=True)\n"
+			+ "while True:\n"
+			+ "    ready = select.select([master, sys.stdin], [], [])[0]\n"
+			+ "    if sys.stdin in ready and not sys.stdin.readline():\n"
+			+ "        break\n"
+			+ "    if master in ready:\n"
+			+ "        data = os.read(master, 1024)\n"
+			+ "        time.sleep(" + ECHO_DELAY_MILLIS / 1000.0 + ")\n"
+			+ "        os.write(master, data)\n";
+
+	private final ByteArrayOutputStream received = new ByteArrayOutputStream();
+	private Process controller;
+	private LinuxTtyTransport transport;
+
+	@Before
+	public void setUp() throws IOException{
+		assumeTrue(new File("/dev/ptmx").exists());
+		try {
+			controller = new ProcessBuilder("python3", "-c", CONTROLLER).start();
+		} catch (IOException e) {
+			assumeNoException(e);
+		}
+		String device = new BufferedReader(new InputStreamReader(controller.getInputStream())).readLine();
+		assumeTrue(device != null);
+		transport = LinuxTtyTransport.open(device, 57600);
+		transport.setReceiver(new Transport.Receiver() {
+			@Override
+			public void received(byte[] src, int offset, int length){
+				received.write(src, offset, length);
+			}
+		});
+	}
+
+	@After
+	public void tearDown(){
+		if(transport != null)
+			transport.close();
+		if(controller != null)
+			controller.destroy();
+	}
+
+	@Test
+	public void isPolled(){
+		assertTrue(transport.isPolled());
+	}
+
+	@Test
+	public void receiveHandsOverResponseWhenItArrives(){
+		byte[] packet = new Request(3, 1, 106, 0, 0, null, true, 0).encode();
+		transport.write(packet, 0, packet.length);
+
+		long start = System.nanoTime();
+		long deadline = start + TimeUnit.SECONDS.toNanos(1);
+		while(received.size() < packet.length && System.nanoTime() < deadline){
+			transport.receive(deadline - System.nanoTime());
+		}
+		long elapsed = System.nanoTime() - start;
+		assertArrayEquals(packet, received.toByteArray());
+		assertTrue("Took " + elapsed + "ns", elapsed < TimeUnit.MILLISECONDS.toNanos(ECHO_DELAY_MILLIS + 50));
+	}
+
+	@Test
+	public void receiveKeepsToShortTimeout(){
+		long start = System.nanoTime();
+		transport.receive(TimeUnit.MILLISECONDS.toNanos(5));
+		long elapsed = System.nanoTime() - start;
+		assertEquals(0, received.size());
+		assertTrue("Took " + elapsed + "ns", elapsed < TimeUnit.MILLISECONDS.toNanos(40));
+	}
+
+	@Test
+	public void receiveAfterTimeoutStillHandsOverResponse(){
+		byte[] packet = new Request(3, 1, 106, 0, 0, null, true, 0).encode();
+		transport.write(packet, 0, packet.length);
+		// Gives up before the echo arrives, which closes the read channel
+		transport.receive(TimeUnit.MILLISECONDS.toNanos(5));
+		assertEquals(0, received.size());
+
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+		while(received.size() < packet.length && System.nanoTime() < deadline){
+			transport.receive(deadline - System.nanoTime());
+		}
+		assertArrayEquals(packet, received.toByteArray());
+	}
+
+	@Test
+	public void receiveWithoutTimeoutDoesNotWait(){
+		long start = System.nanoTime();
+		transport.receive(0);
+		assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(20));
+	}
+
+	@Test
+	public void receiveStopsWhenInterrupted(){
+		Thread.currentThread().interrupt();
+		try {
+			long start = System.nanoTime();
+			transport.receive(TimeUnit.SECONDS.toNanos(1));
+			assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(100));
+		} finally {
+			Thread.interrupted();
+		}
+	}
+}
@@ -0,0 +1,276 @@
+package com.dynamicperception.nmx;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class NMXSessionTest {
+
+	private static final int ADDR = 3;
+
+	private Thread commandThread;
+	private NMXSession session;
+
+	@After
+	public void tearDown(){
+		if(session != null)
+			session.close();
+	}
+
+	@Test
+	public void roundTripsValues(){
+		for(boolean polled : new boolean[] { false, true }){
+			NMXSimulator simulator = new NMXSimulator(1, polled);
+			open(simulator);
+			session.executeVoid("m.setSpeed", 0, 12.5f);
+			session.executeVoid("m.sendTo", 1, 1234);
+			assertEquals(12.5f, session.executeFloat("m.getSpeed", 0), 0.01f);
+			assertEquals(1234, session.executeInt("m.getPos", 1));
+			assertEquals(0, session.executeInt("m.getPos", 0));
+			assertEquals(NMXSimulator.FIRMWARE_VERSION, session.executeInt("g.getFirmware"));
+			session.close();
+		}
+	}
+
+	@Test
+	public void typedMethodsReturnValues(){
+		open(new NMXSimulator(1));
+		NMXController controller = session.controller(ADDR);
+		controller.motor(1).sendTo(1234);
+		assertEquals(1234, controller.motor(1).getPos());
+		assertEquals(NMXSimulator.NAME, controller.general().getName());
+	}
+
+	@Test
+	public void skipsLineNoise(){
+		NMXSimulator simulator = new NMXSimulator(1);
+		simulator.setNoiseRate(0.5);
+		open(simulator);
+		session.executeVoid("m.sendTo", 1, 1234);
+		for(int i = 0; i < 50; i++){
+			assertEquals(1234, session.executeInt("m.getPos", 1));
+		}
+	}
+
+	@Test(expected = NMXTimeoutException.class)
+	public void missingResponseTimesOut(){
+		NMXSimulator simulator = new NMXSimulator(1);
+		simulator.setDropRate(1);
+		open(simulator);
+		session.executeInt("m.getPos", 1);
+	}
+
+	@Test
+	public void matchesPipelinedResponsesInOrder(){
+		NMXSimulator simulator = new NMXSimulator(1);
+		simulator.setLatency(1, TimeUnit.MILLISECONDS);
+		open(simulator);
+		session.setPipelineWindow(4);
+		final AtomicInteger inFlight = new AtomicInteger();
+		final AtomicInteger maxInFlight = new AtomicInteger();
+		session.addListener(new CommandListener() {
+			@Override
+			public void commandSent(int addr, int subAddr, int command){
+				int count = inFlight.incrementAndGet();
+				if(count > maxInFlight.get())
+					maxInFlight.set(count);
+			}
+
+			@Override
+			public void responseReceived(int addr, int subAddr, int command, long latencyNanos){
+				inFlight.decrementAndGet();
+			}
+		});
+		for(int motor = 0; motor < 3; motor++){
+			session.executeVoid("m.sendTo", motor, 1000 * (motor + 1));
+		}
+
+		List<CompletableFuture<Integer>> positions = new ArrayList<CompletableFuture<Integer>>();
+		for(int i = 0; i < 30; i++){
+			positions.add(session.<Integer>executeAsync("m.getPos", i % 3));
+		}
+		for(int i = 0; i < positions.size(); i++){
+			assertEquals(1000 * (i % 3 + 1), positions.get(i).join().intValue());
+		}
+		assertTrue(maxInFlight.get() > 1);
+	}
+
+	@Test
+	public void sharesLinkByControllerWeight() throws InterruptedException{
+		NMXSimulator simulator = new NMXSimulator(1);
+		// Keeps the command thread busy while the queue fills up
+		simulator.setLatency("g.getFirmware", 50, TimeUnit.MILLISECONDS);
+		open(simulator);
+		session.setControllerWeight(3, 3);
+		final List<Integer> sent = Collections.synchronizedList(new ArrayList<Integer>());
+		session.addListener(new CommandListener() {
+			@Override
+			public void commandSent(int addr, int subAddr, int command){
+				sent.add(addr);
+			}
+		});
+
+		CompletableFuture<Command.BatchResult[]> first = session.controller(3).batch().add("g.getFirmware").executeAsync();
+		awaitTaken(1);
+		List<CompletableFuture<Command.BatchResult[]>> positions = new ArrayList<CompletableFuture<Command.BatchResult[]>>();
+		for(int i = 0; i < 6; i++){
+			positions.add(session.controller(3).batch().add("m.getPos", 0).executeAsync());
+			positions.add(session.controller(4).batch().add("m.getPos", 0).executeAsync());
+		}
+		first.join();
+		for(CompletableFuture<Command.BatchResult[]> position : positions){
+			position.join();
+		}
+		assertEquals(Arrays.asList(3, 3, 3, 3, 4, 3, 3, 3, 4, 4, 4, 4, 4), sent);
+	}
+
+	@Test
+	public void lateResponseIsNotTakenForNextOne(){
+		for(boolean polled : new boolean[] { false, true }){
+			NMXSimulator simulator = new NMXSimulator(1, polled);
+			open(simulator);
+			session.executeVoid("m.sendTo", 0, 777);
+			session.executeVoid("m.setBacklash", 0, 55);
+
+			// Answers after the default timeout has passed
+			simulator.setLatency("m.getPos", NMXComs.ResponseTiming.DEFAULT + 40, TimeUnit.MILLISECONDS);
+			try {
+				session.executeInt("m.getPos", 0);
+				fail("The response arrived in time");
+			} catch (NMXTimeoutException e) {
+				// expected
+			}
+			assertEquals(55, session.executeInt("m.getBacklash", 0));
+			session.close();
+		}
+	}
+
+	@Test
+	public void timeoutFailsRestOfWindow() throws InterruptedException{
+		NMXSimulator simulator = new NMXSimulator(1);
+		open(simulator);
+		session.setPipelineWindow(4);
+		session.executeVoid("m.sendTo", 0, 777);
+		session.executeVoid("m.setBacklash", 0, 55);
+		simulator.setLatency("m.getPos", NMXComs.ResponseTiming.DEFAULT + 40, TimeUnit.MILLISECONDS);
+		// Keeps the command thread busy while the commands queue up, so they share the window
+		simulator.setLatency("g.getFirmware", 50, TimeUnit.MILLISECONDS);
+		CompletableFuture<Integer> first = session.executeAsync("g.getFirmware");
+		awaitTaken(3);
+
+		List<CompletableFuture<Integer>> responses = new ArrayList<CompletableFuture<Integer>>();
+		responses.add(session.<Integer>executeAsync("m.getPos", 0));
+		responses.add(session.<Integer>executeAsync("m.getBacklash", 0));
+		responses.add(session.<Integer>executeAsync("m.getBacklash", 0));
+		for(int i = 0; i < responses.size(); i++){
+			try {
+				responses.get(i).join();
+				fail("Command " + i + " was answered");
+			} catch (CompletionException e) {
+				assertEquals(i == 0, e.getCause() instanceof NMXTimeoutException);
+			}
+		}
+		assertEquals(NMXSimulator.FIRMWARE_VERSION, first.join().intValue());
+		assertEquals(55, session.executeInt("m.getBacklash", 0));
+		assertEquals(777, session.executeInt("m.getPos", 0));
+	}
+
+	@Test
+	public void eepromWriteIsNotCutOff(){
+		NMXSimulator simulator = new NMXSimulator(1);
+		simulator.setLatency("m.setBacklash", 250, TimeUnit.MILLISECONDS);
+		open(simulator);
+		session.executeVoid("m.sendTo", 0, 777);
+		session.executeVoid("m.setBacklash", 0, 55);
+		assertEquals(777, session.executeInt("m.getPos", 0));
+		assertEquals(55, session.executeInt("m.getBacklash", 0));
+	}
+
+	@Test
+	public void polledShutdownStopsWaitingForResponse() throws Exception{
+		NMXSimulator simulator = new NMXSimulator(1, true);
+		simulator.setDropRate(1);
+		open(simulator);
+
+		NMXComs.setResponseDelay(NMXComs.ResponseTiming.LONG_WAIT);
+		CompletableFuture<Frame> response = session.cmdAsync(ADDR, 1, 106, 0, 0, true);
+		Thread.sleep(50);
+		long start = System.nanoTime();
+		session.shutdown();
+
+		try {
+			response.get(1, TimeUnit.SECONDS);
+			fail("The command was answered");
+		} catch (ExecutionException e) {
+			assertFalse(e.getCause() instanceof NMXTimeoutException);
+		}
+		commandThread.join(1000);
+		assertFalse(commandThread.isAlive());
+		assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(NMXComs.ResponseTiming.LONG_WAIT / 2));
+	}
+
+	@Test
+	public void newTransportWaitsForOldCommandThread() throws InterruptedException{
+		NMXSimulator simulator = new NMXSimulator(1);
+		simulator.setLatency("g.getFirmware", 50, TimeUnit.MILLISECONDS);
+		open(simulator);
+		CompletableFuture<Integer> pending = session.executeAsync("g.getFirmware");
+		awaitTaken(1);
+		Thread oldThread = commandThread;
+
+		NMXSimulator replacement = new NMXSimulator(1);
+		session.setTransport(replacement);
+		assertFalse(oldThread.isAlive());
+		assertTrue(pending.isCompletedExceptionally());
+		session.executeVoid("m.sendTo", 0, 777);
+		assertEquals(777, session.executeInt("m.getPos", 0));
+		replacement.close();
+	}
+
+	@Test
+	public void closeWaitsForCommandThread() throws InterruptedException{
+		NMXSimulator simulator = new NMXSimulator(1);
+		simulator.setLatency("g.getFirmware", 50, TimeUnit.MILLISECONDS);
+		open(simulator);
+		session.executeAsync("g.getFirmware");
+		awaitTaken(1);
+		session.close();
+		assertFalse(commandThread.isAlive());
+	}
+
+	/**
+	 * Waits until the command thread has taken <code>count</code> commands to the controller
+	 * off the queue
+	 */
+	private void awaitTaken(long count) throws InterruptedException{
+		while(session.getControllerStats(ADDR).getSent() < count){
+			Thread.sleep(1);
+		}
+	}
+
+	private void open(Transport transport){
+		session = NMXSession.open(transport, new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable runnable){
+				commandThread = new Thread(runnable);
+				commandThread.setDaemon(true);
+				return commandThread;
+			}
+		});
+	}
+}
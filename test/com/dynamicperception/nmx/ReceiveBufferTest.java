@@ -0,0 +1,172 @@
+package com.dynamicperception.nmx;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class ReceiveBufferTest {
+
+	@Test
+	public void roundsCapacityUpToPowerOfTwo(){
+		assertEquals(16, new ReceiveBuffer(9, false).capacity());
+		assertEquals(16, new ReceiveBuffer(16, false).capacity());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsEmptyCapacity(){
+		new ReceiveBuffer(0, false);
+	}
+
+	@Test
+	public void backpressureStoresOnlyWhatFits(){
+		ReceiveBuffer buffer = new ReceiveBuffer(8, false);
+		assertEquals(5, buffer.write(sequence(0, 5), 0, 5));
+		assertEquals(3, buffer.write(sequence(5, 5), 0, 5));
+		assertEquals(0, buffer.free());
+		assertEquals(0, buffer.write(sequence(8, 1), 0, 1));
+		assertEquals(0, buffer.getDropped());
+
+		byte[] dst = new byte[8];
+		assertEquals(8, buffer.read(dst, 0, 8));
+		assertArrayEquals(sequence(0, 8), dst);
+		assertTrue(buffer.isEmpty());
+	}
+
+	@Test
+	public void wrapsAroundTheEnd(){
+		ReceiveBuffer buffer = new ReceiveBuffer(8, false);
+		buffer.write(sequence(0, 6), 0, 6);
+		assertEquals(4, buffer.skip(4));
+		assertEquals(6, buffer.write(sequence(6, 6), 0, 6));
+
+		byte[] dst = new byte[8];
+		assertEquals(8, buffer.peek(dst, 0, 8));
+		assertArrayEquals(sequence(4, 8), dst);
+		assertEquals(8, buffer.available());
+		assertEquals(11, buffer.newest());
+		assertEquals(4, buffer.indexOf((byte) 7));
+		assertEquals(-1, buffer.indexOf((byte) 42));
+		assertEquals(8, buffer.read(dst, 0, 8));
+		assertArrayEquals(sequence(4, 8), dst);
+		assertEquals(-1, buffer.read());
+	}
+
+	@Test
+	public void dropOldestMakesRoom(){
+		ReceiveBuffer buffer = new ReceiveBuffer(8, true);
+		buffer.write(sequence(0, 6), 0, 6);
+		assertEquals(5, buffer.write(sequence(6, 5), 0, 5));
+		assertEquals(3, buffer.getDropped());
+		assertEquals(3, buffer.read());
+
+		byte[] dst = new byte[7];
+		assertEquals(7, buffer.read(dst, 0, 7));
+		assertArrayEquals(sequence(4, 7), dst);
+	}
+
+	@Test
+	public void dropOldestKeepsNewestOfLongWrite(){
+		ReceiveBuffer buffer = new ReceiveBuffer(8, true);
+		buffer.write(sequence(0, 2), 0, 2);
+		assertEquals(8, buffer.write(sequence(2, 12), 0, 12));
+		assertEquals(6, buffer.getDropped());
+
+		byte[] dst = new byte[8];
+		assertEquals(8, buffer.read(dst, 0, 8));
+		assertArrayEquals(sequence(6, 8), dst);
+	}
+
+	@Test
+	public void clearRemovesEverything(){
+		ReceiveBuffer buffer = new ReceiveBuffer(8, true);
+		buffer.write(sequence(0, 5), 0, 5);
+		buffer.clear();
+		assertTrue(buffer.isEmpty());
+		assertEquals(-1, buffer.newest());
+	}
+
+	@Test(timeout = 10000)
+	public void backpressureDeliversEveryByteInOrderAcrossThreads() throws Exception{
+		final ReceiveBuffer buffer = new ReceiveBuffer(64, false);
+		final int total = 1000000;
+		Thread producer = produce(buffer, total);
+
+		byte[] dst = new byte[48];
+		int expected = 0;
+		while(expected < total){
+			int n = buffer.read(dst, 0, dst.length);
+			for(int i = 0; i < n; i++){
+				assertEquals((byte) expected++, dst[i]);
+			}
+			if(n == 0)
+				Thread.yield();
+		}
+		producer.join();
+		assertTrue(buffer.isEmpty());
+		assertEquals(0, buffer.getDropped());
+	}
+
+	@Test(timeout = 10000)
+	public void dropOldestNeverReturnsTornReadsAcrossThreads() throws Exception{
+		final ReceiveBuffer buffer = new ReceiveBuffer(64, true);
+		final int total = 1000000;
+		Thread producer = produce(buffer, total);
+
+		// Bytes may go missing between reads, but each read must be one run of the sequence
+		byte[] dst = new byte[48];
+		long read = 0;
+		while(producer.isAlive() || !buffer.isEmpty()){
+			int n = buffer.read(dst, 0, dst.length);
+			for(int i = 1; i < n; i++){
+				assertEquals((byte) (dst[i - 1] + 1), dst[i]);
+			}
+			read += n;
+			if(n == 0)
+				Thread.yield();
+		}
+		producer.join();
+		assertEquals(total, read + buffer.getDropped());
+	}
+
+	/**
+	 * Starts a thread writing <code>total</code> bytes counting up from 0, retrying whatever
+	 * does not fit. Both sides yield when they cannot make progress, as the test may run on a
+	 * single processor.
+	 */
+	private static Thread produce(final ReceiveBuffer buffer, final int total){
+		Thread producer = new Thread(new Runnable() {
+			@Override
+			public void run(){
+				byte[] chunk = new byte[37];
+				int next = 0;
+				while(next < total){
+					int length = Math.min(chunk.length, total - next);
+					for(int i = 0; i < length; i++){
+						chunk[i] = (byte) (next + i);
+					}
+					int offset = 0;
+					while(offset < length){
+						int n = buffer.write(chunk, offset, length - offset);
+						offset += n;
+						if(n == 0)
+							Thread.yield();
+					}
+					next += length;
+				}
+			}
+		});
+		producer.setDaemon(true);
+		producer.start();
+		return producer;
+	}
+
+	private static byte[] sequence(int start, int length){
+		byte[] bytes = new byte[length];
+		for(int i = 0; i < length; i++){
+			bytes[i] = (byte) (start + i);
+		}
+		return bytes;
+	}
+}
@@ -0,0 +1,74 @@
+package com.dynamicperception.nmx;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class ResponseDeadlinesTest {
+
+	private static final long DEFAULT = TimeUnit.MILLISECONDS.toNanos(NMXComs.ResponseTiming.DEFAULT);
+	private static final long LONG_WAIT = TimeUnit.MILLISECONDS.toNanos(NMXComs.ResponseTiming.LONG_WAIT);
+
+	private static final int MOTOR = 1;
+	private static final int GET_POS = Command.get("m.getPos").getCommandNum();
+
+	private final ResponseDeadlines deadlines = new ResponseDeadlines();
+
+	@Test
+	public void startsAtDefault(){
+		assertEquals(DEFAULT, deadlines.timeoutNanos(MOTOR, GET_POS));
+	}
+
+	@Test
+	public void neverDropsBelowDefault(){
+		respond(MOTOR, GET_POS, 200, TimeUnit.MICROSECONDS.toNanos(500));
+		assertEquals(DEFAULT, deadlines.timeoutNanos(MOTOR, GET_POS));
+	}
+
+	@Test
+	public void learnsSlowCommands(){
+		long latency = TimeUnit.MILLISECONDS.toNanos(100);
+		respond(MOTOR, GET_POS, 200, latency);
+		long timeout = deadlines.timeoutNanos(MOTOR, GET_POS);
+		assertTrue(timeout >= 2 * latency);
+		assertTrue(timeout < LONG_WAIT);
+	}
+
+	@Test
+	public void doublesAfterTimeout(){
+		deadlines.timedOut(MOTOR, GET_POS, DEFAULT);
+		assertEquals(2 * DEFAULT, deadlines.timeoutNanos(MOTOR, GET_POS));
+		for(int i = 0; i < 10; i++){
+			deadlines.timedOut(MOTOR, GET_POS, deadlines.timeoutNanos(MOTOR, GET_POS));
+		}
+		assertEquals(LONG_WAIT, deadlines.timeoutNanos(MOTOR, GET_POS));
+	}
+
+	@Test
+	public void givesEepromWritesLongWait(){
+		int setBacklash = Command.get("m.setBacklash").getCommandNum();
+		for(int motor = 1; motor <= Command.MOTOR_COUNT; motor++){
+			assertEquals(LONG_WAIT, deadlines.timeoutNanos(motor, setBacklash));
+		}
+		respond(MOTOR, setBacklash, 200, TimeUnit.MILLISECONDS.toNanos(1));
+		assertEquals(LONG_WAIT, deadlines.timeoutNanos(MOTOR, setBacklash));
+
+		Command setAddress = Command.get("g.setAddress");
+		assertEquals(LONG_WAIT, deadlines.timeoutNanos(setAddress.getSubaddr(), setAddress.getCommandNum()));
+	}
+
+	@Test
+	public void ignoresUnknownSubAddresses(){
+		deadlines.responded(9, GET_POS, LONG_WAIT);
+		assertEquals(DEFAULT, deadlines.timeoutNanos(9, GET_POS));
+	}
+
+	private void respond(int subAddr, int command, int count, long latencyNanos){
+		for(int i = 0; i < count; i++){
+			deadlines.responded(subAddr, command, latencyNanos);
+		}
+	}
+}
@@ -0,0 +1,681 @@
+package com.dynamicperception.nmx;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * An NMX controller simulated in memory, for tests and benchmarks on machines without
+ * hardware. It takes the place of a serial port:
+ * <pre>
+ * NMXSimulator simulator = new NMXSimulator(1);
+ * simulator.setLatency(2, TimeUnit.MILLISECONDS);
+ * NMXSession session = NMXSession.open(simulator);
+ * </pre>
+ * Command packets are parsed as the firmware would parse them and answered with the same
+ * framing. Every controller address gets its own state: setters store their value where the
+ * matching getter reads it (<code>m.setSpeed</code> and <code>m.getSpeed</code>), moves update
+ * the motor position, the program commands change the run state and the key frame commands
+ * fill a key frame table per axis that <code>k.getPosAt</code> interpolates.
+ * <p>
+ * Like the firmware, the simulator answers one command at a time: each response is sent the
+ * configured latency, plus a random jitter, after the previous one or after the command was
+ * written, whichever is later. Responses can also be dropped, replaced with an error status or
+ * preceded by line noise at configurable rates. All randomness comes from one seeded
+ * generator, so a run can be repeated exactly.
+ * <p>
+ * The simulator is not part of the library. It lives in its own source root, shared by the
+ * tests and the benchmarks, and is in the library's package so that it can use the
+ * package-private encoder and command table.
+ */
+public final class NMXSimulator implements Transport {
+
+	private static final String THREAD_NAME = "NMX Simulator";
+
+	/** Version reported by <code>g.getFirmware</code> */
+	public static final int FIRMWARE_VERSION = 90;
+	/** Name reported by <code>g.getName</code> */
+	public static final String NAME = "NMX Simulator";
+
+	private static final int SUB_ADDRESSES = 6;
+	private static final int MOTORS = 3;
+	private static final int KEY_FRAMES = 64;
+	private static final int POOL_SIZE = 256;
+	private static final int MAX_PACKET_LENGTH = PacketEncoder.DATA_OFFSET + 255;
+	private static final float VOLTAGE = 12f;
+
+	// Status codes of the response frames
+	private static final int STATUS_ERROR = 0;
+	private static final int STATUS_OK = 1;
+
+	// The commands the simulator gives behavior beyond storing and returning values
+	private static final int G_START = number(Command.Names.General.START_PROGRAM);
+	private static final int G_PAUSE = number(Command.Names.General.PAUSE_PROGRAM);
+	private static final int G_STOP = number(Command.Names.General.STOP_PROGRAM);
+	private static final int G_GET_FIRMWARE = number(Command.Names.General.GET_FIRMWARE);
+	private static final int G_GET_RUN_STATUS = number(Command.Names.General.GET_RUN_STATUS);
+	private static final int G_GET_NAME = number(Command.Names.General.GET_NAME);
+	private static final int G_GET_VOLTAGE = number(Command.Names.General.GET_VOLTAGE);
+	private static final int G_IS_PROGRAM_VALID = number(Command.Names.General.IS_PROGRAM_VALID);
+	private static final int M_SET_HOME = number(Command.Names.Motor.SET_HOME);
+	private static final int M_SET_END_HERE = number(Command.Names.Motor.SET_END_HERE);
+	private static final int M_SEND_HOME = number(Command.Names.Motor.SEND_HOME);
+	private static final int M_SEND_END = number(Command.Names.Motor.SEND_END);
+	private static final int M_SEND_TO = number(Command.Names.Motor.SEND_TO);
+	private static final int M_GET_POS = number(Command.Names.Motor.GET_POS);
+	private static final int M_GET_END = number(Command.Names.Motor.GET_END);
+	private static final int K_SET_AXIS = number(Command.Names.KeyFrame.SET_AXIS);
+	private static final int K_SET_COUNT = number(Command.Names.KeyFrame.SET_COUNT);
+	private static final int K_SET_ABSCISSA = number(Command.Names.KeyFrame.SET_ABSCISSA);
+	private static final int K_SET_POS = number(Command.Names.KeyFrame.SET_POS);
+	private static final int K_SET_VEL = number(Command.Names.KeyFrame.SET_VEL);
+	private static final int K_GET_COUNT = number(Command.Names.KeyFrame.GET_COUNT);
+	private static final int K_GET_POS_AT = number(Command.Names.KeyFrame.GET_POS_AT);
+	private static final int K_GET_VEL_AT = number(Command.Names.KeyFrame.GET_VEL_AT);
+	private static final int K_GET_KF_ABSCISSA = number(Command.Names.KeyFrame.GET_KF_ABSCISSA);
+	private static final int K_GET_KF_POS = number(Command.Names.KeyFrame.GET_KF_POS);
+	private static final int K_GET_KF_VEL = number(Command.Names.KeyFrame.GET_KF_VEL);
+	private static final int K_START = number(Command.Names.KeyFrame.START_PROGRAM);
+	private static final int K_PAUSE = number(Command.Names.KeyFrame.PAUSE_PROGRAM);
+	private static final int K_STOP = number(Command.Names.KeyFrame.STOP_PROGRAM);
+	private static final int K_GET_RUN_STATE = number(Command.Names.KeyFrame.GET_RUN_STATE);
+
+	// Commands by type ordinal and number, and the value slot each one stores to or reads
+	// from: a getter shares the slot of the setter with the same property name
+	private static final Command[][] COMMANDS = new Command[Command.Type.values().length][256];
+	private static final int[][] SLOTS = new int[Command.Type.values().length][256];
+	static {
+		for(Command.Type type : Command.Type.values()){
+			if(type == Command.Type.NOT_A_TYPE)
+				continue;
+			List<Command> commands = Command.getList(type);
+			Map<String, Integer> setters = new HashMap<String, Integer>();
+			for(Command command : commands){
+				if(COMMANDS[type.ordinal()][command.getCommandNum()] == null)
+					COMMANDS[type.ordinal()][command.getCommandNum()] = command;
+				String property = property(command.getName(), "set");
+				if(property != null && !setters.containsKey(property))
+					setters.put(property, command.getCommandNum());
+			}
+			for(Command command : commands){
+				Integer slot = null;
+				String property = property(command.getName(), "get");
+				if(property == null)
+					property = property(command.getName(), "is");
+				if(property != null)
+					slot = setters.get(property);
+				SLOTS[type.ordinal()][command.getCommandNum()] = slot == null ? command.getCommandNum() : slot;
+			}
+		}
+	}
+
+	/**
+	 * The state of one simulated controller
+	 */
+	private static final class Controller {
+		// Stored values by sub-address and slot
+		final double[][] values = new double[SUB_ADDRESSES][256];
+		int runStatus;
+		int keyFrameRunState;
+		// Key frame tables by axis: abscissa, position and velocity
+		int axis;
+		final int[] keyFrameCount = new int[MOTORS];
+		final float[][][] keyFrames = new float[MOTORS][3][KEY_FRAMES];
+		// Next key frame written by each of k.setAbscissa, k.setPos and k.setVel
+		final int[] keyFrameIndex = new int[3];
+	}
+
+	/**
+	 * A response waiting for its time to be sent. Responses are pooled so that the
+	 * simulator does not allocate while running.
+	 */
+	private static final class Response {
+		final byte[] bytes = new byte[Frame.MAX_LENGTH + 8];
+		int length;
+		long due;
+	}
+
+	private final boolean polled;
+	private final Random random;
+	private final Map<Integer, Controller> controllers = new HashMap<Integer, Controller>();
+
+	private volatile Receiver receiver;
+	private volatile boolean open = true;
+
+	// Options
+	private volatile long latencyNanos = 0;
+	private volatile long jitterNanos = 0;
+	private final Map<Integer, Long> commandLatency = new HashMap<Integer, Long>();
+	private volatile double dropRate = 0;
+	private volatile double errorRate = 0;
+	private volatile double noiseRate = 0;
+
+	// Statistics
+	private final AtomicLong commandCount = new AtomicLong();
+	private final AtomicLong droppedCount = new AtomicLong();
+
+	// Written bytes that do not make up a whole packet yet
+	private final byte[] pending = new byte[MAX_PACKET_LENGTH * 2];
+	private int pendingLength = 0;
+
+	// Responses in the order they are sent, and the spare ones. Guarded by this.
+	private final ArrayDeque<Response> queued = new ArrayDeque<Response>(POOL_SIZE);
+	private final ArrayDeque<Response> pool = new ArrayDeque<Response>(POOL_SIZE);
+	private long busyUntil = 0;
+	private final Thread sender;
+
+	/**
+	 * Creates a simulator that sends its responses from its own thread, like {@link Serial}
+	 * @param seed Seed for the jitter and the injected faults
+	 */
+	public NMXSimulator(long seed){
+		this(seed, false);
+	}
+
+	/**
+	 * @param seed Seed for the jitter and the injected faults
+	 * @param polled Whether responses are only delivered from {@link #receive(long)} on the
+	 * session's command thread, like {@link LinuxTtyTransport}, rather than from a thread of
+	 * the simulator's own
+	 */
+	public NMXSimulator(long seed, boolean polled){
+		this.random = new Random(seed);
+		this.polled = polled;
+		for(int i = 0; i < POOL_SIZE; i++){
+			pool.add(new Response());
+		}
+		if(polled){
+			sender = null;
+		}
+		else{
+			sender = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					sendResponses();
+				}
+			}, THREAD_NAME);
+			sender.setDaemon(true);
+			sender.start();
+		}
+	}
+
+	// ******** Options ******** //
+
+	/**
+	 * Sets how long the simulated controller takes to answer a command
+	 */
+	public void setLatency(long latency, TimeUnit unit){
+		latencyNanos = unit.toNanos(latency);
+	}
+
+	/**
+	 * Sets how long one command takes to answer, overriding {@link #setLatency(long, TimeUnit)}
+	 * @param name Name of the command, e.g. "m.sendTo"
+	 */
+	public void setLatency(String name, long latency, TimeUnit unit){
+		Command command = Command.get(name);
+		synchronized(commandLatency){
+			commandLatency.put(key(command.getType().ordinal(), command.getCommandNum()), unit.toNanos(latency));
+		}
+	}
+
+	/**
+	 * Sets the upper bound of a random delay added to every response
+	 */
+	public void setJitter(long jitter, TimeUnit unit){
+		jitterNanos = unit.toNanos(jitter);
+	}
+
+	/**
+	 * @param rate Fraction of commands that get no response at all, from 0 to 1
+	 */
+	public void setDropRate(double rate){
+		dropRate = checkRate(rate);
+	}
+
+	/**
+	 * @param rate Fraction of commands answered with an error status instead of their
+	 * response, from 0 to 1
+	 */
+	public void setErrorRate(double rate){
+		errorRate = checkRate(rate);
+	}
+
+	/**
+	 * @param rate Fraction of responses preceded by a few bytes of line noise, from 0 to 1
+	 */
+	public void setNoiseRate(double rate){
+		noiseRate = checkRate(rate);
+	}
+
+	/**
+	 * @return Number of command packets received
+	 */
+	public long getCommandCount(){
+		return commandCount.get();
+	}
+
+	/**
+	 * @return Number of responses dropped on purpose
+	 */
+	public long getDroppedCount(){
+		return droppedCount.get();
+	}
+
+	// ******** Transport ******** //
+
+	@Override
+	public void setReceiver(Receiver receiver){
+		this.receiver = receiver;
+	}
+
+	@Override
+	public synchronized void write(byte[] src, int offset, int length){
+		if(!open)
+			throw new NMXException("The simulator has been closed");
+		int end = offset + length;
+		while(offset < end){
+			int count = Math.min(end - offset, pending.length - pendingLength);
+			System.arraycopy(src, offset, pending, pendingLength, count);
+			pendingLength += count;
+			offset += count;
+			parsePackets();
+		}
+	}
+
+	@Override
+	public boolean isPolled(){
+		return polled;
+	}
+
+	@Override
+	public void receive(long timeoutNanos){
+		if(!polled)
+			return;
+		long deadline = System.nanoTime() + timeoutNanos;
+		Response response;
+		while((response = nextDue(deadline)) != null){
+			deliver(response);
+			// Anything else that is due goes out without waiting
+			deadline = System.nanoTime();
+		}
+	}
+
+	@Override
+	public boolean isOpen(){
+		return open;
+	}
+
+	@Override
+	public String getName(){
+		return "simulator";
+	}
+
+	@Override
+	public void close(){
+		synchronized(this){
+			open = false;
+			notifyAll();
+		}
+	}
+
+	// ******** Simulated Controller ******** //
+
+	/**
+	 * Handles every whole packet in the pending bytes, skipping anything that is not a packet
+	 */
+	private void parsePackets(){
+		int start = 0;
+		while(true){
+			// Find the header
+			while(start + PacketEncoder.DATA_OFFSET <= pendingLength && !isHeader(start)){
+				start++;
+			}
+			if(start + PacketEncoder.DATA_OFFSET > pendingLength)
+				break;
+			int dataLength = pending[start + PacketEncoder.DATA_OFFSET - 1] & 0xFF;
+			int packetLength = PacketEncoder.DATA_OFFSET + dataLength;
+			if(start + packetLength > pendingLength)
+				break;
+			handle(pending[start + 6] & 0xFF, pending[start + 7] & 0xFF, pending[start + 8] & 0xFF,
+					start + PacketEncoder.DATA_OFFSET, dataLength);
+			start += packetLength;
+		}
+		System.arraycopy(pending, start, pending, 0, pendingLength - start);
+		pendingLength -= start;
+	}
+
+	private boolean isHeader(int offset){
+		for(int i = 0; i < 5; i++){
+			if(pending[offset + i] != 0)
+				return false;
+		}
+		return pending[offset + 5] == (byte) 0xFF;
+	}
+
+	/**
+	 * Carries out one command and queues its response
+	 */
+	private void handle(int addr, int subAddr, int number, int dataOffset, int dataLength){
+		commandCount.incrementAndGet();
+		Command.Type type = typeOf(subAddr);
+		Command command = type == null ? null : COMMANDS[type.ordinal()][number];
+
+		long now = System.nanoTime();
+		long latency = latencyNanos;
+		if(command != null && !commandLatency.isEmpty()){
+			synchronized(commandLatency){
+				Long override = commandLatency.get(key(type.ordinal(), number));
+				if(override != null)
+					latency = override;
+			}
+		}
+		if(jitterNanos > 0)
+			latency += (long) (random.nextDouble() * jitterNanos);
+		busyUntil = Math.max(busyUntil, now) + latency;
+
+		if(dropRate > 0 && random.nextDouble() < dropRate){
+			droppedCount.incrementAndGet();
+			return;
+		}
+		Response response = pool.poll();
+		if(response == null){
+			// The session is not reading; it will time out anyway
+			droppedCount.incrementAndGet();
+			return;
+		}
+		response.length = 0;
+		response.due = busyUntil;
+		if(noiseRate > 0 && random.nextDouble() < noiseRate){
+			// A few bytes that cannot start a frame, so the decoder has to skip them
+			int noise = 1 + random.nextInt(4);
+			for(int i = 0; i < noise; i++){
+				response.bytes[response.length++] = (byte) (1 + random.nextInt(0xFE));
+			}
+		}
+
+		if(command == null || (errorRate > 0 && random.nextDouble() < errorRate)){
+			writeFrame(response, STATUS_ERROR);
+		}
+		else{
+			Controller controller = controllers.get(addr);
+			if(controller == null){
+				controller = new Controller();
+				controllers.put(addr, controller);
+			}
+			execute(controller, command, subAddr, data(command, dataOffset, dataLength), response);
+		}
+		queued.addLast(response);
+		notifyAll();
+	}
+
+	/**
+	 * @return The data of a packet in the units of the command, e.g. a float for a float setter
+	 */
+	private double data(Command command, int offset, int length){
+		if(length == 0)
+			return 0;
+		long value = 0;
+		for(int i = 0; i < length; i++){
+			value = (value << 8) | (pending[offset + i] & 0xFF);
+		}
+		Class<?> dataType = command.getDataType();
+		if(dataType == Float.class && length == 4)
+			return Float.intBitsToFloat((int) value);
+		if(dataType == Byte.class)
+			return value;
+		// Two and four byte values are signed
+		int shift = 64 - 8 * Math.min(length, 8);
+		return (value << shift) >> shift;
+	}
+
+	private void execute(Controller controller, Command command, int subAddr, double data, Response response){
+		Command.Type type = command.getType();
+		int number = command.getCommandNum();
+		int slot = SLOTS[type.ordinal()][number];
+		double[] values = controller.values[subAddr];
+		boolean hasData = command.getDataType() != Void.class;
+		double result = hasData ? data : values[slot];
+
+		if(type == Command.Type.GENERAL){
+			if(number == G_START)
+				controller.runStatus = 1;
+			else if(number == G_PAUSE)
+				controller.runStatus = 2;
+			else if(number == G_STOP)
+				controller.runStatus = 0;
+			else if(number == G_GET_FIRMWARE)
+				result = FIRMWARE_VERSION;
+			else if(number == G_GET_RUN_STATUS)
+				result = controller.runStatus;
+			else if(number == G_GET_VOLTAGE)
+				result = VOLTAGE;
+			else if(number == G_IS_PROGRAM_VALID)
+				result = 1;
+			else if(number == G_GET_NAME){
+				writeString(response, NAME);
+				return;
+			}
+		}
+		else if(type == Command.Type.MOTOR){
+			int pos = SLOTS[type.ordinal()][M_GET_POS];
+			int end = SLOTS[type.ordinal()][M_GET_END];
+			if(number == M_SET_HOME || number == M_SEND_HOME)
+				values[pos] = 0;
+			else if(number == M_SET_END_HERE)
+				values[end] = values[pos];
+			else if(number == M_SEND_END)
+				values[pos] = values[end];
+			else if(number == M_SEND_TO)
+				values[pos] = data;
+		}
+		else if(type == Command.Type.KEYFRAME){
+			if(number == K_SET_AXIS){
+				controller.axis = Math.max(0, Math.min(MOTORS - 1, (int) data));
+				controller.keyFrameIndex[0] = controller.keyFrameIndex[1] = controller.keyFrameIndex[2] = 0;
+			}
+			else if(number == K_SET_COUNT)
+				controller.keyFrameCount[controller.axis] = Math.max(0, Math.min(KEY_FRAMES, (int) data));
+			else if(number == K_SET_ABSCISSA || number == K_SET_POS || number == K_SET_VEL){
+				int field = number == K_SET_ABSCISSA ? 0 : number == K_SET_POS ? 1 : 2;
+				int index = controller.keyFrameIndex[field];
+				if(index < KEY_FRAMES){
+					controller.keyFrames[controller.axis][field][index] = (float) data;
+					controller.keyFrameIndex[field]++;
+				}
+			}
+			else if(number == K_GET_COUNT)
+				result = controller.keyFrameCount[controller.axis];
+			else if(number == K_GET_KF_ABSCISSA || number == K_GET_KF_POS || number == K_GET_KF_VEL){
+				int field = number == K_GET_KF_ABSCISSA ? 0 : number == K_GET_KF_POS ? 1 : 2;
+				int index = (int) data;
+				result = index >= 0 && index < KEY_FRAMES ? controller.keyFrames[controller.axis][field][index] : 0;
+			}
+			else if(number == K_GET_POS_AT || number == K_GET_VEL_AT)
+				result = interpolate(controller, number == K_GET_POS_AT ? 1 : 2, data);
+			else if(number == K_START)
+				controller.keyFrameRunState = 1;
+			else if(number == K_PAUSE)
+				controller.keyFrameRunState = 2;
+			else if(number == K_STOP)
+				controller.keyFrameRunState = 0;
+			else if(number == K_GET_RUN_STATE)
+				result = controller.keyFrameRunState;
+		}
+
+		// Setters store their value; getters only read
+		if(hasData && slot == number)
+			values[slot] = data;
+		writeValue(response, command.getReturnType(), result);
+	}
+
+	/**
+	 * @return The position or velocity of the current axis at <code>x</code>, linearly
+	 * interpolated between its key frames
+	 */
+	private static float interpolate(Controller controller, int field, double x){
+		float[][] table = controller.keyFrames[controller.axis];
+		int count = controller.keyFrameCount[controller.axis];
+		if(count == 0)
+			return 0;
+		if(x <= table[0][0])
+			return table[field][0];
+		for(int i = 1; i < count; i++){
+			if(x <= table[0][i]){
+				float span = table[0][i] - table[0][i - 1];
+				float t = span == 0 ? 1 : (float) (x - table[0][i - 1]) / span;
+				return table[field][i - 1] + t * (table[field][i] - table[field][i - 1]);
+			}
+		}
+		return table[field][count - 1];
+	}
+
+	// ******** Response Frames ******** //
+
+	private static void writeFrame(Response response, int status){
+		writeHeader(response, status, 0);
+	}
+
+	/**
+	 * Writes a response carrying a value in the firmware's encoding for the return type
+	 */
+	private static void writeValue(Response response, Class<?> returnType, double value){
+		if(returnType == Boolean.class){
+			writeHeader(response, STATUS_OK, 2);
+			response.bytes[response.length++] = (byte) Frame.TYPE_BYTE;
+			response.bytes[response.length++] = (byte) (value != 0 ? 1 : 0);
+		}
+		else if(returnType == Integer.class || returnType == Long.class || returnType == Float.class){
+			// Fractional values travel as fixed-point longs
+			long bits = returnType == Float.class ? Math.round(value * Command.FLOAT_CONVERSION) : (long) value;
+			writeHeader(response, STATUS_OK, 5);
+			response.bytes[response.length++] = (byte) Frame.TYPE_LONG;
+			response.bytes[response.length++] = (byte) (bits >>> 24);
+			response.bytes[response.length++] = (byte) (bits >>> 16);
+			response.bytes[response.length++] = (byte) (bits >>> 8);
+			response.bytes[response.length++] = (byte) bits;
+		}
+		else{
+			writeFrame(response, STATUS_OK);
+		}
+	}
+
+	private static void writeString(Response response, String value){
+		writeHeader(response, STATUS_OK, 1 + value.length());
+		response.bytes[response.length++] = (byte) Frame.TYPE_STRING;
+		for(int i = 0; i < value.length(); i++){
+			response.bytes[response.length++] = (byte) value.charAt(i);
+		}
+	}
+
+	private static void writeHeader(Response response, int status, int length){
+		byte[] bytes = response.bytes;
+		for(int i = 0; i < 5; i++){
+			bytes[response.length++] = 0;
+		}
+		bytes[response.length++] = (byte) 0xFF;
+		// Responses come from the master address
+		bytes[response.length++] = 0;
+		bytes[response.length++] = 0;
+		bytes[response.length++] = (byte) status;
+		bytes[response.length++] = (byte) length;
+	}
+
+	// ******** Sending ******** //
+
+	/**
+	 * Body of the sender thread
+	 */
+	private void sendResponses(){
+		Response response;
+		while((response = nextDue(Long.MAX_VALUE)) != null){
+			deliver(response);
+		}
+	}
+
+	/**
+	 * Waits until the oldest queued response is due
+	 * @param deadline Latest time to wait until, from {@link System#nanoTime()}
+	 * @return The response, or null if none came due before the deadline or the simulator
+	 * was closed
+	 */
+	private Response nextDue(long deadline){
+		synchronized(this){
+			while(open){
+				Response head = queued.peekFirst();
+				long now = System.nanoTime();
+				long until = head == null ? deadline : Math.min(head.due, deadline);
+				if(head != null && head.due - now <= 0)
+					return queued.pollFirst();
+				if(until - now <= 0)
+					return null;
+				try {
+					TimeUnit.NANOSECONDS.timedWait(this, until - now);
+				} catch (InterruptedException e) {
+					// The session's command thread is interrupted when it shuts down
+					Thread.currentThread().interrupt();
+					return null;
+				}
+			}
+			return null;
+		}
+	}
+
+	private void deliver(Response response){
+		Receiver current = receiver;
+		if(current != null)
+			current.received(response.bytes, 0, response.length);
+		synchronized(this){
+			pool.addLast(response);
+		}
+	}
+
+	// ******** Helpers ******** //
+
+	private static Command.Type typeOf(int subAddr){
+		switch(subAddr){
+		case 0:
+			return Command.Type.GENERAL;
+		case 1:
+		case 2:
+		case 3:
+			return Command.Type.MOTOR;
+		case 4:
+			return Command.Type.CAMERA;
+		case 5:
+			return Command.Type.KEYFRAME;
+		default:
+			return null;
+		}
+	}
+
+	/**
+	 * @return The part of a command name after a prefix such as "set", or null if the name
+	 * does not start with it
+	 */
+	private static String property(String name, String prefix){
+		String method = name.substring(name.indexOf('.') + 1);
+		if(method.length() > prefix.length() && method.startsWith(prefix) && Character.isUpperCase(method.charAt(prefix.length())))
+			return method.substring(prefix.length());
+		return null;
+	}
+
+	private static int number(String name){
+		return Command.get(name).getCommandNum();
+	}
+
+	private static int key(int typeOrdinal, int number){
+		return (typeOrdinal << 8) | number;
+	}
+
+	private static double checkRate(double rate){
+		if(rate < 0 || rate > 1)
+			throw new IllegalArgumentException("A rate must be between 0 and 1");
+		return rate;
+	}
+}
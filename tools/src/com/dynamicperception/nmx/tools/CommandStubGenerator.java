@@ -0,0 +1,297 @@
+package com.dynamicperception.nmx.tools;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Generates the command registry and the typed command classes from the command table in
+ * <code>commands.csv</code>. Run it from the project root whenever the table changes and
+ * commit the result:
+ * <pre>
+ * javac -d tools/bin tools/src/com/dynamicperception/nmx/tools/CommandStubGenerator.java
+ * java -cp tools/bin com.dynamicperception.nmx.tools.CommandStubGenerator src/com/dynamicperception/nmx/commands.csv src/com/dynamicperception/nmx
+ * </pre>
+ * The output is <code>CommandTable.java</code>, which {@link com.dynamicperception.nmx.Command}
+ * loads its registry from, and one class of typed methods per command type, e.g.
+ * <code>MotorCommands.setSpeed(float)</code> for <code>m.setSpeed</code>.
+ */
+public final class CommandStubGenerator {
+
+	private static final String PACKAGE = "com.dynamicperception.nmx";
+	private static final String HEADER = "// Generated by CommandStubGenerator from commands.csv. Do not edit.\n";
+
+	/**
+	 * One row of the table
+	 */
+	private static final class Descriptor {
+		final String type;
+		final int number;
+		final String name;
+		final String returnType;
+		final String dataType;
+		final String where;
+
+		Descriptor(String type, int number, String name, String returnType, String dataType, String where){
+			this.type = type;
+			this.number = number;
+			this.name = name;
+			this.returnType = returnType;
+			this.dataType = dataType;
+			this.where = where;
+		}
+
+		String methodName(){
+			return name.substring(name.indexOf('.') + 1);
+		}
+	}
+
+	/**
+	 * How a command type maps to a generated class
+	 */
+	private static final class Group {
+		final String className;
+		final String description;
+
+		Group(String className, String description){
+			this.className = className;
+			this.description = description;
+		}
+	}
+
+	private static final Map<String, Group> GROUPS = new LinkedHashMap<String, Group>();
+	static {
+		GROUPS.put("GENERAL", new Group("GeneralCommands", "general commands of a controller"));
+		GROUPS.put("MOTOR", new Group("MotorCommands", "commands of one motor on a controller"));
+		GROUPS.put("CAMERA", new Group("CameraCommands", "camera commands of a controller"));
+		GROUPS.put("KEYFRAME", new Group("KeyFrameCommands", "key frame commands of a controller"));
+	}
+
+	public static void main(String[] args) throws IOException {
+		if(args.length != 2){
+			System.err.println("Usage: CommandStubGenerator <commands.csv> <output directory>");
+			System.exit(1);
+		}
+		List<Descriptor> table = read(new File(args[0]));
+		File dir = new File(args[1]);
+		write(new File(dir, "CommandTable.java"), commandTable(table));
+		for(Map.Entry<String, Group> group : GROUPS.entrySet()){
+			write(new File(dir, group.getValue().className + ".java"), commandClass(table, group.getKey(), group.getValue()));
+		}
+		System.out.println("Generated " + (GROUPS.size() + 1) + " classes from " + table.size() + " commands");
+	}
+
+	private static List<Descriptor> read(File csv) throws IOException {
+		List<Descriptor> table = new ArrayList<Descriptor>();
+		Map<String, Descriptor> names = new HashMap<String, Descriptor>();
+		Map<String, Descriptor> numbers = new HashMap<String, Descriptor>();
+		BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(csv), StandardCharsets.UTF_8));
+		try {
+			String line;
+			int lineNum = 0;
+			boolean header = true;
+			while((line = in.readLine()) != null){
+				lineNum++;
+				line = line.trim();
+				if(line.isEmpty() || line.startsWith("#"))
+					continue;
+				if(header){
+					header = false;
+					continue;
+				}
+				String[] fields = line.split(",");
+				if(fields.length != 5)
+					throw new IllegalArgumentException(csv + ":" + lineNum + ": expected 5 fields");
+				Descriptor descriptor = new Descriptor(fields[0].trim(), Integer.parseInt(fields[1].trim()), fields[2].trim(), 
+						fields[3].trim(), fields[4].trim(), csv + ":" + lineNum);
+				check(descriptor);
+				warnIfListed(names.get(descriptor.name), descriptor, "name");
+				warnIfListed(numbers.get(descriptor.type + descriptor.number), descriptor, "number");
+				if(!names.containsKey(descriptor.name))
+					names.put(descriptor.name, descriptor);
+				if(!numbers.containsKey(descriptor.type + descriptor.number))
+					numbers.put(descriptor.type + descriptor.number, descriptor);
+				table.add(descriptor);
+			}
+		} finally {
+			in.close();
+		}
+		return table;
+	}
+
+	/**
+	 * Warns about a command with the same name, or the same type and number, as an earlier 
+	 * one. The firmware's table has such entries, so they are kept, but only the first is
+	 * found by that name or number and gets a typed method.
+	 */
+	private static void warnIfListed(Descriptor first, Descriptor descriptor, String what){
+		if(first == null)
+			return;
+		System.err.println(descriptor.where + ": warning: " + descriptor.name + " (" + descriptor.number + ") has the same "
+				+ what + " as " + first.name + " (" + first.number + ") at " + first.where + ", which is used instead");
+	}
+
+	private static void check(Descriptor descriptor){
+		String where = descriptor.where;
+		if(!GROUPS.containsKey(descriptor.type))
+			throw new IllegalArgumentException(where + ": unknown type " + descriptor.type);
+		if(descriptor.number < 0 || descriptor.number > 255)
+			throw new IllegalArgumentException(where + ": command number out of range");
+		String method = descriptor.methodName();
+		if(method.isEmpty() || !Character.isJavaIdentifierStart(method.charAt(0)))
+			throw new IllegalArgumentException(where + ": " + descriptor.name + " does not make a method name");
+		for(int i = 1; i < method.length(); i++){
+			if(!Character.isJavaIdentifierPart(method.charAt(i)))
+				throw new IllegalArgumentException(where + ": " + descriptor.name + " does not make a method name");
+		}
+		if(parameterType(descriptor.dataType) == null && !descriptor.dataType.equals("Void"))
+			throw new IllegalArgumentException(where + ": unknown data type " + descriptor.dataType);
+		if(resultType(descriptor.returnType) == null)
+			throw new IllegalArgumentException(where + ": unknown return type " + descriptor.returnType);
+	}
+
+	private static String commandTable(List<Descriptor> table){
+		StringBuilder out = new StringBuilder();
+		out.append(HEADER);
+		out.append("package ").append(PACKAGE).append(";\n\n");
+		out.append("/**\n");
+		out.append(" * The NMX firmware's command table, in the order the commands are registered. Where a\n");
+		out.append(" * name or number is listed twice the first entry is the one that is used.\n");
+		out.append(" */\n");
+		out.append("final class CommandTable {\n\n");
+		out.append("\tstatic interface Registrar {\n");
+		out.append("\t\tpublic void add(Command.Type type, int command, String name, Class<?> returnType, Class<?> dataType);\n");
+		out.append("\t}\n\n");
+		out.append("\tprivate CommandTable(){\n\t}\n\n");
+		out.append("\tstatic void register(Registrar registrar){\n");
+		String type = null;
+		for(Descriptor descriptor : table){
+			if(type != null && !type.equals(descriptor.type))
+				out.append("\n");
+			type = descriptor.type;
+			out.append("\t\tregistrar.add(Command.Type.").append(descriptor.type).append(", ").append(descriptor.number)
+				.append(", \"").append(descriptor.name).append("\", ").append(descriptor.returnType).append(".class, ")
+				.append(descriptor.dataType).append(".class);\n");
+		}
+		out.append("\t}\n");
+		out.append("}\n");
+		return out.toString();
+	}
+
+	private static String commandClass(List<Descriptor> table, String type, Group group){
+		StringBuilder out = new StringBuilder();
+		out.append(HEADER);
+		out.append("package ").append(PACKAGE).append(";\n\n");
+		out.append("/**\n");
+		out.append(" * Typed methods for the ").append(group.description).append(", obtained from\n");
+		out.append(" * {@link NMXController}. Each method sends its command and waits for the response, and\n");
+		out.append(" * throws an {@link NMXException} if the command fails or times out.\n");
+		out.append(" */\n");
+		out.append("public final class ").append(group.className).append(" extends CommandGroup {\n\n");
+		out.append("\t").append(group.className).append("(NMXSession session, int addr, int subAddr){\n");
+		out.append("\t\tsuper(session, addr, subAddr);\n");
+		out.append("\t}\n");
+		Set<String> methods = new HashSet<String>();
+		for(Descriptor descriptor : table){
+			if(!descriptor.type.equals(type))
+				continue;
+			// The registry uses the first of two commands with the same name, so do the same here
+			if(!methods.add(descriptor.methodName()))
+				continue;
+			out.append("\n");
+			out.append("\t/**\n");
+			out.append("\t * <code>").append(descriptor.name).append("</code>, command ").append(descriptor.number).append("\n");
+			out.append("\t */\n");
+			String result = resultType(descriptor.returnType);
+			String parameter = parameterType(descriptor.dataType);
+			out.append("\tpublic ").append(result).append(" ").append(descriptor.methodName()).append("(");
+			if(parameter != null)
+				out.append(parameter).append(" value");
+			out.append("){\n");
+			out.append("\t\t").append(result.equals("void") ? "" : "return ")
+				.append(Character.toLowerCase(result.charAt(0))).append(result.substring(1)).append("Command(")
+				.append(descriptor.number).append(", ").append(dataLength(descriptor.dataType)).append(", ")
+				.append(dataExpression(descriptor.dataType)).append(");\n");
+			out.append("\t}\n");
+		}
+		out.append("}\n");
+		return out.toString();
+	}
+
+	/**
+	 * @return The Java type a command's value is returned as, or null if unsupported
+	 */
+	private static String resultType(String returnType){
+		if(returnType.equals("Void"))
+			return "void";
+		if(returnType.equals("String"))
+			return "String";
+		if(returnType.equals("Integer"))
+			return "int";
+		if(returnType.equals("Long"))
+			return "long";
+		if(returnType.equals("Float"))
+			return "float";
+		if(returnType.equals("Boolean"))
+			return "boolean";
+		return null;
+	}
+
+	/**
+	 * @return The Java type of a command's data parameter, or null if it takes none
+	 */
+	private static String parameterType(String dataType){
+		if(dataType.equals("Byte") || dataType.equals("Integer"))
+			return "int";
+		if(dataType.equals("Long"))
+			return "long";
+		if(dataType.equals("Float"))
+			return "float";
+		return null;
+	}
+
+	private static int dataLength(String dataType){
+		if(dataType.equals("Byte"))
+			return 1;
+		if(dataType.equals("Integer"))
+			return 2;
+		if(dataType.equals("Long") || dataType.equals("Float"))
+			return 4;
+		return 0;
+	}
+
+	/**
+	 * @return Expression for the parameter in the wire format, as an int
+	 */
+	private static String dataExpression(String dataType){
+		if(dataType.equals("Float"))
+			return "Float.floatToIntBits(value)";
+		if(dataType.equals("Long"))
+			return "(int) value";
+		if(dataType.equals("Void"))
+			return "0";
+		return "value";
+	}
+
+	private static void write(File file, String content) throws IOException {
+		Writer out = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8);
+		try {
+			out.write(content);
+		} finally {
+			out.close();
+		}
+	}
+}